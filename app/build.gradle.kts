@@ -28,6 +28,7 @@ dependencies {
     implementation("nz.ac.waikato.cms.weka:weka-stable:3.8.3") {
         exclude(module = "java-cup-11b-runtime")
     }
+    implementation(project(":core"))
     testImplementation("junit:junit:4.12")
     testImplementation("org.robolectric:robolectric:4.3")
     testImplementation("androidx.test:core:1.2.0")
@@ -37,8 +38,11 @@ dependencies {
     testImplementation("org.powermock:powermock-classloading-xstream:2.0.2")
     testImplementation("com.github.cs125-illinois:gradlegrader:1.0.5")
     testImplementation("com.github.cs125-illinois:robolectricsecurity:1.1.1")
+    testImplementation("org.openjdk.jmh:jmh-core:1.21")
+    testImplementation(project(":server"))
 
     testAnnotationProcessor("com.google.auto.service:auto-service:1.0-rc4")
+    testAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.21")
 }
 android {
     compileSdkVersion(28)
@@ -64,6 +68,38 @@ android {
         targetCompatibility = JavaVersion.VERSION_1_8
     }
 }
+val targetPackDir = file("$buildDir/generated/res/targetpacks")
+val compileTargetPacks by tasks.registering {
+    description = "Compiles the CSV target lists in res/raw into binary target packs (see TargetPack)."
+    val csvFiles = fileTree("src/main/res/raw") { include("*.csv") }
+    inputs.files(csvFiles)
+    outputs.dir(targetPackDir)
+    doLast {
+        val rawDir = File(targetPackDir, "raw")
+        rawDir.mkdirs()
+        csvFiles.forEach { csv ->
+            val rows = csv.readLines().filter { it.isNotBlank() }.map { it.trim().split(Regex(",\\s*"), 3) }
+            val names = rows.map { it.getOrElse(2) { "" }.toByteArray(Charsets.UTF_8) }
+            val hasNames = names.any { it.isNotEmpty() }
+            var size = 16 + rows.size * 16
+            if (hasNames) {
+                size += names.sumBy { 4 + it.size }
+            }
+            val buffer = java.nio.ByteBuffer.allocate(size).order(java.nio.ByteOrder.LITTLE_ENDIAN)
+            buffer.putInt(0x4B504754).putInt(1).putInt(rows.size).putInt(if (hasNames) 1 else 0)
+            rows.forEach { buffer.putDouble(it[0].toDouble()) }
+            rows.forEach { buffer.putDouble(it[1].toDouble()) }
+            if (hasNames) {
+                names.forEach { buffer.putInt(it.size).put(it) }
+            }
+            File(rawDir, csv.nameWithoutExtension + "_pack.bin").writeBytes(buffer.array())
+        }
+    }
+}
+android.sourceSets["main"].res.srcDir(targetPackDir)
+tasks.named("preBuild") {
+    dependsOn(compileTargetPacks)
+}
 gradlegrader {
     assignment = "Fall2019.MP"
     checkpoint {
@@ -0,0 +1,118 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.BitSet;
+import java.util.PrimitiveIterator;
+
+/**
+ * Keeps track of which unvisited targets can currently be claimed under the snake rule.
+ * <p>
+ * The set is used for things like greying out targets that can't be captured next and for skipping
+ * snake rule checks that are certain to fail. It is recomputed lazily: capturing a target only marks the
+ * set out of date, and the next query rechecks every unvisited target against the SnakePath segment grid.
+ * <p>
+ * Rechecking only against the newest line is not enough. A capture also moves the start of every
+ * candidate line to the newly captured target, so a target that was blocked before can become claimable
+ * and vice versa. The grid keeps each recheck limited to the lines near the candidate line instead.
+ */
+public final class ClaimabilityTracker {
+
+    /** The player's capture path. */
+    private final SnakePath path;
+
+    /** Which targets can be claimed next (as of the last refresh). */
+    private final BitSet claimable;
+
+    /** Whether the path has changed since the claimable set was computed. */
+    private boolean stale = true;
+
+    /**
+     * Creates a tracker for a new path over a set of targets.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same size as latitudes)
+     */
+    public ClaimabilityTracker(final double[] latitudes, final double[] longitudes) {
+        this(new SnakePath(latitudes, longitudes));
+    }
+
+    /**
+     * Creates a tracker over an existing path.
+     * <p>
+     * Targets must then be captured through this tracker rather than directly on the path.
+     * @param setPath the player's capture path
+     */
+    public ClaimabilityTracker(final SnakePath setPath) {
+        path = setPath;
+        claimable = new BitSet(path.getVisited().capacity());
+    }
+
+    /**
+     * Gets the capture path this tracker follows.
+     * @return the snake path
+     */
+    public SnakePath getPath() {
+        return path;
+    }
+
+    /**
+     * Captures a target, adding it to the end of the path.
+     * <p>
+     * This does not check the snake rule; use isClaimable first.
+     * @param targetIndex the target being captured
+     * @return the index in the path array that was updated, or -1 if the target could not be added
+     */
+    public int capture(final int targetIndex) {
+        int slot = path.append(targetIndex);
+        if (slot != -1) {
+            stale = true;
+        }
+        return slot;
+    }
+
+    /**
+     * Determines whether a target can be claimed next.
+     * @param targetIndex the target index
+     * @return whether the target is unvisited and capturing it would not violate the snake rule
+     */
+    public boolean isClaimable(final int targetIndex) {
+        refreshIfNeeded();
+        return claimable.get(targetIndex);
+    }
+
+    /**
+     * Gets how many targets can be claimed next.
+     * @return the number of claimable targets
+     */
+    public int claimableCount() {
+        refreshIfNeeded();
+        return claimable.cardinality();
+    }
+
+    /**
+     * Gets the targets that can be claimed next, in increasing index order.
+     * <p>
+     * The iterator must not be used after another target is captured.
+     * @return an iterator over the claimable target indexes
+     */
+    public PrimitiveIterator.OfInt claimableTargets() {
+        refreshIfNeeded();
+        return claimable.stream().iterator();
+    }
+
+    /**
+     * Recomputes the claimable set if a capture has happened since it was last computed.
+     */
+    private void refreshIfNeeded() {
+        if (!stale) {
+            return;
+        }
+        VisitedTargets visited = path.getVisited();
+        claimable.clear();
+        for (int i = 0; i < visited.capacity(); i++) {
+            if (!visited.contains(i) && TargetVisitChecker.checkSnakeRule(path, i)) {
+                claimable.set(i);
+            }
+        }
+        stale = false;
+    }
+
+}
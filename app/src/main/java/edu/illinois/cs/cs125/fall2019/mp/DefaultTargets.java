@@ -1,14 +1,22 @@
 package edu.illinois.cs.cs125.fall2019.mp;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.google.android.gms.maps.model.LatLng;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
 
 /**
  * Loads the default targets for local games in Checkpoints 0 through 3.
@@ -20,8 +28,17 @@ public final class DefaultTargets {
     /** Private constructor to prevent creating instances. */
     private DefaultTargets() { }
 
-    /** Positions of example targets. */
-    private static List<LatLng> targets;
+    /** The loaded example targets, or null if they haven't been loaded yet. */
+    private static TargetPack targets;
+
+    /** Positions of the example targets as LatLngs, or null if they haven't been loaded yet. */
+    private static LatLng[] positions;
+
+    /** The background load started by preload, or null if none is in progress. */
+    private static Future<TargetPack> loading;
+
+    /** Callbacks waiting for the background load to finish. */
+    private static List<Consumer<TargetPack>> waiting = new ArrayList<>();
 
     /** Whether to allow using this class at all. */
     private static boolean allowUse = true;
@@ -30,22 +47,88 @@ public final class DefaultTargets {
     private static boolean allowIndependentArrays = true;
 
     /**
-     * Loads the default targets list if it hasn't already been loaded.
+     * Starts loading the default targets on a background thread, if they aren't loaded or loading already.
+     * <p>
+     * Call this early (e.g. when the app starts) so that later calls don't have to wait for resource I/O.
+     * When the load finishes, callbacks passed to getTargetPack meanwhile are run on the main thread.
+     * @param context an Android context
+     */
+    public static synchronized void preload(final Context context) {
+        if (targets != null || loading != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        FutureTask<TargetPack> task = new FutureTask<TargetPack>(() -> readTargets(appContext)) {
+            @Override
+            protected void done() {
+                mainHandler.post(() -> deliverPreloaded(appContext));
+            }
+        };
+        loading = task;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(task);
+        executor.shutdown();
+    }
+
+    /**
+     * Finishes a background load and runs the callbacks that were waiting for it. Called on the main thread.
+     * @param context the Android context the targets were loaded from
+     */
+    private static void deliverPreloaded(final Context context) {
+        List<Consumer<TargetPack>> callbacks;
+        synchronized (DefaultTargets.class) {
+            // The load is done, so this doesn't wait
+            loadIfNeeded(context);
+            callbacks = waiting;
+            waiting = new ArrayList<>();
+        }
+        for (Consumer<TargetPack> callback : callbacks) {
+            callback.accept(targets);
+        }
+    }
+
+    /**
+     * Reads the default targets from the app resources.
+     * @param context the Android context to load the data from
+     * @return the loaded targets
+     */
+    private static TargetPack readTargets(final Context context) {
+        try {
+            // Compiled from defaulttargets.csv at build time by the compileTargetPacks task
+            return TargetPack.read(context.getResources().openRawResource(R.raw.defaulttargets_pack));
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't load the default targets", e);
+        }
+    }
+
+    /**
+     * Loads the default targets if they haven't already been loaded, waiting for a preload if one is running.
      * @param context the Android context to load the data from
      */
-    private static void loadIfNeeded(final Context context) {
+    private static synchronized void loadIfNeeded(final Context context) {
         if (targets != null) {
             return;
         }
-        targets = new ArrayList<>();
-        Scanner scanner = new Scanner(context.getResources().openRawResource(R.raw.defaulttargets));
-        while (scanner.hasNextLine()) {
-            String[] parts = scanner.nextLine().split(",\\s*");
-            double lat = Double.parseDouble(parts[0]);
-            double lng = Double.parseDouble(parts[1]);
-            targets.add(new LatLng(lat, lng));
+        if (loading == null) {
+            targets = readTargets(context);
+        } else {
+            try {
+                targets = loading.get();
+            } catch (ExecutionException e) {
+                // Try again on this thread so the original error is reported to the caller
+                targets = readTargets(context);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading the default targets", e);
+            } finally {
+                loading = null;
+            }
+        }
+        positions = new LatLng[targets.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new LatLng(targets.getLatitudes()[i], targets.getLongitudes()[i]);
         }
-        scanner.close();
     }
 
     /**
@@ -79,7 +162,7 @@ public final class DefaultTargets {
             throw new IllegalStateException("Use the LatLng class instead of independent arrays.");
         }
         loadIfNeeded(context);
-        return targets.stream().mapToDouble(ll -> ll.latitude).toArray();
+        return targets.getLatitudes().clone();
     }
 
     /**
@@ -92,7 +175,44 @@ public final class DefaultTargets {
             throw new IllegalStateException("Use the LatLng class instead of independent arrays.");
         }
         loadIfNeeded(context);
-        return targets.stream().mapToDouble(ll -> ll.longitude).toArray();
+        return targets.getLongitudes().clone();
+    }
+
+    /**
+     * Gets the default targets' coordinates without copying them.
+     * <p>
+     * The returned pack is shared, so its arrays must not be modified.
+     * @param context an Android context
+     * @return the loaded targets
+     */
+    public static TargetPack getTargetPack(final Context context) {
+        if (!allowIndependentArrays) {
+            throw new IllegalStateException("Use the LatLng class instead of independent arrays.");
+        }
+        loadIfNeeded(context);
+        return targets;
+    }
+
+    /**
+     * Gets the default targets' coordinates without waiting for a preload to finish.
+     * <p>
+     * If preload is still reading them, this returns immediately and onLoaded runs on the main thread once the
+     * read finishes. Otherwise onLoaded runs before this returns; if they were never preloaded, they're read
+     * first on this thread. The pack is shared, so its arrays must not be modified.
+     * @param context an Android context
+     * @param onLoaded callback to run with the loaded targets
+     */
+    public static void getTargetPack(final Context context, final Consumer<TargetPack> onLoaded) {
+        if (!allowIndependentArrays) {
+            throw new IllegalStateException("Use the LatLng class instead of independent arrays.");
+        }
+        synchronized (DefaultTargets.class) {
+            if (targets == null && loading != null) {
+                waiting.add(onLoaded);
+                return;
+            }
+        }
+        onLoaded.accept(getTargetPack(context));
     }
 
     /**
@@ -105,7 +225,7 @@ public final class DefaultTargets {
             throw new IllegalStateException("Use game state from the server instead of default targets.");
         }
         loadIfNeeded(context);
-        return targets.toArray(new LatLng[0]);
+        return positions.clone();
     }
 
 }
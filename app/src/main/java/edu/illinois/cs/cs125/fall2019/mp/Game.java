@@ -2,25 +2,36 @@ package edu.illinois.cs.cs125.fall2019.mp;
 
 import android.content.Context;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.Circle;
 import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Represents a multiplayer game, providing or defining methods common to all game modes.
  * <p>
+ * The game rules (captures and scoring) live in a GameEngine, which has no Android dependencies. This class
+ * adapts the engine to the map and the websocket: it feeds the engine location changes and server updates,
+ * sends the user's captures to the server, and lets subclasses draw captures through objectiveCaptured.
+ * <p>
  * This is used starting in Checkpoint 4. It does not need to be modified until Checkpoint 5.
  */
 public abstract class Game {
 
+    /** Radius (meters) of the circles showing other players. */
+    private static final double PLAYER_CIRCLE_RADIUS = 4.0;
+
+    /** Minimum time (milliseconds) between snapshots saved only because players moved. */
+    private static final long SNAPSHOT_MOVE_INTERVAL = 2000;
+
     /** The current user's email. */
     private String email;
 
@@ -30,14 +41,63 @@ public abstract class Game {
     /** The websocket for sending data to the server. */
     private WebSocket websocket;
 
+    /** The managed connection to send through instead of the websocket, or null to use the websocket. */
+    private ManagedWebSocket connection;
+
+    /** Handler for the UI thread, which runs delayed work such as held-back messages and snapshots. */
+    private Handler handler;
+
+    /** Filters and paces messages before they're written to the websocket. */
+    private OutboundPipeline outbound;
+
+    /** The version of the game state, used to catch up after reconnecting. */
+    private GameStateSync stateSync;
+
+    /** Where to save snapshots of the game state, or null if snapshots are disabled. */
+    private GameSnapshotStore snapshotStore;
+
+    /** The game ID to save snapshots under. */
+    private String snapshotGameId;
+
+    /** When the last snapshot was saved (milliseconds since the epoch). */
+    private long lastSnapshotTime;
+
+    /** Whether a snapshot is scheduled for the end of the movement interval. */
+    private boolean snapshotScheduled;
+
+    /** Saves the snapshot held back because only players moved. */
+    private Runnable trailingSnapshot = this::saveSnapshot;
+
     /** The Android UI context. */
     private Context context;
 
-    /** All participants' team IDs. */
-    private Map<String, Integer> playerTeams = new HashMap<>();
+    /** The game rules and state. */
+    private GameEngine engine;
+
+    /** All participants' IDs, teams, states and last positions (shared with the engine). */
+    private PlayerRegistry players;
+
+    /** The user's player ID. */
+    private int myId;
+
+    /** The map indicators for other players, indexed by player ID (null if a player has none). */
+    private Circle[] otherPlayerCircles = new Circle[0];
+
+    /** The team each circle in otherPlayerCircles was drawn for, indexed by player ID. */
+    private int[] circleTeams = new int[0];
+
+    /** The color of each team, indexed by team ID. */
+    private int[] teamColors;
+
+    /** Other players' positions waiting to be drawn at the next frame. */
+    private PlayerPositionBuffer positionBuffer = new PlayerPositionBuffer();
 
-    /** The map indicators for other players. */
-    private Map<String, Circle> otherPlayerCircles = new HashMap<>();
+    /** The UI thread's choreographer, used to apply buffered positions once per frame. */
+    private Choreographer choreographer;
+
+    /** Frame callback that draws the buffered positions. */
+    private Choreographer.FrameCallback applyPositions =
+        frameTimeNanos -> positionBuffer.flush(this::updateOtherPlayerPosition);
 
     /**
      * Sets up this Game.
@@ -53,17 +113,30 @@ public abstract class Game {
         map = setMap;
         websocket = setWebSocket;
         context = setContext;
+        handler = new Handler(Looper.getMainLooper());
+        outbound = new OutboundPipeline(this::write,
+            delay -> handler.postDelayed(outbound::flushIfDue, delay));
+        teamColors = context.getResources().getIntArray(R.array.team_colors);
+        // Games are created on the UI thread, so this is the choreographer that draws the map
+        choreographer = Choreographer.getInstance();
+
+        stateSync = new GameStateSync(initialState);
+        engine = GameEngine.fromFullUpdate(initialState);
+        players = engine.getPlayers();
 
         map.clear();
-        for (JsonElement p : initialState.getAsJsonArray("players")) {
-            JsonObject player = p.getAsJsonObject();
-            String playerEmail = player.get("email").getAsString();
-            int playerTeam = player.get("team").getAsInt();
-            int playerState = player.get("state").getAsInt();
-            playerTeams.put(playerEmail, playerTeam);
-            if (!playerEmail.equals(email) && playerTeam != TeamID.OBSERVER && playerState == PlayerStateID.PLAYING
-                    && player.has("lastLatitude")) {
-                updateOtherPlayerPosition(player);
+        myId = players.intern(email);
+        drawOtherPlayers();
+    }
+
+    /**
+     * Draws a circle for each other player who is playing on a team and has a known position.
+     */
+    private void drawOtherPlayers() {
+        for (int id = 0; id < players.size(); id++) {
+            if (id != myId && players.getTeam(id) != TeamID.OBSERVER
+                    && players.getState(id) == PlayerStateID.PLAYING && players.hasPosition(id)) {
+                updateOtherPlayerPosition(id, players.getTeam(id), players.getLatitude(id), players.getLongitude(id));
             }
         }
     }
@@ -99,47 +172,128 @@ public abstract class Game {
     }
 
     /**
-     * Sends a message to the server.
+     * Sends messages through a managed connection instead of the websocket passed to the constructor.
+     * <p>
+     * While the connection is down, captures are buffered and only the latest location update is kept.
+     * Each time it comes back, the new connection carries the game state version, so the server answers with
+     * the updates the game missed (see reconnected).
+     * @param setConnection the connection the game's websocket belongs to
+     */
+    public final void useConnection(final ManagedWebSocket setConnection) {
+        connection = setConnection;
+        connection.setReconnectListener(this::reconnected);
+        connection.setResumeVersion(stateSync::getVersion);
+        outbound.holdLocationsWhile(() -> !setConnection.isConnected());
+    }
+
+    /**
+     * Writes message text to the managed connection if there is one, otherwise to the websocket.
+     * @param text serialized JSON to send
+     */
+    private void write(final String text) {
+        if (connection != null) {
+            connection.sendText(text);
+        } else {
+            websocket.sendText(text);
+        }
+    }
+
+    /**
+     * Sends a message to the server immediately.
      * @param text serialized JSON to send
      */
     protected final void sendMessage(final String text) {
-        websocket.sendText(text);
+        outbound.sendNow(text);
     }
 
     /**
      * Sends a message to the server.
      * <p>
-     * Subclasses can use this to send updates via the websocket.
+     * Subclasses can use this to send updates via the websocket. Location updates may be dropped if
+     * the player hasn't moved far enough, or delayed and replaced by a newer one if they're sent too
+     * often; other messages are sent immediately. See OutboundPipeline for details.
      * @param message JSON object to send
      */
     protected final void sendMessage(final JsonObject message) {
-        sendMessage(message.toString());
+        outbound.send(message);
+    }
+
+    /**
+     * Gets the number of messages written to the websocket.
+     * @return how many messages have been sent to the server
+     */
+    public final long getMessagesSent() {
+        return outbound.getSentCount();
+    }
+
+    /**
+     * Gets the number of location updates that were not sent because they were redundant.
+     * @return how many location updates were deduplicated or coalesced
+     */
+    public final long getMessagesSuppressed() {
+        return outbound.getSuppressedCount();
+    }
+
+    /**
+     * Gets the engine holding this game's rules and state.
+     * <p>
+     * This method is here to expose the private engine variable to subclasses.
+     * @return the game engine
+     */
+    protected final GameEngine getEngine() {
+        return engine;
     }
 
     /**
      * Processes a location change, makes appropriate changes to the game state,
      * and sends appropriate notifications to the server.
      * <p>
-     * Subclasses should implement this in a way specific to the mode of game they represent.
+     * This implementation reports the location to the server and asks the engine whether it captures an
+     * objective. If it does, the capture is sent to the server and passed to objectiveCaptured.
      * @param location a location FusedLocationProviderClient is reasonably confident about
      */
-    public abstract void locationUpdated(LatLng location);
+    public void locationUpdated(final LatLng location) {
+        JsonObject update = new JsonObject();
+        update.addProperty("type", OutboundPipeline.LOCATION_TYPE);
+        update.addProperty("latitude", location.latitude);
+        update.addProperty("longitude", location.longitude);
+        sendMessage(update);
+        int captured = engine.locationUpdated(myId, location.latitude, location.longitude);
+        if (captured != GameEngine.NONE) {
+            sendMessage(engine.createCaptureMessage(captured));
+            objectiveCaptured(myId, captured);
+        }
+    }
 
     /**
-     * Gets a team's score.
+     * Called when a player (the user or anyone else) captures an objective.
      * <p>
-     * Subclasses should implement this in a way specific to their game mode's type of objective.
+     * The engine has already recorded the capture. Subclasses should override this to draw it in a way
+     * specific to their game mode's type of objective.
+     * @param playerId the capturing player's ID in the registry returned by getPlayers
+     * @param objective the index of the captured target or cell (see GameEngine)
+     */
+    protected void objectiveCaptured(final int playerId, final int objective) { }
+
+    /**
+     * Gets a team's score.
      * @param teamId the team ID
      * @return how many objectives the team has captured
      */
-    public abstract int getTeamScore(int teamId);
+    public int getTeamScore(final int teamId) {
+        return engine.getTeamScore(teamId);
+    }
 
     /**
      * Processes an update from the server.
      * <p>
-     * This implementation handles playerLocation and playerExit events, updating the
-     * player circles appropriately. Subclass implementations should handle events specific
-     * to their game mode, delegating others to this implementation with a super call.
+     * This implementation handles playerLocation and playerExit events, recording them in the engine and
+     * updating the player circles appropriately. Location updates are buffered and drawn at the next
+     * display frame, keeping only each player's latest position. Captures by any player are
+     * applied to the engine and passed to objectiveCaptured, and game state changes are
+     * applied to the engine but left unhandled so the activity can react to them. Subclass implementations
+     * should handle events specific to their game mode, delegating others to this
+     * implementation with a super call.
      * @param message JSON from the server
      * @param type the update type
      * @return whether the message was handled
@@ -147,48 +301,298 @@ public abstract class Game {
     public boolean handleMessage(final JsonObject message, final String type) {
         switch (type) {
             case "playerLocation":
-                updateOtherPlayerPosition(message);
+                int team = -1;
+                if (message.has("team")) {
+                    team = message.get("team").getAsInt();
+                }
+                double latitude = message.get("lastLatitude").getAsDouble();
+                double longitude = message.get("lastLongitude").getAsDouble();
+                queueOtherPlayerPosition(engine.playerMoved(message.get("email").getAsString(), team,
+                        latitude, longitude), team, latitude, longitude);
                 return true;
             case "playerExit":
-                Circle c = otherPlayerCircles.remove(message.get("email").getAsString());
-                if (c != null) {
-                    c.remove();
+                removeOtherPlayer(engine.playerExited(message.get("email").getAsString()));
+                return true;
+            case "playerTargetVisit":
+            case "playerCellCapture":
+                int captured = engine.applyUpdate(message, type);
+                if (captured != GameEngine.NONE) {
+                    objectiveCaptured(players.idOf(message.get("email").getAsString()), captured);
                 }
                 return true;
+            case "gameState":
+                engine.applyUpdate(message, type);
+                return false;
             default:
                 return false;
         }
     }
 
+    /**
+     * Processes an update from the server that has already been decoded by GameEventDecoder.
+     * <p>
+     * Numbered updates are checked against the game state version first: updates that were already
+     * applied are ignored, and if updates were missed a resume request is sent and later updates are
+     * dropped until the server's diff arrives. If it hasn't arrived within GameStateSync.RESUME_TIMEOUT, the
+     * next gap sends the request again. A diff is applied by handling each change it contains as
+     * if it had arrived live. Full updates reset the version, replace the engine's state, redraw the other
+     * players and are passed on to handleMessage.
+     * @param event the decoded update
+     * @return whether the update was handled
+     */
+    public boolean handleEvent(final GameEvent event) {
+        if (GameStateSync.DIFF_TYPE.equals(event.getType())) {
+            for (GameEvent change : stateSync.applyDiff(event.toJson())) {
+                dispatchEvent(change);
+            }
+            stateChanged(false);
+            return true;
+        } else if (event instanceof GameEvent.Full && ((GameEvent.Full) event).isFullUpdate()) {
+            stateSync.reset(event.toJson());
+            engine.load(event.toJson());
+            redrawOtherPlayers();
+            stateChanged(false);
+            return handleMessage(event.toJson(), event.getType());
+        }
+        switch (stateSync.accept(event)) {
+            case DUPLICATE:
+                return true;
+            case GAP:
+                long now = System.currentTimeMillis();
+                if (stateSync.shouldResume(now)) {
+                    sendMessage(stateSync.requestResume(now));
+                }
+                return true;
+            default:
+                stateChanged(event instanceof GameEvent.PlayerLocation);
+                return dispatchEvent(event);
+        }
+    }
+
+    /**
+     * Applies an update whose sequence number has been checked to the engine and draws it.
+     * <p>
+     * Player location and exit events are handled directly from their typed fields, without going through
+     * JSON. Any other event is converted back to JSON and passed to handleMessage, so subclasses that only
+     * override handleMessage still see every update.
+     * @param event the decoded update
+     * @return whether the update was handled
+     */
+    private boolean dispatchEvent(final GameEvent event) {
+        if (event instanceof GameEvent.PlayerLocation) {
+            GameEvent.PlayerLocation location = (GameEvent.PlayerLocation) event;
+            int id = engine.playerMoved(location.getEmail(), location.getTeam(), location.getLatitude(),
+                    location.getLongitude());
+            queueOtherPlayerPosition(id, location.getTeam(), location.getLatitude(), location.getLongitude());
+            return true;
+        } else if (event instanceof GameEvent.PlayerExit) {
+            removeOtherPlayer(engine.playerExited(((GameEvent.PlayerExit) event).getEmail()));
+            return true;
+        }
+        return handleMessage(event.toJson(), event.getType());
+    }
+
+    /**
+     * Switches to a new websocket after the connection was lost and asks the server for the missed changes.
+     * <p>
+     * The server answers with a diff (or a full update if too much has changed), which should be passed to
+     * handleEvent like any other update. A game that uses a ManagedWebSocket has this called automatically;
+     * the reconnection already told the server the state version, so no resume request is sent. The location
+     * update held back while disconnected is sent after the captures buffered by the connection.
+     * @param setWebSocket the newly connected websocket
+     */
+    public final void reconnected(final WebSocket setWebSocket) {
+        websocket = setWebSocket;
+        // Either way the diff clears the pending resume, and a lost one is retried at the next gap
+        JsonObject request = stateSync.requestResume(System.currentTimeMillis());
+        if (connection == null) {
+            sendMessage(request.toString());
+        }
+        handler.post(outbound::flush);
+    }
+
+    /**
+     * Starts saving a snapshot of the game state whenever it changes, so the game can be drawn immediately
+     * the next time it's entered.
+     * <p>
+     * Snapshots are written on a background thread. Changes that only move players are saved at most once
+     * every {@value #SNAPSHOT_MOVE_INTERVAL} milliseconds, at the end of the interval, so the last position
+     * is always saved; other changes are saved right away.
+     * <p>
+     * The activity that creates the Game (from Checkpoint 4) should call this with
+     * GameActivity.getSnapshotStore and the game ID it was started with (GameActivity.EXTRA_GAME_ID).
+     * @param store where to save the snapshots
+     * @param gameId this game's ID
+     */
+    public final void enableSnapshots(final GameSnapshotStore store, final String gameId) {
+        snapshotStore = store;
+        snapshotGameId = gameId;
+        stateChanged(false);
+    }
+
+    /**
+     * Saves a snapshot after the game state changed, if snapshots are enabled.
+     * @param movementOnly whether the change only moved a player
+     */
+    private void stateChanged(final boolean movementOnly) {
+        if (snapshotStore == null) {
+            return;
+        }
+        long wait = SNAPSHOT_MOVE_INTERVAL - (System.currentTimeMillis() - lastSnapshotTime);
+        if (!movementOnly || wait <= 0) {
+            saveSnapshot();
+        } else if (!snapshotScheduled) {
+            // Save once the interval is up, covering this and any other moves until then
+            snapshotScheduled = true;
+            handler.postDelayed(trailingSnapshot, wait);
+        }
+    }
+
+    /**
+     * Saves a snapshot now, replacing any save scheduled for the end of the movement interval.
+     */
+    private void saveSnapshot() {
+        if (snapshotScheduled) {
+            handler.removeCallbacks(trailingSnapshot);
+            snapshotScheduled = false;
+        }
+        long now = System.currentTimeMillis();
+        lastSnapshotTime = now;
+        snapshotStore.save(snapshotGameId, GameSnapshot.capture(engine, stateSync.getVersion(), email, now));
+    }
+
+    /**
+     * Gets the version of the game state this Game has applied.
+     * @return the sequence number of the last applied update, or GameEvent.NO_SEQUENCE if not numbered
+     */
+    public final long getStateVersion() {
+        return stateSync.getVersion();
+    }
+
     /**
      * Gets the user's team ID in this game.
      * @return team ID as defined in TeamID
      */
-    @SuppressWarnings("ConstantConditions")
     public final int getMyTeam() {
-        return playerTeams.get(email);
+        return players.getTeam(myId);
+    }
+
+    /**
+     * Gets the registry of this game's players.
+     * <p>
+     * Subclasses can use this to look up per-player state by ID instead of by email.
+     * @return the player registry
+     */
+    protected final PlayerRegistry getPlayers() {
+        return players;
     }
 
     /**
      * Updates the map indicator of another player.
-     * @param player parsed JSON from a player location update or a player section of a full update
-     */
-    @SuppressWarnings("ConstantConditions")
-    private void updateOtherPlayerPosition(final JsonObject player) {
-        String playerEmail = player.get("email").getAsString();
-        LatLng location = new LatLng(player.get("lastLatitude").getAsDouble(),
-                player.get("lastLongitude").getAsDouble());
-        int[] teamColors = getContext().getResources().getIntArray(R.array.team_colors);
-        final double circleRadius = 4.0;
+     * <p>
+     * The player's existing circle is moved if there is one. A new circle is only created for a player
+     * who doesn't have one yet or whose team has changed, since the team determines the circle's color.
+     * @param id the player's ID
+     * @param team the player's team ID, or -1 to keep the team already known for them
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     */
+    private void updateOtherPlayerPosition(final int id, final int team,
+                                           final double latitude, final double longitude) {
+        if (team != -1) {
+            players.setTeam(id, team);
+        }
+        players.setPosition(id, latitude, longitude);
+        int playerTeam = players.getTeam(id);
+        if (playerTeam == PlayerRegistry.UNKNOWN) {
+            // A player who wasn't in the full update and whose team hasn't been sent yet
+            return;
+        }
+        if (id >= otherPlayerCircles.length) {
+            int capacity = Math.max(players.size(), id + 1);
+            otherPlayerCircles = Arrays.copyOf(otherPlayerCircles, capacity);
+            circleTeams = Arrays.copyOf(circleTeams, capacity);
+        }
+        LatLng location = new LatLng(latitude, longitude);
+        Circle existing = otherPlayerCircles[id];
+        if (existing != null && circleTeams[id] == playerTeam) {
+            existing.setCenter(location);
+            return;
+        }
         CircleOptions c = new CircleOptions().center(location)
-                .radius(circleRadius)
-                .fillColor(teamColors[playerTeams.get(playerEmail)])
+                .radius(PLAYER_CIRCLE_RADIUS)
+                .fillColor(teamColors[playerTeam])
                 .zIndex(2.0f)
                 .strokeColor(Color.BLACK)
                 .strokeWidth(2);
-        Circle old = otherPlayerCircles.put(playerEmail, map.addCircle(c));
-        if (old != null) {
-            old.remove();
+        otherPlayerCircles[id] = map.addCircle(c);
+        circleTeams[id] = playerTeam;
+        if (existing != null) {
+            existing.remove();
+        }
+    }
+
+    /**
+     * Buffers another player's new position to be drawn at the next display frame.
+     * @param id the player's ID
+     * @param team the player's team ID, or -1 if the update didn't include it
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     */
+    private void queueOtherPlayerPosition(final int id, final int team,
+                                          final double latitude, final double longitude) {
+        if (positionBuffer.offer(id, team, latitude, longitude)) {
+            choreographer.postFrameCallback(applyPositions);
+        }
+    }
+
+    /**
+     * Gets the number of other-player location updates received from the server.
+     * @return how many location updates have been received
+     */
+    public final long getPositionUpdatesReceived() {
+        return positionBuffer.getReceivedCount();
+    }
+
+    /**
+     * Gets the number of other-player location updates actually drawn on the map.
+     * <p>
+     * Updates for the same player that arrive within one frame are coalesced, so this can be lower than
+     * the received count.
+     * @return how many location updates have been applied to the map
+     */
+    public final long getPositionUpdatesApplied() {
+        return positionBuffer.getAppliedCount();
+    }
+
+    /**
+     * Replaces every other player's circle with one drawn from the registry, e.g. after a full update.
+     * <p>
+     * Buffered positions are dropped, since they're older than the state the registry now holds.
+     */
+    private void redrawOtherPlayers() {
+        positionBuffer.clear();
+        for (int id = 0; id < otherPlayerCircles.length; id++) {
+            if (otherPlayerCircles[id] != null) {
+                otherPlayerCircles[id].remove();
+                otherPlayerCircles[id] = null;
+            }
+        }
+        drawOtherPlayers();
+    }
+
+    /**
+     * Removes the map indicator of a player who left the game.
+     * @param id the player's ID, or PlayerRegistry.UNKNOWN if the player was never registered
+     */
+    private void removeOtherPlayer(final int id) {
+        if (id == PlayerRegistry.UNKNOWN) {
+            return;
+        }
+        positionBuffer.remove(id);
+        if (id < otherPlayerCircles.length && otherPlayerCircles[id] != null) {
+            otherPlayerCircles[id].remove();
+            otherPlayerCircles[id] = null;
         }
     }
 
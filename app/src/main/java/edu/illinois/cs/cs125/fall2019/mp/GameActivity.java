@@ -17,6 +17,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.WindowManager;
 
@@ -28,8 +29,10 @@ import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -55,6 +58,30 @@ public final class GameActivity extends AppCompatActivity {
     /** Color of other map elements related to the player's progress (e.g. lines connecting captured targets). */
     private static final int PLAYER_COLOR = Color.GREEN;
 
+    /** Name of the intent extra holding the ID of the game to enter. */
+    public static final String EXTRA_GAME_ID = "game";
+
+    /** Directory (under the app's files directory) where game snapshots are kept. */
+    private static final String SNAPSHOT_DIRECTORY = "snapshots";
+
+    /** The store for game snapshots, shared by all instances of this activity. */
+    private static GameSnapshotStore snapshotStore;
+
+    /** When this activity was created (SystemClock.elapsedRealtime), for measuring time to first render. */
+    private long createdAt;
+
+    /** The saved state of the game being entered, or null if there isn't one (or it hasn't loaded yet). */
+    private GameSnapshot snapshot;
+
+    /** Whether the snapshot has been drawn, or has been made unnecessary by setUpMap. */
+    private boolean snapshotRendered;
+
+    /** The markers drawn from the snapshot, removed when the real state is drawn. */
+    private List<Marker> snapshotMarkers = new ArrayList<>();
+
+    /** The lines drawn from the snapshot, removed when the real state is drawn. */
+    private List<Polyline> snapshotLines = new ArrayList<>();
+
     /** The handler for location updates sent by the location listener service. */
     private BroadcastReceiver locationUpdateReceiver;
 
@@ -87,16 +114,33 @@ public final class GameActivity extends AppCompatActivity {
     @SuppressWarnings("ConstantConditions")
     protected void onCreate(final Bundle savedInstanceState) {
         Log.i(TAG, "Creating");
+        createdAt = SystemClock.elapsedRealtime();
         // The "super" call is required for all activities
         super.onCreate(savedInstanceState);
         // Create the UI from the activity_game.xml layout file (in src/main/res/layout)
         setContentView(R.layout.activity_game);
 
-        // Create the coordinate and path arrays
-        targetLats = DefaultTargets.getLatitudes(this);
-        targetLngs = DefaultTargets.getLongitudes(this);
-        path = new int[targetLats.length];
-        Arrays.fill(path, -1); // No targets visited initially
+        // If re-entering a game, load its last saved state so it can be drawn before the server responds
+        String gameId = getIntent().getStringExtra(EXTRA_GAME_ID);
+        if (gameId != null) {
+            getSnapshotStore(this).loadAsync(gameId, loaded -> runOnUiThread(() -> {
+                snapshot = loaded;
+                renderSnapshot();
+            }));
+        }
+
+        // Create the coordinate and path arrays once the targets are loaded
+        // MainActivity started reading them in the background, so this doesn't wait for the read to finish
+        DefaultTargets.getTargetPack(this, targets -> {
+            targetLats = targets.getLatitudes().clone();
+            targetLngs = targets.getLongitudes().clone();
+            path = new int[targetLats.length];
+            Arrays.fill(path, -1); // No targets visited initially
+            // Set up the map now if it was ready first
+            if (map != null) {
+                setUpMap();
+            }
+        });
 
         // Find the Google Maps UI component ("fragment")
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
@@ -109,9 +153,13 @@ public final class GameActivity extends AppCompatActivity {
 
             // Save the map so it can be manipulated later
             map = theMap;
-            // Configure it
-            setUpMap();
-            Log.i(TAG, "getMapAsync completed");
+            // Configure it, unless the targets are still loading (then it's configured once they've loaded)
+            if (targetLats != null) {
+                setUpMap();
+            }
+            Log.i(TAG, "getMapAsync completed after " + (SystemClock.elapsedRealtime() - createdAt) + " ms");
+            // Draw the saved game state if it has already loaded
+            renderSnapshot();
         });
         Log.i(TAG, "getMapAsync started");
 
@@ -128,7 +176,7 @@ public final class GameActivity extends AppCompatActivity {
                 Location location = intent.getParcelableExtra(LocationListenerService.UPDATE_DATA_ID);
 
                 // If the location is usable, call updateLocation
-                if (map != null && location != null && location.hasAccuracy()
+                if (map != null && targetLats != null && location != null && location.hasAccuracy()
                         && location.getAccuracy() < REQUIRED_LOCATION_ACCURACY) {
                     Log.i(TAG, "Using location update");
                     // Center the map on this location if the user's location hasn't been previously found
@@ -166,6 +214,8 @@ public final class GameActivity extends AppCompatActivity {
     @SuppressWarnings("MissingPermission")
     private void setUpMap() {
         Log.i(TAG, "Entered setUpMap");
+        // The real state is drawn from here on, so the snapshot's head start is no longer needed
+        clearSnapshot();
         if (hasLocationPermission) {
             // Can only enable the blue My Location dot if the location permission is granted
             map.setMyLocationEnabled(true);
@@ -178,6 +228,74 @@ public final class GameActivity extends AppCompatActivity {
 
         // Use the provided placeMarker function to add a marker at every target's location
         // HINT: onCreate initializes the relevant arrays (targetLats, targetLngs, path) for you
+
+        Log.i(TAG, "Time to first render from targets: " + (SystemClock.elapsedRealtime() - createdAt) + " ms");
+    }
+
+    /**
+     * Gets the store for game snapshots, creating it if needed.
+     * <p>
+     * Games should be given this store with Game.enableSnapshots so their state is saved as it changes.
+     * @param context an Android context
+     * @return the shared snapshot store
+     */
+    static synchronized GameSnapshotStore getSnapshotStore(final Context context) {
+        if (snapshotStore == null) {
+            snapshotStore = new GameSnapshotStore(new File(context.getFilesDir(), SNAPSHOT_DIRECTORY));
+        }
+        return snapshotStore;
+    }
+
+    /**
+     * Draws the saved state of the game being entered, once both it and the map are ready.
+     * <p>
+     * This shows the targets, the user's captures and their path straight away, without waiting for the
+     * targets to load or the websocket to connect. The snapshot is drawn with its own markers and lines, not
+     * with placeMarker and addLine, so that setUpMap can remove them (see clearSnapshot) before drawing the
+     * real state. Nothing is drawn once setUpMap has run. Creating a Game from the server's full update also
+     * clears the map, which replaces anything that changed since the snapshot.
+     */
+    private void renderSnapshot() {
+        if (map == null || snapshot == null || snapshotRendered) {
+            return;
+        }
+        snapshotRendered = true;
+        double[] lats = snapshot.getTargetLatitudes();
+        double[] lngs = snapshot.getTargetLongitudes();
+        int[] snapshotPath = snapshot.getPath();
+        boolean[] captured = new boolean[lats.length];
+        for (int i = 0; i < snapshotPath.length; i++) {
+            int target = snapshotPath[i];
+            captured[target] = true;
+            if (i > 0) {
+                int previous = snapshotPath[i - 1];
+                addLine(lats[previous], lngs[previous], lats[target], lngs[target], PLAYER_COLOR, snapshotLines);
+            }
+        }
+        for (int i = 0; i < lats.length; i++) {
+            MarkerOptions options = new MarkerOptions().position(new LatLng(lats[i], lngs[i]));
+            if (captured[i]) {
+                options.icon(BitmapDescriptorFactory.defaultMarker(CAPTURED_MARKER_HUE));
+            }
+            snapshotMarkers.add(map.addMarker(options));
+        }
+        Log.i(TAG, "Time to first render from snapshot (version " + snapshot.getVersion() + "): "
+                + (SystemClock.elapsedRealtime() - createdAt) + " ms");
+    }
+
+    /**
+     * Removes everything renderSnapshot drew and keeps it from drawing the snapshot later.
+     */
+    private void clearSnapshot() {
+        snapshotRendered = true;
+        for (Marker marker : snapshotMarkers) {
+            marker.remove();
+        }
+        snapshotMarkers.clear();
+        for (Polyline line : snapshotLines) {
+            line.remove();
+        }
+        snapshotLines.clear();
     }
 
     /**
@@ -212,6 +330,20 @@ public final class GameActivity extends AppCompatActivity {
     @VisibleForTesting
     public void addLine(final double startLat, final double startLng,
                         final double endLat, final double endLng, final int color) {
+        addLine(startLat, startLng, endLat, endLng, color, null);
+    }
+
+    /**
+     * Adds a colored line to the Google map, keeping track of the polylines it's drawn with.
+     * @param startLat the latitude of one endpoint of the line
+     * @param startLng the longitude of that endpoint
+     * @param endLat the latitude of the other endpoint of the line
+     * @param endLng the longitude of that other endpoint
+     * @param color the color to fill the line with
+     * @param added list to add the line's polylines to, or null if they don't need to be removed later
+     */
+    private void addLine(final double startLat, final double startLng,
+                         final double endLat, final double endLng, final int color, final List<Polyline> added) {
         // Convert the loose coordinates to a Google Maps LatLng object
         LatLng start = new LatLng(startLat, startLng);
         LatLng end = new LatLng(endLat, endLng);
@@ -219,12 +351,16 @@ public final class GameActivity extends AppCompatActivity {
         // Configure and add a colored line
         final int lineThickness = 12;
         PolylineOptions fill = new PolylineOptions().add(start, end).color(color).width(lineThickness).zIndex(1);
-        map.addPolyline(fill);
+        Polyline fillLine = map.addPolyline(fill);
 
         // Polylines don't have a way to set borders, so we create a wider black line under the colored one to fake it
         final int borderThickness = 3;
         PolylineOptions border = new PolylineOptions().add(start, end).width(lineThickness + borderThickness);
-        map.addPolyline(border);
+        Polyline borderLine = map.addPolyline(border);
+        if (added != null) {
+            added.add(fillLine);
+            added.add(borderLine);
+        }
     }
 
     /**
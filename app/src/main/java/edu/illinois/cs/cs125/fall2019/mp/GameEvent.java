@@ -0,0 +1,302 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+/**
+ * An update from the game server, decoded into a typed object.
+ * <p>
+ * The frequent updates (player movement, exits and target captures) have their own subclasses with the
+ * fields already extracted, so handling them doesn't require building and searching a JSON tree. Full
+ * updates and any other update types keep their JSON, since they're rare and their contents vary by game
+ * mode. Use GameEventDecoder to decode a server message.
+ */
+public abstract class GameEvent {
+
+    /** Value of getSequence for messages without a sequence number. */
+    public static final long NO_SEQUENCE = -1;
+
+    /** The update type, as sent in the message's "type" field. */
+    private final String type;
+
+    /** The game state version this update produces, or NO_SEQUENCE. */
+    private long sequence = NO_SEQUENCE;
+
+    /**
+     * Creates an event.
+     * @param setType the update type
+     */
+    GameEvent(final String setType) {
+        type = setType;
+    }
+
+    /**
+     * Gets the update type.
+     * @return the value of the message's "type" field
+     */
+    public final String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the update's sequence number.
+     * <p>
+     * Servers that support resuming number every state change, and the number is the game state version
+     * after the change. See GameStateSync.
+     * @return the value of the message's "seq" field, or NO_SEQUENCE if it didn't have one
+     */
+    public final long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the update's sequence number. Used by GameEventDecoder.
+     * @param setSequence the value of the message's "seq" field
+     */
+    final void setSequence(final long setSequence) {
+        sequence = setSequence;
+    }
+
+    /**
+     * Adds the sequence number (if any) to the JSON form of an event.
+     * @param json the event as JSON
+     * @return the same object
+     */
+    final JsonObject withSequence(final JsonObject json) {
+        if (sequence != NO_SEQUENCE) {
+            json.addProperty("seq", sequence);
+        }
+        return json;
+    }
+
+    /**
+     * Converts this event back to the JSON form the server sent.
+     * <p>
+     * This is for code that still handles updates as JSON, like Game.handleMessage.
+     * @return the event as a JSON object, including its type
+     */
+    public abstract JsonObject toJson();
+
+    /**
+     * Another player's location changed ("playerLocation").
+     */
+    public static final class PlayerLocation extends GameEvent {
+
+        /** The update type for this event. */
+        static final String TYPE = "playerLocation";
+
+        /** The player's email. */
+        private final String email;
+
+        /** The player's team ID, or -1 if not included. */
+        private final int team;
+
+        /** The player's new latitude. */
+        private final double latitude;
+
+        /** The player's new longitude. */
+        private final double longitude;
+
+        /**
+         * Creates a player location event.
+         * @param setEmail the player's email
+         * @param setTeam the player's team ID, or -1 if not known
+         * @param setLatitude the player's latitude
+         * @param setLongitude the player's longitude
+         */
+        public PlayerLocation(final String setEmail, final int setTeam,
+                              final double setLatitude, final double setLongitude) {
+            super(TYPE);
+            email = setEmail;
+            team = setTeam;
+            latitude = setLatitude;
+            longitude = setLongitude;
+        }
+
+        /**
+         * Gets the player's email.
+         * @return the email of the player who moved
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * Gets the player's team.
+         * @return the team ID, or -1 if the server didn't include it
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the player's new latitude.
+         * @return the latitude
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Gets the player's new longitude.
+         * @return the longitude
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
+        @Override
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("email", email);
+            if (team != -1) {
+                json.addProperty("team", team);
+            }
+            json.addProperty("lastLatitude", latitude);
+            json.addProperty("lastLongitude", longitude);
+            json.addProperty("type", TYPE);
+            return withSequence(json);
+        }
+
+    }
+
+    /**
+     * Another player left the game ("playerExit").
+     */
+    public static final class PlayerExit extends GameEvent {
+
+        /** The update type for this event. */
+        static final String TYPE = "playerExit";
+
+        /** The player's email. */
+        private final String email;
+
+        /**
+         * Creates a player exit event.
+         * @param setEmail the player's email
+         */
+        public PlayerExit(final String setEmail) {
+            super(TYPE);
+            email = setEmail;
+        }
+
+        /**
+         * Gets the player's email.
+         * @return the email of the player who left
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        @Override
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("email", email);
+            json.addProperty("type", TYPE);
+            return withSequence(json);
+        }
+
+    }
+
+    /**
+     * A player captured a target ("playerTargetVisit").
+     */
+    public static final class TargetCapture extends GameEvent {
+
+        /** The update type for this event. */
+        static final String TYPE = "playerTargetVisit";
+
+        /** The capturing player's email. */
+        private final String email;
+
+        /** The capturing player's team ID. */
+        private final int team;
+
+        /** The ID of the captured target. */
+        private final String targetId;
+
+        /**
+         * Creates a target capture event.
+         * @param setEmail the capturing player's email
+         * @param setTeam the capturing player's team ID
+         * @param setTargetId the captured target's ID
+         */
+        public TargetCapture(final String setEmail, final int setTeam, final String setTargetId) {
+            super(TYPE);
+            email = setEmail;
+            team = setTeam;
+            targetId = setTargetId;
+        }
+
+        /**
+         * Gets the capturing player's email.
+         * @return the player's email
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * Gets the capturing player's team.
+         * @return the team ID
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the captured target's ID.
+         * @return the target ID
+         */
+        public String getTargetId() {
+            return targetId;
+        }
+
+        @Override
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("email", email);
+            json.addProperty("team", team);
+            json.addProperty("targetId", targetId);
+            json.addProperty("type", TYPE);
+            return withSequence(json);
+        }
+
+    }
+
+    /**
+     * The complete game state ("full"), or any other update without its own event class.
+     */
+    public static final class Full extends GameEvent {
+
+        /** The update type for full updates. */
+        static final String TYPE = "full";
+
+        /** The message as JSON. */
+        private final JsonObject json;
+
+        /**
+         * Creates an event that keeps its JSON.
+         * @param setType the update type
+         * @param setJson the whole message
+         */
+        public Full(final String setType, final JsonObject setJson) {
+            super(setType);
+            json = setJson;
+        }
+
+        /**
+         * Determines whether this is actually a full update rather than some other untyped update.
+         * @return whether the update type is "full"
+         */
+        public boolean isFullUpdate() {
+            return TYPE.equals(getType());
+        }
+
+        @Override
+        public JsonObject toJson() {
+            return json;
+        }
+
+    }
+
+}
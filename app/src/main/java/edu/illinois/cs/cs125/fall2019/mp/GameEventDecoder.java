@@ -0,0 +1,216 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Decodes websocket messages from the game server into GameEvents.
+ * <p>
+ * Messages are read with a streaming JsonReader instead of being parsed into a JSON tree first. The fields
+ * of the typed events are read straight into locals, and once the "type" field has been seen, fields a
+ * typed event doesn't need are skipped without being parsed. Only full updates and unknown update types
+ * build a JsonObject.
+ */
+public final class GameEventDecoder {
+
+    /** The Gson parser used for nested values that have to be kept as JSON. */
+    private static JsonParser jsonParser = new JsonParser();
+
+    /** Private constructor to prevent creating instances. */
+    private GameEventDecoder() { }
+
+    /**
+     * Decodes one message from the server.
+     * @param text the message text (a JSON object with a "type" property)
+     * @return the decoded event
+     * @throws JsonParseException if the message isn't a valid JSON object with a type, its sequence number
+     * isn't a number, or it's a typed event whose team or position isn't a number
+     */
+    public static GameEvent decode(final String text) {
+        try (JsonReader reader = new JsonReader(new StringReader(text))) {
+            return decode(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonParseException("Malformed game server message", e);
+        }
+    }
+
+    /**
+     * Decodes one message from a reader positioned at the start of the message object.
+     * @param reader the JSON reader
+     * @return the decoded event
+     * @throws IOException if the reader's input is malformed
+     */
+    private static GameEvent decode(final JsonReader reader) throws IOException {
+        String type = null;
+        String email = null;
+        String targetId = null;
+        int team = -1;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        long sequence = GameEvent.NO_SEQUENCE;
+        // The name of a typed event field that held something other than a number or null
+        String nonNumeric = null;
+        // Every other field, kept only while the type is unknown or untyped
+        JsonObject other = new JsonObject();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type":
+                    type = reader.nextString();
+                    if (isTyped(type)) {
+                        other = null;
+                    }
+                    break;
+                case "email":
+                    email = readString(reader);
+                    break;
+                case "team":
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        team = reader.nextInt();
+                    } else {
+                        nonNumeric = checkNumeric(reader, nonNumeric, name);
+                        readOther(reader, other, name);
+                    }
+                    break;
+                case "lastLatitude":
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        latitude = reader.nextDouble();
+                    } else {
+                        nonNumeric = checkNumeric(reader, nonNumeric, name);
+                        readOther(reader, other, name);
+                    }
+                    break;
+                case "lastLongitude":
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        longitude = reader.nextDouble();
+                    } else {
+                        nonNumeric = checkNumeric(reader, nonNumeric, name);
+                        readOther(reader, other, name);
+                    }
+                    break;
+                case "targetId":
+                    targetId = readString(reader);
+                    break;
+                case "seq":
+                    sequence = reader.nextLong();
+                    break;
+                default:
+                    readOther(reader, other, name);
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (type == null) {
+            throw new JsonParseException("Game server message has no type");
+        }
+        if (nonNumeric != null && isTyped(type)) {
+            throw new JsonParseException("Game server message has a non-numeric " + nonNumeric);
+        }
+        GameEvent event;
+        switch (type) {
+            case GameEvent.PlayerLocation.TYPE:
+                event = new GameEvent.PlayerLocation(email, team, latitude, longitude);
+                break;
+            case GameEvent.PlayerExit.TYPE:
+                event = new GameEvent.PlayerExit(email);
+                break;
+            case GameEvent.TargetCapture.TYPE:
+                event = new GameEvent.TargetCapture(email, team, targetId);
+                break;
+            default:
+                // Put back the fields that were read into locals
+                if (email != null) {
+                    other.addProperty("email", email);
+                }
+                if (team != -1) {
+                    other.addProperty("team", team);
+                }
+                if (!Double.isNaN(latitude)) {
+                    other.addProperty("lastLatitude", latitude);
+                }
+                if (!Double.isNaN(longitude)) {
+                    other.addProperty("lastLongitude", longitude);
+                }
+                if (targetId != null) {
+                    other.addProperty("targetId", targetId);
+                }
+                if (sequence != GameEvent.NO_SEQUENCE) {
+                    other.addProperty("seq", sequence);
+                }
+                other.addProperty("type", type);
+                event = new GameEvent.Full(type, other);
+                break;
+        }
+        event.setSequence(sequence);
+        return event;
+    }
+
+    /**
+     * Determines whether an update type is decoded into its own event class.
+     * @param type the update type
+     * @return whether other fields of the message can be skipped
+     */
+    private static boolean isTyped(final String type) {
+        return GameEvent.PlayerLocation.TYPE.equals(type) || GameEvent.PlayerExit.TYPE.equals(type)
+                || GameEvent.TargetCapture.TYPE.equals(type);
+    }
+
+    /**
+     * Notes a typed event field whose value isn't a number.
+     * <p>
+     * Null is allowed (the field is treated as missing). Anything else is only an error if the message turns
+     * out to be a typed event, since unknown update types keep the field as it was sent.
+     * @param reader the JSON reader, positioned at the value
+     * @param nonNumeric the name of a field already found not to be numeric, or null
+     * @param name the property name
+     * @return the name of the first non-numeric field so far, or null if there isn't one
+     * @throws IOException if the reader's input is malformed
+     */
+    private static String checkNumeric(final JsonReader reader, final String nonNumeric,
+                                       final String name) throws IOException {
+        if (nonNumeric != null || reader.peek() == JsonToken.NULL) {
+            return nonNumeric;
+        }
+        return name;
+    }
+
+    /**
+     * Reads a string value, allowing null.
+     * @param reader the JSON reader, positioned at the value
+     * @return the string, or null if the value was null
+     * @throws IOException if the reader's input is malformed
+     */
+    private static String readString(final JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Reads a value that isn't one of the typed events' fields.
+     * @param reader the JSON reader, positioned at the value
+     * @param other the object collecting untyped fields, or null if the value should be skipped
+     * @param name the property name
+     * @throws IOException if the reader's input is malformed
+     */
+    private static void readOther(final JsonReader reader, final JsonObject other,
+                                  final String name) throws IOException {
+        if (other == null) {
+            reader.skipValue();
+            return;
+        }
+        other.add(name, jsonParser.parse(reader));
+    }
+
+}
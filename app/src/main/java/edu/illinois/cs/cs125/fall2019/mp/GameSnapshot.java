@@ -0,0 +1,351 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A saved copy of a game's state, used to draw the game immediately when it's re-entered.
+ * <p>
+ * A snapshot holds what's needed for the first frame: the game's mode, state and settings, the targets and
+ * their claims, the other players' teams, states and positions, and the user's own path, all taken from the
+ * game's GameEngine. It's stored in a compact binary form (see write) so loading it doesn't involve parsing
+ * JSON. Snapshots are only a head start; the full update from the server replaces them as soon as it arrives.
+ * Area mode cells aren't included.
+ */
+public final class GameSnapshot {
+
+    /** Magic number at the start of every snapshot file. */
+    static final int MAGIC = 0x47534E50;
+
+    /** The snapshot format version this class can read. */
+    static final int FORMAT_VERSION = 1;
+
+    /** Largest target or player count accepted when reading, to reject corrupt files before allocating. */
+    private static final int MAX_COUNT = 1 << 20;
+
+    /** The Gson parser used to parse the stored properties. */
+    private static JsonParser jsonParser = new JsonParser();
+
+    /** The game state version the snapshot was taken at, or GameEvent.NO_SEQUENCE. */
+    private long version;
+
+    /** When the snapshot was taken (milliseconds since the epoch). */
+    private long savedAt;
+
+    /** The game's mode, state and settings, as JSON (see GameEngine.createProperties). */
+    private String properties;
+
+    /** Target IDs. */
+    private String[] targetIds;
+
+    /** Target latitudes. */
+    private double[] targetLatitudes;
+
+    /** Target longitudes. */
+    private double[] targetLongitudes;
+
+    /** The team that has claimed each target. */
+    private int[] targetTeams;
+
+    /** Player emails. */
+    private String[] playerEmails;
+
+    /** Player teams. */
+    private int[] playerTeams;
+
+    /** Player states. */
+    private int[] playerStates;
+
+    /** Player latitudes (NaN if unknown). */
+    private double[] playerLatitudes;
+
+    /** Player longitudes (NaN if unknown). */
+    private double[] playerLongitudes;
+
+    /** The user's email. */
+    private String email;
+
+    /** The indexes of the targets the user has captured, in order. */
+    private int[] path;
+
+    /** Private constructor - use capture or read. */
+    private GameSnapshot() { }
+
+    /**
+     * Takes a snapshot of a game's state.
+     * @param engine the game's engine
+     * @param stateVersion the version of the state the engine holds, or GameEvent.NO_SEQUENCE
+     * @param userEmail the user's email
+     * @param now the current time in milliseconds since the epoch
+     * @return a snapshot that shares nothing with the engine
+     */
+    public static GameSnapshot capture(final GameEngine engine, final long stateVersion, final String userEmail,
+                                       final long now) {
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.version = stateVersion;
+        snapshot.savedAt = now;
+        snapshot.properties = engine.createProperties().toString();
+        snapshot.email = userEmail;
+        int targetCount = 0;
+        if (!engine.isAreaMode()) {
+            targetCount = engine.getObjectiveCount();
+        }
+        snapshot.allocateTargets(targetCount);
+        for (int i = 0; i < targetCount; i++) {
+            snapshot.targetIds[i] = engine.getTargetId(i);
+            snapshot.targetLatitudes[i] = engine.getTargetLatitude(i);
+            snapshot.targetLongitudes[i] = engine.getTargetLongitude(i);
+            snapshot.targetTeams[i] = engine.getClaim(i);
+        }
+        PlayerRegistry players = engine.getPlayers();
+        snapshot.allocatePlayers(players.size());
+        for (int i = 0; i < snapshot.playerEmails.length; i++) {
+            snapshot.playerEmails[i] = players.getEmail(i);
+            snapshot.playerTeams[i] = players.getTeam(i);
+            snapshot.playerStates[i] = players.getState(i);
+            snapshot.playerLatitudes[i] = players.getLatitude(i);
+            snapshot.playerLongitudes[i] = players.getLongitude(i);
+        }
+        snapshot.path = new int[0];
+        if (!engine.isAreaMode()) {
+            snapshot.path = engine.getPath(players.idOf(userEmail));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Creates the target arrays.
+     * @param count the number of targets
+     */
+    private void allocateTargets(final int count) {
+        targetIds = new String[count];
+        targetLatitudes = new double[count];
+        targetLongitudes = new double[count];
+        targetTeams = new int[count];
+    }
+
+    /**
+     * Creates the player arrays.
+     * @param count the number of players
+     */
+    private void allocatePlayers(final int count) {
+        playerEmails = new String[count];
+        playerTeams = new int[count];
+        playerStates = new int[count];
+        playerLatitudes = new double[count];
+        playerLongitudes = new double[count];
+    }
+
+    /**
+     * Writes the snapshot.
+     * <p>
+     * The format is: the magic number and format version (ints), the state version and save time (longs),
+     * the properties JSON and the user's email (modified UTF-8), the target count followed by each target's
+     * ID, latitude, longitude and claiming team, the player count followed by each player's email, team,
+     * state, latitude and longitude, and finally the path length followed by the path's target indexes.
+     * @param output stream to write to (not closed by this method)
+     * @throws IOException if the stream couldn't be written
+     */
+    public void write(final OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(version);
+        data.writeLong(savedAt);
+        data.writeUTF(properties);
+        data.writeUTF(email);
+        data.writeInt(targetIds.length);
+        for (int i = 0; i < targetIds.length; i++) {
+            data.writeUTF(targetIds[i]);
+            data.writeDouble(targetLatitudes[i]);
+            data.writeDouble(targetLongitudes[i]);
+            data.writeInt(targetTeams[i]);
+        }
+        data.writeInt(playerEmails.length);
+        for (int i = 0; i < playerEmails.length; i++) {
+            data.writeUTF(playerEmails[i]);
+            data.writeInt(playerTeams[i]);
+            data.writeInt(playerStates[i]);
+            data.writeDouble(playerLatitudes[i]);
+            data.writeDouble(playerLongitudes[i]);
+        }
+        data.writeInt(path.length);
+        for (int index : path) {
+            data.writeInt(index);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot.
+     * @param input stream to read from (not closed by this method)
+     * @return the loaded snapshot
+     * @throws IOException if the stream couldn't be read or doesn't contain a valid snapshot
+     */
+    public static GameSnapshot read(final InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        int format = data.readInt();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported game snapshot version " + format);
+        }
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.version = data.readLong();
+        snapshot.savedAt = data.readLong();
+        snapshot.properties = data.readUTF();
+        snapshot.email = data.readUTF();
+        int targetCount = readCount(data);
+        snapshot.allocateTargets(targetCount);
+        for (int i = 0; i < targetCount; i++) {
+            snapshot.targetIds[i] = data.readUTF();
+            snapshot.targetLatitudes[i] = data.readDouble();
+            snapshot.targetLongitudes[i] = data.readDouble();
+            snapshot.targetTeams[i] = data.readInt();
+        }
+        int playerCount = readCount(data);
+        snapshot.allocatePlayers(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            snapshot.playerEmails[i] = data.readUTF();
+            snapshot.playerTeams[i] = data.readInt();
+            snapshot.playerStates[i] = data.readInt();
+            snapshot.playerLatitudes[i] = data.readDouble();
+            snapshot.playerLongitudes[i] = data.readDouble();
+        }
+        snapshot.path = new int[readCount(data)];
+        for (int i = 0; i < snapshot.path.length; i++) {
+            snapshot.path[i] = data.readInt();
+            if (snapshot.path[i] < 0 || snapshot.path[i] >= targetCount) {
+                throw new IOException("Game snapshot path refers to a nonexistent target");
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads an array length and makes sure it's plausible.
+     * @param data the stream to read from
+     * @return the length
+     * @throws IOException if the length is negative or implausibly large
+     */
+    private static int readCount(final DataInputStream data) throws IOException {
+        int count = data.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Game snapshot is corrupt");
+        }
+        return count;
+    }
+
+    /**
+     * Converts the snapshot to the form of a full update from the server.
+     * <p>
+     * This lets code that renders full updates (like the Game constructor) draw the snapshot.
+     * @return a full update with the snapshot's properties, targets and players
+     */
+    public JsonObject toFullUpdate() {
+        JsonObject full = jsonParser.parse(properties).getAsJsonObject();
+        full.addProperty("type", "full");
+        if (version != GameEvent.NO_SEQUENCE) {
+            full.addProperty("seq", version);
+        }
+        JsonArray targets = new JsonArray();
+        for (int i = 0; i < targetIds.length; i++) {
+            targets.add(targetJson(i));
+        }
+        full.add("targets", targets);
+        JsonArray players = new JsonArray();
+        for (int i = 0; i < playerEmails.length; i++) {
+            JsonObject player = new JsonObject();
+            player.addProperty("email", playerEmails[i]);
+            player.addProperty("team", playerTeams[i]);
+            player.addProperty("state", playerStates[i]);
+            if (!Double.isNaN(playerLatitudes[i])) {
+                player.addProperty("lastLatitude", playerLatitudes[i]);
+                player.addProperty("lastLongitude", playerLongitudes[i]);
+            }
+            JsonArray playerPath = new JsonArray();
+            if (playerEmails[i].equals(email)) {
+                for (int index : path) {
+                    playerPath.add(targetJson(index));
+                }
+            }
+            player.add("path", playerPath);
+            players.add(player);
+        }
+        full.add("players", players);
+        return full;
+    }
+
+    /**
+     * Converts a target to the form used in full updates.
+     * @param index the target index
+     * @return the target as JSON
+     */
+    private JsonObject targetJson(final int index) {
+        JsonObject target = new JsonObject();
+        target.addProperty("id", targetIds[index]);
+        target.addProperty("latitude", targetLatitudes[index]);
+        target.addProperty("longitude", targetLongitudes[index]);
+        target.addProperty("team", targetTeams[index]);
+        return target;
+    }
+
+    /**
+     * Gets the game state version the snapshot was taken at.
+     * @return the sequence number, or GameEvent.NO_SEQUENCE if the server doesn't number updates
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets when the snapshot was taken.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    /**
+     * Gets the latitudes of the targets.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getTargetLatitudes() {
+        return targetLatitudes;
+    }
+
+    /**
+     * Gets the longitudes of the targets.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getTargetLongitudes() {
+        return targetLongitudes;
+    }
+
+    /**
+     * Gets the team that has claimed each target.
+     * @return the backing array (must not be modified)
+     */
+    public int[] getTargetTeams() {
+        return targetTeams;
+    }
+
+    /**
+     * Gets the user's path.
+     * @return the backing array of captured target indexes (must not be modified)
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+}
@@ -0,0 +1,155 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Saves and loads game snapshots, one file per game ID.
+ * <p>
+ * Saving and loading happen on a background thread. Saves are coalesced: if a game's snapshot is saved
+ * again before the previous save has been written, only the newest snapshot is written. Each file is
+ * written to a temporary file first and then renamed, so a crash mid-write leaves the previous snapshot
+ * intact.
+ */
+public final class GameSnapshotStore {
+
+    /** Extension of snapshot files. */
+    private static final String EXTENSION = ".snapshot";
+
+    /** The directory holding the snapshot files. */
+    private final File directory;
+
+    /** The thread that reads and writes snapshot files. */
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GameSnapshotStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Snapshots waiting to be written, by game ID. */
+    private final Map<String, GameSnapshot> pending = new HashMap<>();
+
+    /**
+     * Creates a store.
+     * @param setDirectory the directory to keep snapshots in (created if needed), e.g. under the app's files dir
+     */
+    public GameSnapshotStore(final File setDirectory) {
+        directory = setDirectory;
+    }
+
+    /**
+     * Gets the file a game's snapshot is stored in.
+     * @param gameId the game ID
+     * @return the snapshot file
+     */
+    private File fileFor(final String gameId) {
+        return new File(directory, gameId.replaceAll("[^A-Za-z0-9_-]", "_") + EXTENSION);
+    }
+
+    /**
+     * Saves a game's snapshot in the background, replacing any earlier snapshot of the game.
+     * @param gameId the game ID
+     * @param snapshot the snapshot to save
+     */
+    public void save(final String gameId, final GameSnapshot snapshot) {
+        synchronized (pending) {
+            if (pending.put(gameId, snapshot) != null) {
+                // A write for this game is already queued and will pick up the new snapshot
+                return;
+            }
+        }
+        io.execute(() -> {
+            GameSnapshot latest;
+            synchronized (pending) {
+                latest = pending.remove(gameId);
+            }
+            if (latest == null) {
+                // Deleted before it could be written
+                return;
+            }
+            try {
+                write(gameId, latest);
+            } catch (IOException e) {
+                // Snapshots are only an optimization - the server's full update is authoritative
+                fileFor(gameId).delete();
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot file on the current thread.
+     * @param gameId the game ID
+     * @param snapshot the snapshot to write
+     * @throws IOException if the file couldn't be written
+     */
+    private void write(final String gameId, final GameSnapshot snapshot) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+        File file = fileFor(gameId);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try (OutputStream output = new FileOutputStream(temporary)) {
+            snapshot.write(output);
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+
+    /**
+     * Loads a game's snapshot on the current thread.
+     * <p>
+     * A corrupt snapshot file is deleted.
+     * @param gameId the game ID
+     * @return the snapshot, or null if there isn't a usable one
+     */
+    public GameSnapshot load(final String gameId) {
+        synchronized (pending) {
+            GameSnapshot unwritten = pending.get(gameId);
+            if (unwritten != null) {
+                return unwritten;
+            }
+        }
+        File file = fileFor(gameId);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            return GameSnapshot.read(input);
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Loads a game's snapshot in the background.
+     * @param gameId the game ID
+     * @param callback receives the snapshot, or null if there isn't a usable one (called on the background thread)
+     */
+    public void loadAsync(final String gameId, final Consumer<GameSnapshot> callback) {
+        io.execute(() -> callback.accept(load(gameId)));
+    }
+
+    /**
+     * Deletes a game's snapshot, e.g. because the game has ended.
+     * @param gameId the game ID
+     */
+    public void delete(final String gameId) {
+        synchronized (pending) {
+            pending.remove(gameId);
+        }
+        io.execute(() -> fileFor(gameId).delete());
+    }
+
+}
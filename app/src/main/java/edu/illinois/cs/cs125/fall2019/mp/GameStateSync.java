@@ -0,0 +1,204 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the version of a game's state so the client can catch up after a reconnect without a full update.
+ * <p>
+ * The server numbers every state change. A full update's "seq" property is the version of the snapshot it
+ * contains, and each later update's "seq" is the version after that change, so updates normally arrive with
+ * consecutive numbers. After reconnecting, the client sends a resume request ({"type": "resume",
+ * "since": version}) and the server answers with either a full update or one compact diff covering every
+ * change since that version:
+ * <pre>
+ * {"type": "diff", "from": 41, "seq": 57,
+ *  "claims": [{"targetId": "...", "email": "...", "team": 2}],
+ *  "moves": [{"email": "...", "team": 1, "lastLatitude": 40.1, "lastLongitude": -88.2}],
+ *  "exits": ["someone@example.com"]}
+ * </pre>
+ * A diff lists each player at most once, with only their last position or their exit, so its size depends
+ * on how many players and targets changed rather than on how many updates were missed. The server falls
+ * back to a full update when it no longer has the changes since the requested version.
+ * <p>
+ * This class only tracks the version; the state itself is kept by the game's GameEngine. The caller applies
+ * each update that accept lets through, and the changes returned by applyDiff, to the engine.
+ * <p>
+ * Messages without sequence numbers (from servers that don't support resuming) are always applied.
+ * <p>
+ * A resume request can be lost, e.g. if the connection drops again before it's answered. So while one is
+ * outstanding, another gap only triggers a new request once {@value #RESUME_TIMEOUT} milliseconds have passed
+ * (see shouldResume); otherwise every later update would be dropped waiting for an answer that never comes.
+ */
+public final class GameStateSync {
+
+    /** What happened to an update passed to accept. */
+    public enum Result {
+
+        /** The update was the next one (or unnumbered) and should be applied. */
+        APPLIED,
+
+        /** The update was already reflected in the state and should be ignored. */
+        DUPLICATE,
+
+        /** Updates were missed before this one; it wasn't applied, and the client should resume. */
+        GAP
+
+    }
+
+    /** Type of resume requests. */
+    public static final String RESUME_TYPE = "resume";
+
+    /** Type of diff updates. */
+    public static final String DIFF_TYPE = "diff";
+
+    /** Time (milliseconds) to wait for the answer to a resume request before sending another. */
+    public static final long RESUME_TIMEOUT = 5000;
+
+    /** Value of resumeRequested when no resume request is outstanding. */
+    private static final long NOT_RESUMING = Long.MIN_VALUE;
+
+    /** When the outstanding resume request was sent (milliseconds), or NOT_RESUMING if there isn't one. */
+    private long resumeRequested = NOT_RESUMING;
+
+    /** The state version, or GameEvent.NO_SEQUENCE if the server doesn't number updates. */
+    private long version;
+
+    /**
+     * Starts tracking a game.
+     * @param full the "full" update from the server
+     */
+    public GameStateSync(final JsonObject full) {
+        reset(full);
+    }
+
+    /**
+     * Restarts tracking from a full update, e.g. one sent in response to a resume request.
+     * @param full the "full" update from the server
+     */
+    public void reset(final JsonObject full) {
+        resumeRequested = NOT_RESUMING;
+        version = GameEvent.NO_SEQUENCE;
+        if (full.has("seq")) {
+            version = full.get("seq").getAsLong();
+        }
+    }
+
+    /**
+     * Checks an update's sequence number and advances the version if it's the next one.
+     * @param event an update from the server
+     * @return whether the update should be applied, was already seen, or came after a gap
+     */
+    public Result accept(final GameEvent event) {
+        long sequence = event.getSequence();
+        if (sequence != GameEvent.NO_SEQUENCE && version != GameEvent.NO_SEQUENCE) {
+            if (sequence <= version) {
+                return Result.DUPLICATE;
+            } else if (sequence > version + 1) {
+                return Result.GAP;
+            }
+        }
+        if (sequence != GameEvent.NO_SEQUENCE) {
+            version = sequence;
+        }
+        return Result.APPLIED;
+    }
+
+    /**
+     * Reads a diff sent in response to a resume request and advances the version to its end.
+     * <p>
+     * The changes are returned as ordinary events so they can be applied and rendered the same way as live
+     * updates.
+     * @param diff the "diff" update from the server
+     * @return the changes in the diff (target captures, then player locations, then player exits)
+     * @throws IllegalArgumentException if the diff doesn't start at or before the current version
+     */
+    public List<GameEvent> applyDiff(final JsonObject diff) {
+        long from = diff.get("from").getAsLong();
+        long to = diff.get("seq").getAsLong();
+        if (from > version) {
+            throw new IllegalArgumentException("Diff starts at version " + from + " but state is at " + version);
+        }
+        resumeRequested = NOT_RESUMING;
+        List<GameEvent> changes = new ArrayList<>();
+        if (to <= version) {
+            return changes;
+        }
+        if (diff.has("claims")) {
+            for (JsonElement c : diff.getAsJsonArray("claims")) {
+                JsonObject claim = c.getAsJsonObject();
+                changes.add(new GameEvent.TargetCapture(claim.get("email").getAsString(),
+                        claim.get("team").getAsInt(), claim.get("targetId").getAsString()));
+            }
+        }
+        if (diff.has("moves")) {
+            for (JsonElement m : diff.getAsJsonArray("moves")) {
+                JsonObject move = m.getAsJsonObject();
+                int team = -1;
+                if (move.has("team")) {
+                    team = move.get("team").getAsInt();
+                }
+                changes.add(new GameEvent.PlayerLocation(move.get("email").getAsString(), team,
+                        move.get("lastLatitude").getAsDouble(), move.get("lastLongitude").getAsDouble()));
+            }
+        }
+        if (diff.has("exits")) {
+            for (JsonElement e : diff.getAsJsonArray("exits")) {
+                changes.add(new GameEvent.PlayerExit(e.getAsString()));
+            }
+        }
+        version = to;
+        return changes;
+    }
+
+    /**
+     * Creates the message asking the server for the changes since the tracked version.
+     * @return a resume request to send after reconnecting
+     */
+    public JsonObject createResumeRequest() {
+        JsonObject request = new JsonObject();
+        request.addProperty("type", RESUME_TYPE);
+        request.addProperty("since", version);
+        return request;
+    }
+
+    /**
+     * Creates a resume request and records that it's outstanding until a diff or full update arrives.
+     * @param now the current time in milliseconds
+     * @return a resume request to send
+     */
+    public JsonObject requestResume(final long now) {
+        resumeRequested = now;
+        return createResumeRequest();
+    }
+
+    /**
+     * Checks whether a resume request should be sent after a gap.
+     * @param now the current time in milliseconds
+     * @return true if no resume request is outstanding or the outstanding one has gone unanswered for
+     * RESUME_TIMEOUT, false if its answer should still be waited for
+     */
+    public boolean shouldResume(final long now) {
+        return resumeRequested == NOT_RESUMING || now - resumeRequested >= RESUME_TIMEOUT;
+    }
+
+    /**
+     * Checks whether a resume request has been sent and not yet answered.
+     * @return whether a diff or full update is awaited
+     */
+    public boolean isResumePending() {
+        return resumeRequested != NOT_RESUMING;
+    }
+
+    /**
+     * Gets the tracked state version.
+     * @return the sequence number of the last applied update, or GameEvent.NO_SEQUENCE if not numbered
+     */
+    public long getVersion() {
+        return version;
+    }
+
+}
@@ -0,0 +1,367 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Keeps the signed-in user's Firebase ID token so requests can start without waiting for getIdToken.
+ * <p>
+ * A cached token is handed out synchronously as long as it has at least {@value #MIN_REMAINING} milliseconds
+ * left. Otherwise one getIdToken call is made and every request that arrives meanwhile waits for it. While
+ * the token is in use, it's refreshed in the background {@value #REFRESH_MARGIN} milliseconds before it
+ * expires, so requests keep hitting the cache; a token that hasn't been used since it was fetched is left to
+ * expire. The token is dropped if a different user signs in. Tokens are always fetched for the user who is
+ * signed in at the time.
+ * <p>
+ * The hit and miss counts and the average getIdToken latency are kept to show how much waiting the cache
+ * saves: each hit saves about one average fetch.
+ */
+public final class IdTokenCache {
+
+    /** Tag for logged messages. */
+    private static final String TAG = "IdTokenCache";
+
+    /** How long (milliseconds) before expiry the token is refreshed in the background. */
+    static final long REFRESH_MARGIN = TimeUnit.MINUTES.toMillis(5);
+
+    /** How long (milliseconds) a cached token must still be valid to be handed out. */
+    static final long MIN_REMAINING = TimeUnit.MINUTES.toMillis(1);
+
+    /** Where tokens come from. */
+    private final TokenSource source;
+
+    /** Arranges for refreshIfDue to be called after a delay in milliseconds. */
+    private final LongConsumer refreshScheduler;
+
+    /** Source of the current time (milliseconds since the epoch). */
+    private final LongSupplier clock;
+
+    /** Callbacks waiting for the token being fetched. */
+    private final List<Consumer<String>> waiting = new ArrayList<>();
+
+    /** Error callbacks of the requests in waiting, in the same order. */
+    private final List<Consumer<Exception>> waitingErrors = new ArrayList<>();
+
+    /** The cached token, or null if there isn't one. */
+    private String token;
+
+    /** When the cached token expires (milliseconds since the epoch). */
+    private long expiresAt;
+
+    /** The UID of the user the cached token belongs to. */
+    private String uid;
+
+    /** Whether a getIdToken call is in progress. */
+    private boolean fetching;
+
+    /** Whether the cached token has been handed out since it was fetched. */
+    private boolean usedSinceFetch;
+
+    /** When the cached token should be refreshed (milliseconds since the epoch), or Long.MAX_VALUE if never. */
+    private long refreshAt = Long.MAX_VALUE;
+
+    /** Number of requests served from the cache. */
+    private long hits;
+
+    /** Number of requests that had to wait for getIdToken. */
+    private long misses;
+
+    /** Number of getIdToken calls that completed successfully. */
+    private long fetches;
+
+    /** Total time (milliseconds) spent waiting for successful getIdToken calls. */
+    private long fetchMillis;
+
+    /**
+     * Source of Firebase ID tokens for the signed-in user.
+     */
+    interface TokenSource {
+
+        /**
+         * Gets the UID of the signed-in user.
+         * @return the UID, or null if no one is signed in
+         */
+        String getSignedInUid();
+
+        /**
+         * Gets a token for the signed-in user.
+         * @param forceRefresh whether to get a new token even if the source's own is still valid
+         * @param onToken callback to run with the token and its expiration time (seconds since the epoch)
+         * @param onError callback to run if getting a token failed
+         */
+        void getIdToken(boolean forceRefresh, ObjLongConsumer<String> onToken, Consumer<Exception> onError);
+
+    }
+
+    /**
+     * Gets tokens from Firebase Authentication.
+     */
+    private static final class FirebaseTokenSource implements TokenSource {
+
+        @Override
+        public String getSignedInUid() {
+            FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+            if (user == null) {
+                return null;
+            }
+            return user.getUid();
+        }
+
+        @Override
+        public void getIdToken(final boolean forceRefresh, final ObjLongConsumer<String> onToken,
+                               final Consumer<Exception> onError) {
+            FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+            if (user == null) {
+                onError.accept(new IllegalStateException("No user is signed in"));
+                return;
+            }
+            user.getIdToken(forceRefresh)
+                    .addOnSuccessListener(result -> onToken.accept(result.getToken(), result.getExpirationTimestamp()))
+                    .addOnFailureListener(onError::accept);
+        }
+
+    }
+
+    /**
+     * Creates a cache that gets tokens from Firebase Authentication and refreshes them on the main thread.
+     */
+    public IdTokenCache() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        source = new FirebaseTokenSource();
+        refreshScheduler = delay -> handler.postDelayed(this::refreshIfDue, delay);
+        clock = System::currentTimeMillis;
+    }
+
+    /**
+     * Creates a cache with a different token source, e.g. a fake one.
+     * @param setSource where tokens come from
+     * @param setRefreshScheduler callback that arranges for refreshIfDue to be called after a delay in
+     *                            milliseconds
+     * @param setClock source of the current time in milliseconds since the epoch
+     */
+    IdTokenCache(final TokenSource setSource, final LongConsumer setRefreshScheduler, final LongSupplier setClock) {
+        source = setSource;
+        refreshScheduler = setRefreshScheduler;
+        clock = setClock;
+    }
+
+    /**
+     * Gets a token for a user, synchronously if a fresh one is cached.
+     * <p>
+     * onToken runs before this returns if the cache has a token, and on the main thread once getIdToken
+     * completes if it doesn't.
+     * @param user the signed-in user
+     * @param onToken callback to run with the token
+     * @param onError callback to run if getting a token failed
+     */
+    public void getToken(final FirebaseUser user, final Consumer<String> onToken,
+                         final Consumer<Exception> onError) {
+        getToken(user.getUid(), onToken, onError);
+    }
+
+    /**
+     * Gets a token for a user by UID, synchronously if a fresh one is cached.
+     * @param forUid the UID of the signed-in user
+     * @param onToken callback to run with the token
+     * @param onError callback to run if getting a token failed
+     */
+    void getToken(final String forUid, final Consumer<String> onToken, final Consumer<Exception> onError) {
+        String cached;
+        synchronized (this) {
+            if (!forUid.equals(uid)) {
+                token = null;
+                uid = forUid;
+                refreshAt = Long.MAX_VALUE;
+            }
+            cached = token;
+            if (cached != null && clock.getAsLong() > expiresAt - MIN_REMAINING) {
+                cached = null;
+            }
+            if (cached != null) {
+                hits++;
+                usedSinceFetch = true;
+            } else {
+                misses++;
+                waiting.add(onToken);
+                waitingErrors.add(onError);
+            }
+        }
+        if (cached != null) {
+            onToken.accept(cached);
+        } else {
+            fetch(false);
+        }
+    }
+
+    /**
+     * Gets a token for the signed-in user unless a fetch is already in progress.
+     * <p>
+     * The fetch fails if the signed-in user isn't the one the latest request was for.
+     * @param forceRefresh whether to ask Firebase for a new token even if its own is still valid
+     */
+    private void fetch(final boolean forceRefresh) {
+        String forUid = source.getSignedInUid();
+        boolean signedIn;
+        synchronized (this) {
+            if (fetching) {
+                return;
+            }
+            fetching = true;
+            signedIn = forUid != null && forUid.equals(uid);
+        }
+        if (!signedIn) {
+            failed(new IllegalStateException("The user the token was requested for isn't signed in"));
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        source.getIdToken(forceRefresh, (newToken, expiration) ->
+                fetched(forUid, newToken, expiration, SystemClock.elapsedRealtime() - start), this::failed);
+    }
+
+    /**
+     * Caches a new token, schedules its refresh and hands it to the waiting requests.
+     * @param forUid the UID of the user the token was fetched for
+     * @param newToken the token
+     * @param expiration when the token expires (seconds since the epoch)
+     * @param latency how long (milliseconds) getting the token took
+     */
+    private void fetched(final String forUid, final String newToken, final long expiration, final long latency) {
+        List<Consumer<String>> callbacks;
+        long refreshDelay;
+        synchronized (this) {
+            fetching = false;
+            fetches++;
+            fetchMillis += latency;
+            if (!forUid.equals(uid)) {
+                callbacks = null;
+                refreshDelay = 0;
+            } else {
+                callbacks = new ArrayList<>(waiting);
+                waiting.clear();
+                waitingErrors.clear();
+                token = newToken;
+                expiresAt = TimeUnit.SECONDS.toMillis(expiration);
+                usedSinceFetch = !callbacks.isEmpty();
+                refreshAt = expiresAt - REFRESH_MARGIN;
+                refreshDelay = Math.max(0, refreshAt - clock.getAsLong());
+                Log.i(TAG, "Got Firebase ID token in " + latency + " ms; " + hits + " hits, " + misses + " misses");
+            }
+        }
+        if (callbacks == null) {
+            // Another user signed in meanwhile, so the waiting requests need their token instead
+            if (hasWaiting()) {
+                fetch(false);
+            }
+            return;
+        }
+        refreshScheduler.accept(refreshDelay);
+        for (Consumer<String> callback : callbacks) {
+            callback.accept(newToken);
+        }
+    }
+
+    /**
+     * Determines whether any requests are waiting for a token.
+     * @return whether the next fetch has callbacks to run
+     */
+    private synchronized boolean hasWaiting() {
+        return !waiting.isEmpty();
+    }
+
+    /**
+     * Reports a failed getIdToken call to the waiting requests.
+     * @param e the failure
+     */
+    private void failed(final Exception e) {
+        List<Consumer<Exception>> callbacks;
+        synchronized (this) {
+            fetching = false;
+            callbacks = new ArrayList<>(waitingErrors);
+            waiting.clear();
+            waitingErrors.clear();
+        }
+        Log.w(TAG, "Couldn't get a Firebase ID token", e);
+        for (Consumer<Exception> callback : callbacks) {
+            callback.accept(e);
+        }
+    }
+
+    /**
+     * Fetches a new token ahead of expiry if it's time, the current one is in use and its user is still signed in.
+     * <p>
+     * Calls scheduled for an earlier token, or before the refresh is due, do nothing.
+     */
+    void refreshIfDue() {
+        String signedIn = source.getSignedInUid();
+        synchronized (this) {
+            if (clock.getAsLong() < refreshAt) {
+                return;
+            }
+            refreshAt = Long.MAX_VALUE;
+            if (!usedSinceFetch || signedIn == null || !signedIn.equals(uid)) {
+                return;
+            }
+        }
+        fetch(true);
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     * @return how many requests got a token without waiting
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of requests that had to wait for getIdToken.
+     * @return how many requests missed the cache
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of requests served from the cache.
+     * @return the hit rate between 0 and 1, or 0 if there haven't been any requests
+     */
+    public synchronized double getHitRate() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+
+    /**
+     * Gets the average time getIdToken took.
+     * @return the average latency (milliseconds) of successful getIdToken calls, or 0 if there haven't been any
+     */
+    public synchronized double getAverageFetchMillis() {
+        if (fetches == 0) {
+            return 0;
+        }
+        return (double) fetchMillis / fetches;
+    }
+
+    /**
+     * Estimates the total time requests didn't spend waiting for a token thanks to the cache.
+     * @return the number of hits times the average getIdToken latency (milliseconds)
+     */
+    public synchronized double getLatencySavedMillis() {
+        return hits * getAverageFetchMillis();
+    }
+
+}
@@ -0,0 +1,95 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Measures distances within a small area using a scale fixed once for the whole area.
+ * <p>
+ * LatLngUtils.distance computes the cosine of a latitude and a square root on every call. A game area
+ * spans a tiny fraction of a degree, so the cosine barely changes across it. This class computes it once
+ * for a reference latitude, so a distance check is just a few multiplications. Range checks compare
+ * squared distances against a squared range, so no square root is needed either.
+ * <p>
+ * Results differ from LatLngUtils.distance only by the change in cosine between the reference latitude
+ * and the point's latitude, which is well under a centimeter per 20 meters for areas a few kilometers tall.
+ */
+public final class LocalProjection {
+
+    /** Meters per degree of longitude at the reference latitude. */
+    private final double lngScale;
+
+    /**
+     * Creates a projection for an area around a latitude.
+     * @param referenceLatitude a latitude near the middle of the area
+     */
+    public LocalProjection(final double referenceLatitude) {
+        lngScale = LatLngUtils.METERS_PER_LNG_DEGREE * Math.cos(Math.toRadians(referenceLatitude));
+    }
+
+    /**
+     * Creates a projection for the area covered by a set of targets, using the middle of their latitudes.
+     * @param latitudes latitudes of all targets (must not be empty)
+     * @return a projection for the targets' area
+     */
+    public static LocalProjection forTargets(final double[] latitudes) {
+        if (latitudes.length == 0) {
+            throw new IllegalArgumentException("No targets to center the projection on");
+        }
+        double low = latitudes[0];
+        double high = latitudes[0];
+        for (double latitude : latitudes) {
+            low = Math.min(low, latitude);
+            high = Math.max(high, latitude);
+        }
+        return new LocalProjection((low + high) / 2);
+    }
+
+    /**
+     * Gets the number of meters per degree of longitude in this area.
+     * @return the east-west scale factor
+     */
+    public double getLngScale() {
+        return lngScale;
+    }
+
+    /**
+     * Computes the squared distance between two points.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the squared distance between the two points, in square meters
+     */
+    public double squaredDistance(final double oneLat, final double oneLng,
+                                  final double anotherLat, final double anotherLng) {
+        double latDistance = LatLngUtils.METERS_PER_LAT_DEGREE * (oneLat - anotherLat);
+        double lngDistance = lngScale * (oneLng - anotherLng);
+        return latDistance * latDistance + lngDistance * lngDistance;
+    }
+
+    /**
+     * Computes the distance between two points.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance between the two points, in meters
+     */
+    public double distance(final double oneLat, final double oneLng,
+                           final double anotherLat, final double anotherLng) {
+        return Math.sqrt(squaredDistance(oneLat, oneLng, anotherLat, anotherLng));
+    }
+
+    /**
+     * Determines whether two points are within a distance of each other.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @param range the maximum distance, in meters
+     * @return whether the points are at most that far apart
+     */
+    public boolean withinRange(final double oneLat, final double oneLng,
+                               final double anotherLat, final double anotherLng, final double range) {
+        return squaredDistance(oneLat, oneLng, anotherLat, anotherLng) <= range * range;
+    }
+
+}
@@ -23,6 +23,9 @@ public final class MainActivity extends AppCompatActivity {
         // Create the UI from a layout resource
         setContentView(R.layout.activity_main);
 
+        // Start reading the default targets in the background so the game activity doesn't wait for them
+        DefaultTargets.preload(this);
+
         // This activity doesn't do anything yet - it immediately launches the game activity
         // Work on it will start in Checkpoint 1
 
@@ -61,6 +64,10 @@ public final class MainActivity extends AppCompatActivity {
      */
     private void enterGame(final String gameId) {
         // Launch GameActivity with the game ID in an intent extra
+        // GameActivity uses it to draw the game's saved state while the server responds
+        Intent intent = new Intent(this, GameActivity.class);
+        intent.putExtra(GameActivity.EXTRA_GAME_ID, gameId);
+        startActivity(intent);
         // Do not finish - the user should be able to come back here
     }
 
@@ -0,0 +1,353 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A websocket connection that reconnects by itself when the network drops.
+ * <p>
+ * Lost connections and failed attempts are retried after a jittered exponential backoff: the delay starts
+ * at {@value #INITIAL_BACKOFF} milliseconds and doubles with each failure up to {@value #MAX_BACKOFF}
+ * milliseconds, and up to half of it is random so clients that lost the same Wi-Fi don't all come back at once.
+ * Each attempt gets a Firebase ID token from WebApi's token cache and a socket from the factory WebApi shares
+ * among all websockets. Text sent while disconnected is buffered
+ * and sent in order once reconnected, right after the reconnect listener runs. Nothing is dropped, so callers
+ * that send frequent updates should hold them back themselves while disconnected; a Game using this
+ * connection (see Game.useConnection) keeps only its latest location and always keeps captures.
+ * <p>
+ * Reconnections carry the version of the state the client has (see setResumeVersion) in the
+ * {@value #SINCE_PARAMETER} query parameter, so the server answers the new connection with only the updates
+ * that were missed instead of a full update.
+ * <p>
+ * All callbacks run on the main thread, and all methods must be called on it.
+ */
+public final class ManagedWebSocket {
+
+    /** Tag for logged messages. */
+    private static final String TAG = "ManagedWebSocket";
+
+    /** Shortest delay (milliseconds) before retrying, used after the first failure with no jitter. */
+    static final long INITIAL_BACKOFF = 500;
+
+    /** Longest delay (milliseconds) between attempts. */
+    static final long MAX_BACKOFF = 30000;
+
+    /** Query parameter holding the state version on reconnections. */
+    static final String SINCE_PARAMETER = "since";
+
+    /** Number of failures after which the delay stops doubling (well past MAX_BACKOFF). */
+    private static final int MAX_DOUBLINGS = 16;
+
+    /** The websocket endpoint. */
+    private final String url;
+
+    /** Receiver for text messages. */
+    private final Consumer<String> textListener;
+
+    /** Handler for the main thread, where callbacks run and attempts are scheduled. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Source of backoff jitter. */
+    private final Random random = new Random();
+
+    /** Messages waiting for the connection to come back. */
+    private final ArrayDeque<String> buffer = new ArrayDeque<>();
+
+    /** Starts a connection attempt. */
+    private final Runnable connectTask = this::connect;
+
+    /** Called with the new websocket each time the connection comes back. */
+    private Consumer<WebSocket> reconnectListener = newSocket -> { };
+
+    /** Source of the state version to resume from when reconnecting. */
+    private LongSupplier resumeVersion = () -> GameEvent.NO_SEQUENCE;
+
+    /** The websocket of the current or pending connection, or null while waiting to retry. */
+    private WebSocket socket;
+
+    /** Whether the current websocket is open. */
+    private boolean connected;
+
+    /** Whether any websocket has opened, so the next one is a reconnection. */
+    private boolean everConnected;
+
+    /** Whether close has been called. */
+    private boolean closed;
+
+    /** Number of attempts that have failed since the connection was last open. */
+    private int failedAttempts;
+
+    /** Number of times the connection has come back. */
+    private long reconnectCount;
+
+    /**
+     * Creates a connection. Call start to connect.
+     * @param setUrl the websocket endpoint
+     * @param setTextListener receiver for text messages
+     */
+    public ManagedWebSocket(final String setUrl, final Consumer<String> setTextListener) {
+        url = setUrl;
+        textListener = setTextListener;
+    }
+
+    /**
+     * Sets the callback to run each time the connection comes back after being lost.
+     * <p>
+     * It runs before any buffered messages are sent, and messages it sends go out first.
+     * @param setReconnectListener receiver for the newly connected websocket
+     */
+    public void setReconnectListener(final Consumer<WebSocket> setReconnectListener) {
+        reconnectListener = setReconnectListener;
+    }
+
+    /**
+     * Sets where reconnections get the version of the state the client has.
+     * <p>
+     * Each reconnection passes the version to the server, which answers with a diff of the changes since then
+     * (or a full update if it can't). No version is passed while the source returns GameEvent.NO_SEQUENCE.
+     * @param setResumeVersion returns the sequence number of the last update applied
+     */
+    public void setResumeVersion(final LongSupplier setResumeVersion) {
+        resumeVersion = setResumeVersion;
+    }
+
+    /**
+     * Starts connecting.
+     */
+    public void start() {
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) {
+            Log.e(TAG, "start called before Firebase Authentication login");
+            throw new IllegalStateException("No user is logged in");
+        }
+        connect();
+    }
+
+    /**
+     * Sends a text message, or buffers it until the connection is back.
+     * @param text the message
+     */
+    public void sendText(final String text) {
+        if (connected) {
+            socket.sendText(text);
+            return;
+        }
+        buffer.add(text);
+    }
+
+    /**
+     * Closes the connection and stops reconnecting. Buffered messages are discarded.
+     */
+    public void close() {
+        closed = true;
+        connected = false;
+        handler.removeCallbacks(connectTask);
+        buffer.clear();
+        if (socket != null) {
+            socket.disconnect();
+        }
+    }
+
+    /**
+     * Determines whether the connection is open.
+     * @return whether sent messages go out immediately
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Gets the number of times the connection has come back after being lost.
+     * @return how many reconnections there have been
+     */
+    public long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * Computes how long to wait before the next attempt.
+     * <p>
+     * The backoff is twice INITIAL_BACKOFF after the first failure and doubles after each one after that, up
+     * to MAX_BACKOFF. The delay is half the backoff plus a random part of the other half, so it's always
+     * between INITIAL_BACKOFF and MAX_BACKOFF.
+     * @param failures number of attempts that have failed in a row, before this one
+     * @param jitter a random number in [0, 1)
+     * @return the delay in milliseconds
+     */
+    static long backoffDelay(final int failures, final double jitter) {
+        long backoff = Math.min(MAX_BACKOFF, (INITIAL_BACKOFF * 2) << Math.min(failures, MAX_DOUBLINGS));
+        return backoff / 2 + (long) (backoff / 2 * jitter);
+    }
+
+    /**
+     * Adds the state version to a websocket endpoint so the server answers with the missed updates.
+     * @param url the websocket endpoint, with or without a query string
+     * @param version the sequence number of the last update applied, or GameEvent.NO_SEQUENCE
+     * @return the URL with the {@value #SINCE_PARAMETER} query parameter, or the endpoint unchanged if there's
+     * no version
+     */
+    static String resumeUrl(final String url, final long version) {
+        if (version == GameEvent.NO_SEQUENCE) {
+            return url;
+        }
+        String separator = "?";
+        if (url.contains("?")) {
+            separator = "&";
+        }
+        return url + separator + SINCE_PARAMETER + "=" + version;
+    }
+
+    /**
+     * Gets a Firebase ID token and opens a websocket with it.
+     */
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.e(TAG, "Logged out while reconnecting to " + url);
+            close();
+            return;
+        }
+        WebApi.getTokenCache().getToken(user, this::open, e -> {
+            Log.w(TAG, "Couldn't get a Firebase ID token to connect", e);
+            retry(false);
+        });
+    }
+
+    /**
+     * Opens a websocket.
+     * @param token the Firebase ID token
+     */
+    private void open(final String token) {
+        if (closed) {
+            return;
+        }
+        WebSocket websocket;
+        try {
+            websocket = WebApi.createWebSocket(connectUrl(), token);
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't create a websocket for " + url, e);
+            retry(false);
+            return;
+        }
+        attach(websocket);
+    }
+
+    /**
+     * Makes a websocket the current one and starts connecting it.
+     * <p>
+     * Its events are handled on the main thread by opened and lost.
+     * @param websocket the new, unconnected websocket
+     */
+    void attach(final WebSocket websocket) {
+        socket = websocket;
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onConnected(final WebSocket websocket, final Map<String, List<String>> headers) {
+                handler.post(() -> opened(websocket));
+            }
+            @Override
+            public void onTextMessage(final WebSocket websocket, final String text) {
+                handler.post(() -> {
+                    if (websocket == socket) {
+                        textListener.accept(text);
+                    }
+                });
+            }
+            @Override
+            public void onDisconnected(final WebSocket websocket, final WebSocketFrame serverCloseFrame,
+                                       final WebSocketFrame clientCloseFrame, final boolean closedByServer) {
+                handler.post(() -> lost(websocket));
+            }
+            @Override
+            public void onConnectError(final WebSocket websocket, final WebSocketException exception) {
+                handler.post(() -> lost(websocket));
+            }
+        });
+        socket.connectAsynchronously();
+    }
+
+    /**
+     * Gets the URL for the next attempt: the endpoint, plus the state version if this is a reconnection.
+     * @return the URL to connect to
+     */
+    private String connectUrl() {
+        if (!everConnected) {
+            return url;
+        }
+        return resumeUrl(url, resumeVersion.getAsLong());
+    }
+
+    /**
+     * Handles a websocket opening: reports reconnections, then sends the buffered messages.
+     * <p>
+     * Work the reconnect listener posts to the main thread runs after the buffered messages are sent.
+     * @param websocket the websocket that opened
+     */
+    void opened(final WebSocket websocket) {
+        if (websocket != socket || closed) {
+            return;
+        }
+        connected = true;
+        failedAttempts = 0;
+        if (everConnected) {
+            reconnectCount++;
+            Log.i(TAG, "Reconnected to " + url + " with " + buffer.size() + " buffered messages");
+            reconnectListener.accept(websocket);
+        }
+        everConnected = true;
+        while (connected && !buffer.isEmpty()) {
+            websocket.sendText(buffer.poll());
+        }
+    }
+
+    /**
+     * Handles a websocket closing or failing to connect by scheduling another attempt.
+     * @param websocket the websocket that was lost
+     */
+    void lost(final WebSocket websocket) {
+        if (websocket != socket) {
+            return;
+        }
+        boolean wasConnected = connected;
+        socket = null;
+        connected = false;
+        if (!closed) {
+            retry(wasConnected);
+        }
+    }
+
+    /**
+     * Schedules the next attempt after the backoff delay.
+     * @param wasConnected whether an open connection was lost, rather than an attempt failing
+     */
+    private void retry(final boolean wasConnected) {
+        long delay = backoffDelay(failedAttempts, random.nextDouble());
+        failedAttempts++;
+        if (wasConnected) {
+            Log.i(TAG, "Connection to " + url + " lost, retrying in " + delay + " ms");
+        } else {
+            Log.i(TAG, "Connecting to " + url + " failed (attempt " + failedAttempts + "), retrying in "
+                    + delay + " ms");
+        }
+        handler.postDelayed(connectTask, delay);
+    }
+
+}
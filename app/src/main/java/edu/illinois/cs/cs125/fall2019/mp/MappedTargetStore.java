@@ -0,0 +1,83 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A set of targets served directly from a memory-mapped target pack file.
+ * <p>
+ * Loading a target pack into arrays (or a list of LatLngs) puts every coordinate on the heap. For city-scale
+ * presets with up to a million targets, this class instead maps the file into memory and reads each
+ * coordinate from the mapping when asked for it, so the coordinates take no heap space and pages are only
+ * brought into memory as they're used. Target names in the pack are ignored.
+ * <p>
+ * The file must not be changed while the store is in use.
+ */
+public final class MappedTargetStore implements TargetCoordinates {
+
+    /** Latitudes of all targets, backed by the mapped file. */
+    private final DoubleBuffer latitudes;
+
+    /** Longitudes of all targets, backed by the mapped file. */
+    private final DoubleBuffer longitudes;
+
+    /** The number of targets. */
+    private final int count;
+
+    /**
+     * Maps a target pack file.
+     * @param file the target pack file (see TargetPack for the format)
+     * @throws IOException if the file couldn't be mapped or isn't a valid target pack
+     */
+    public MappedTargetStore(final File file) throws IOException {
+        MappedByteBuffer mapped;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = input.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        count = TargetPack.readHeader(mapped);
+        DoubleBuffer coordinates = mapped.asDoubleBuffer();
+        latitudes = coordinates.duplicate();
+        latitudes.limit(count);
+        coordinates.position(count);
+        longitudes = coordinates.slice();
+        longitudes.limit(count);
+    }
+
+    /**
+     * Gets the number of targets in the store.
+     * @return how many targets there are
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets a target's latitude.
+     * @param index the target index
+     * @return the target's latitude
+     */
+    @Override
+    public double getLatitude(final int index) {
+        return latitudes.get(index);
+    }
+
+    /**
+     * Gets a target's longitude.
+     * @param index the target index
+     * @return the target's longitude
+     */
+    @Override
+    public double getLongitude(final int index) {
+        return longitudes.get(index);
+    }
+
+}
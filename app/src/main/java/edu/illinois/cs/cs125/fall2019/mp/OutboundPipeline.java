@@ -0,0 +1,246 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Filters and paces the messages a Game sends to the server.
+ * <p>
+ * Location updates (messages of type {@value #LOCATION_TYPE}) go through two filters:
+ * <ul>
+ *     <li>an update less than the minimum distance from the last accepted location is dropped</li>
+ *     <li>at most one location update is sent per minimum interval; if more arrive in between, only the
+ *     latest is kept and it's sent when the interval is up</li>
+ * </ul>
+ * Every other message (e.g. a target or cell capture) is sent immediately, ahead of any location update
+ * being held back; that update still goes out when its interval is up.
+ * <p>
+ * Location updates can also be held back while the connection is down (see holdLocationsWhile). Only the
+ * latest is kept, and it's sent by the next flush after the connection is back.
+ */
+public final class OutboundPipeline {
+
+    /** The type of location update messages. */
+    public static final String LOCATION_TYPE = "locationUpdate";
+
+    /** Default minimum distance (meters) between location updates. */
+    public static final double DEFAULT_MIN_DISTANCE = 2.0;
+
+    /** Default minimum time (milliseconds) between location updates. */
+    public static final long DEFAULT_MIN_INTERVAL = 500;
+
+    /** Sends a message's text to the server. */
+    private final Consumer<String> sender;
+
+    /** Schedules a call to flushIfDue after the given number of milliseconds. */
+    private final LongConsumer flushScheduler;
+
+    /** Source of the current time in milliseconds. */
+    private final LongSupplier clock;
+
+    /** Minimum distance (meters) a location update must be from the last one. */
+    private final double minDistance;
+
+    /** Minimum time (milliseconds) between sent location updates. */
+    private final long minInterval;
+
+    /** Latitude of the last accepted location update (sent or pending), or NaN if there hasn't been one. */
+    private double lastLatitude = Double.NaN;
+
+    /** Longitude of the last accepted location update. */
+    private double lastLongitude = Double.NaN;
+
+    /** Time the last location update was sent, in clock milliseconds. */
+    private long lastLocationSent = Long.MIN_VALUE;
+
+    /** Location update waiting for the interval to pass, or null if none is waiting. */
+    private String pendingLocation;
+
+    /** Whether location updates should be held back regardless of the interval. */
+    private BooleanSupplier holdLocations = () -> false;
+
+    /** Number of messages sent. */
+    private long sent;
+
+    /** Number of location updates dropped for being too close to the last one. */
+    private long deduplicated;
+
+    /** Number of location updates replaced by a later one before being sent. */
+    private long coalesced;
+
+    /**
+     * Creates a pipeline with the default distance and interval.
+     * @param setSender callback that sends message text to the server
+     * @param setFlushScheduler callback that arranges for flushIfDue to be called after a delay in milliseconds
+     */
+    public OutboundPipeline(final Consumer<String> setSender, final LongConsumer setFlushScheduler) {
+        this(setSender, setFlushScheduler, System::currentTimeMillis, DEFAULT_MIN_DISTANCE, DEFAULT_MIN_INTERVAL);
+    }
+
+    /**
+     * Creates a pipeline.
+     * @param setSender callback that sends message text to the server
+     * @param setFlushScheduler callback that arranges for flushIfDue to be called after a delay in milliseconds
+     * @param setClock source of the current time in milliseconds
+     * @param setMinDistance minimum distance (meters) between location updates, or 0 to send every change
+     * @param setMinInterval minimum time (milliseconds) between location updates, or 0 to not coalesce
+     */
+    public OutboundPipeline(final Consumer<String> setSender, final LongConsumer setFlushScheduler,
+                            final LongSupplier setClock, final double setMinDistance, final long setMinInterval) {
+        sender = setSender;
+        flushScheduler = setFlushScheduler;
+        clock = setClock;
+        minDistance = setMinDistance;
+        minInterval = setMinInterval;
+    }
+
+    /**
+     * Sends a message, subject to the location filters if it's a location update.
+     * @param message the message to send
+     */
+    public synchronized void send(final JsonObject message) {
+        JsonElement type = message.get("type");
+        JsonElement latitude = message.get("latitude");
+        JsonElement longitude = message.get("longitude");
+        if (type == null || !LOCATION_TYPE.equals(type.getAsString()) || latitude == null || longitude == null) {
+            sendNow(message.toString());
+            return;
+        }
+        sendLocation(message.toString(), latitude.getAsDouble(), longitude.getAsDouble());
+    }
+
+    /**
+     * Sends a location update, subject to the distance and interval filters.
+     * @param text the serialized message
+     * @param latitude the reported latitude
+     * @param longitude the reported longitude
+     */
+    private void sendLocation(final String text, final double latitude, final double longitude) {
+        if (!Double.isNaN(lastLatitude)
+                && LatLngUtils.distance(lastLatitude, lastLongitude, latitude, longitude) < minDistance) {
+            deduplicated++;
+            return;
+        }
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        if (pendingLocation != null) {
+            // Already waiting for the interval - the flush will send this one instead
+            coalesced++;
+            pendingLocation = text;
+            return;
+        }
+        if (holdLocations.getAsBoolean()) {
+            // Sent by the first flush once the hold is over
+            pendingLocation = text;
+            return;
+        }
+        long now = clock.getAsLong();
+        long wait = minInterval - (now - lastLocationSent);
+        if (lastLocationSent == Long.MIN_VALUE || wait <= 0) {
+            write(text);
+            lastLocationSent = now;
+        } else {
+            pendingLocation = text;
+            flushScheduler.accept(wait);
+        }
+    }
+
+    /**
+     * Holds back location updates whenever a condition is true, e.g. while the connection is down.
+     * <p>
+     * Held updates replace each other, so only the latest is sent. Call flush when the condition becomes false.
+     * @param setHoldLocations returns whether location updates should be held back
+     */
+    public synchronized void holdLocationsWhile(final BooleanSupplier setHoldLocations) {
+        holdLocations = setHoldLocations;
+    }
+
+    /**
+     * Sends a message immediately, without waiting for any location update being held back.
+     * @param text the serialized message
+     */
+    public synchronized void sendNow(final String text) {
+        write(text);
+    }
+
+    /**
+     * Sends the location update being held back if the minimum interval has passed.
+     * <p>
+     * This is what the flush scheduler should call. If the interval hasn't passed yet (because the timer
+     * was started for an earlier update), another flush is scheduled.
+     */
+    public synchronized void flushIfDue() {
+        if (pendingLocation == null || holdLocations.getAsBoolean()) {
+            return;
+        }
+        long wait = minInterval - (clock.getAsLong() - lastLocationSent);
+        if (wait <= 0) {
+            flush();
+        } else {
+            flushScheduler.accept(wait);
+        }
+    }
+
+    /**
+     * Sends the location update being held back, if there is one, regardless of the interval.
+     * <p>
+     * This can be called directly, e.g. before disconnecting or once the connection is back. Nothing is sent
+     * while locations are being held (see holdLocationsWhile).
+     */
+    public synchronized void flush() {
+        if (pendingLocation == null || holdLocations.getAsBoolean()) {
+            return;
+        }
+        String text = pendingLocation;
+        pendingLocation = null;
+        write(text);
+        lastLocationSent = clock.getAsLong();
+    }
+
+    /**
+     * Writes a message to the server and counts it.
+     * @param text the serialized message
+     */
+    private void write(final String text) {
+        sender.accept(text);
+        sent++;
+    }
+
+    /**
+     * Gets the number of messages actually sent to the server.
+     * @return how many messages have been sent
+     */
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    /**
+     * Gets the number of location updates that weren't sent.
+     * @return the number of updates dropped for being too close to the last one or replaced by a later one
+     */
+    public synchronized long getSuppressedCount() {
+        return deduplicated + coalesced;
+    }
+
+    /**
+     * Gets the number of location updates dropped for being too close to the last accepted location.
+     * @return how many location updates were deduplicated
+     */
+    public synchronized long getDeduplicatedCount() {
+        return deduplicated;
+    }
+
+    /**
+     * Gets the number of location updates replaced by a later update before they could be sent.
+     * @return how many location updates were coalesced
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+}
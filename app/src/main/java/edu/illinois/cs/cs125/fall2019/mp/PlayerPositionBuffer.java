@@ -0,0 +1,190 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Arrays;
+
+/**
+ * Collects other players' position updates so they can be applied to the map once per frame.
+ * <p>
+ * Only the latest position for each player is kept: if several updates for the same player arrive before
+ * the next flush, the earlier ones are dropped. This bounds the number of map changes by the frame rate
+ * rather than by how fast messages arrive, which matters when updates come in bursts (e.g. after a
+ * reconnect). Players are identified by their PlayerRegistry IDs, and the buffered positions are kept in
+ * primitive arrays that are reused between frames. Updates can be offered from any thread; flush is meant
+ * to be called on the UI thread.
+ */
+public final class PlayerPositionBuffer {
+
+    /**
+     * Receives the positions being applied by a flush.
+     */
+    public interface PositionSink {
+
+        /**
+         * Applies one player's latest position.
+         * @param id the player's ID
+         * @param team the player's team ID, or -1 if no update included it
+         * @param latitude the player's latitude
+         * @param longitude the player's longitude
+         */
+        void apply(int id, int team, double latitude, double longitude);
+
+    }
+
+    /** Initial capacity of the buffer arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** IDs of the players with buffered updates, in the order they were first buffered. */
+    private int[] queue = new int[INITIAL_CAPACITY];
+
+    /** Number of players with buffered updates. */
+    private int queued;
+
+    /** Whether each player (by ID) has a buffered update. */
+    private boolean[] isQueued = new boolean[INITIAL_CAPACITY];
+
+    /** Buffered team of each player (by ID), or -1. */
+    private int[] teams = new int[INITIAL_CAPACITY];
+
+    /** Buffered latitude of each player (by ID). */
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+
+    /** Buffered longitude of each player (by ID). */
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+
+    /** IDs copied out by the current flush. */
+    private int[] flushIds = new int[INITIAL_CAPACITY];
+
+    /** Teams copied out by the current flush. */
+    private int[] flushTeams = new int[INITIAL_CAPACITY];
+
+    /** Latitudes copied out by the current flush. */
+    private double[] flushLatitudes = new double[INITIAL_CAPACITY];
+
+    /** Longitudes copied out by the current flush. */
+    private double[] flushLongitudes = new double[INITIAL_CAPACITY];
+
+    /** Number of updates offered. */
+    private long received;
+
+    /** Number of positions applied by flushes. */
+    private long applied;
+
+    /**
+     * Buffers a position update, replacing any update for the same player that hasn't been applied yet.
+     * @param id the player's ID
+     * @param team the player's team ID, or -1 if the update didn't include it
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     * @return true if the buffer was empty before this update, meaning the caller should schedule a flush
+     */
+    public synchronized boolean offer(final int id, final int team, final double latitude, final double longitude) {
+        received++;
+        boolean wasEmpty = queued == 0;
+        if (id >= isQueued.length) {
+            int capacity = Math.max(id + 1, isQueued.length * 2);
+            isQueued = Arrays.copyOf(isQueued, capacity);
+            teams = Arrays.copyOf(teams, capacity);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+        if (!isQueued[id]) {
+            if (queued == queue.length) {
+                queue = Arrays.copyOf(queue, queued * 2);
+            }
+            queue[queued++] = id;
+            isQueued[id] = true;
+            teams[id] = -1;
+        }
+        if (team != -1) {
+            teams[id] = team;
+        }
+        latitudes[id] = latitude;
+        longitudes[id] = longitude;
+        return wasEmpty;
+    }
+
+    /**
+     * Drops a player's buffered update, e.g. because the player left the game.
+     * @param id the player's ID
+     */
+    public synchronized void remove(final int id) {
+        if (id >= isQueued.length || !isQueued[id]) {
+            return;
+        }
+        isQueued[id] = false;
+        for (int i = 0; i < queued; i++) {
+            if (queue[i] == id) {
+                System.arraycopy(queue, i + 1, queue, i, queued - i - 1);
+                queued--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops every buffered update, e.g. because the positions are about to be redrawn from a full update.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < queued; i++) {
+            isQueued[queue[i]] = false;
+        }
+        queued = 0;
+    }
+
+    /**
+     * Applies all buffered positions and empties the buffer.
+     * <p>
+     * The positions are copied out under the lock and applied outside it, so updates offered during the
+     * flush are kept for the next one rather than blocking. Flushes should not run concurrently.
+     * @param sink receiver for the latest position of each player
+     * @return the number of positions applied
+     */
+    public int flush(final PositionSink sink) {
+        int count;
+        synchronized (this) {
+            count = queued;
+            if (count > flushIds.length) {
+                int capacity = Math.max(count, flushIds.length * 2);
+                flushIds = new int[capacity];
+                flushTeams = new int[capacity];
+                flushLatitudes = new double[capacity];
+                flushLongitudes = new double[capacity];
+            }
+            for (int i = 0; i < count; i++) {
+                int id = queue[i];
+                flushIds[i] = id;
+                flushTeams[i] = teams[id];
+                flushLatitudes[i] = latitudes[id];
+                flushLongitudes[i] = longitudes[id];
+                isQueued[id] = false;
+            }
+            queued = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            sink.apply(flushIds[i], flushTeams[i], flushLatitudes[i], flushLongitudes[i]);
+        }
+        synchronized (this) {
+            applied += count;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of position updates offered to this buffer.
+     * @return how many updates have been received
+     */
+    public synchronized long getReceivedCount() {
+        return received;
+    }
+
+    /**
+     * Gets the number of positions actually applied.
+     * <p>
+     * The difference from the received count is the number of updates that were superseded before a flush.
+     * @return how many positions have been applied
+     */
+    public synchronized long getAppliedCount() {
+        return applied;
+    }
+
+}
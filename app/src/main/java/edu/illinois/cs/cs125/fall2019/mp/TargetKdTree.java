@@ -0,0 +1,321 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.function.IntPredicate;
+
+/**
+ * A static 2D k-d tree over a set of targets, used to find the targets nearest a point.
+ * <p>
+ * The tree is built once from the same pair of coordinate arrays used by TargetVisitChecker and is never
+ * modified afterward. It is stored implicitly: the target indexes are rearranged so that the middle entry
+ * of any range is the splitting node for that range, with the lower half to its left and the upper half to
+ * its right. Even depths split by longitude, odd depths by latitude.
+ * <p>
+ * Distances match LatLngUtils.distance with the query point passed first, so the returned nearest target
+ * is the same one a full scan would find. The tree does not copy the coordinate arrays, so they must not
+ * be modified while the tree is in use.
+ * <p>
+ * Single-target queries reuse one set of search state instead of allocating it per call, so they're
+ * synchronized; the tree can still be shared between threads.
+ */
+public final class TargetKdTree {
+
+    /** Latitudes of all targets. */
+    private final double[] latitudes;
+
+    /** Longitudes of all targets. */
+    private final double[] longitudes;
+
+    /** Target indexes in implicit tree order. */
+    private final int[] nodes;
+
+    /** Search state reused by every single-target query. */
+    private final Query nearestQuery = new Query(new int[1]);
+
+    /**
+     * Builds a tree over the given targets.
+     * @param setLatitudes latitudes of all targets
+     * @param setLongitudes longitudes of all targets (same size as latitudes)
+     */
+    public TargetKdTree(final double[] setLatitudes, final double[] setLongitudes) {
+        if (setLatitudes.length != setLongitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must be the same size");
+        }
+        latitudes = setLatitudes;
+        longitudes = setLongitudes;
+        nodes = new int[latitudes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = i;
+        }
+        build(0, nodes.length, 0);
+    }
+
+    /**
+     * Gets the number of targets in the tree.
+     * @return how many targets there are
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Arranges a range of the node array into a subtree.
+     * @param start first position of the range (inclusive)
+     * @param end last position of the range (exclusive)
+     * @param depth depth of the subtree's root
+     */
+    private void build(final int start, final int end, final int depth) {
+        if (end - start <= 1) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, depth % 2 == 0);
+        build(start, middle, depth + 1);
+        build(middle + 1, end, depth + 1);
+    }
+
+    /**
+     * Partially sorts a range of the node array so that the given position holds its median (quickselect).
+     * @param start first position of the range (inclusive)
+     * @param end last position of the range (inclusive)
+     * @param target the position that should end up holding the right node
+     * @param byLongitude whether to compare longitudes rather than latitudes
+     */
+    private void select(final int start, final int end, final int target, final boolean byLongitude) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            double pivot = coordinate(nodes[(low + high) >>> 1], byLongitude);
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinate(nodes[i], byLongitude) < pivot) {
+                    i++;
+                }
+                while (coordinate(nodes[j], byLongitude) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = nodes[i];
+                    nodes[i] = nodes[j];
+                    nodes[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (target <= j) {
+                high = j;
+            } else if (target >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets one coordinate of a target.
+     * @param target the target index
+     * @param longitude whether to get the longitude rather than the latitude
+     * @return the requested coordinate
+     */
+    private double coordinate(final int target, final boolean longitude) {
+        if (longitude) {
+            return longitudes[target];
+        }
+        return latitudes[target];
+    }
+
+    /**
+     * Finds the nearest target that is not excluded.
+     * @param latitude the query latitude
+     * @param longitude the query longitude
+     * @param excluded predicate that is true for target indexes to skip, or null to consider all targets
+     * @return the index of the nearest allowed target, or -1 if there is none
+     */
+    public synchronized int nearest(final double latitude, final double longitude, final IntPredicate excluded) {
+        nearestQuery.reset(latitude, longitude, excluded);
+        search(0, nodes.length, 0, nearestQuery);
+        if (nearestQuery.found == 0) {
+            return -1;
+        }
+        return nearestQuery.indexes[0];
+    }
+
+    /**
+     * Finds the nearest target that has not been visited.
+     * <p>
+     * Use LatLngUtils.distance to get how far away the found target is.
+     * @param latitude the query latitude
+     * @param longitude the query longitude
+     * @param path indexes of targets visited so far (-1 for empty slots)
+     * @return the index of the nearest unvisited target, or -1 if all targets have been visited
+     */
+    public int nearestUnvisited(final double latitude, final double longitude, final int[] path) {
+        return nearest(latitude, longitude, target -> TargetVisitChecker.isVisited(path, target));
+    }
+
+    /**
+     * Finds the nearest target that has not been visited.
+     * @param latitude the query latitude
+     * @param longitude the query longitude
+     * @param visited the targets visited so far
+     * @return the index of the nearest unvisited target, or -1 if all targets have been visited
+     */
+    public int nearestUnvisited(final double latitude, final double longitude, final VisitedTargets visited) {
+        return nearest(latitude, longitude, visited::contains);
+    }
+
+    /**
+     * Finds the targets nearest a point, closest first.
+     * <p>
+     * The number of targets requested is the length of the indexes array. If there are fewer allowed
+     * targets than that, the remaining slots are left unchanged.
+     * @param latitude the query latitude
+     * @param longitude the query longitude
+     * @param excluded predicate that is true for target indexes to skip, or null to consider all targets
+     * @param indexes array to fill with the nearest target indexes
+     * @param distances array (same size as indexes) to fill with their distances in meters, or null
+     * @return how many targets were found
+     */
+    public int nearest(final double latitude, final double longitude, final IntPredicate excluded,
+                       final int[] indexes, final double[] distances) {
+        if (distances != null && distances.length < indexes.length) {
+            throw new IllegalArgumentException("Distances array is smaller than indexes array");
+        }
+        if (indexes.length == 0) {
+            return 0;
+        }
+        Query query = new Query(indexes);
+        query.reset(latitude, longitude, excluded);
+        search(0, nodes.length, 0, query);
+        if (distances != null) {
+            for (int i = 0; i < query.found; i++) {
+                distances[i] = Math.sqrt(query.squared[i]);
+            }
+        }
+        return query.found;
+    }
+
+    /**
+     * Searches a subtree for the nearest allowed targets, keeping the results sorted by distance.
+     * @param start first position of the subtree's range (inclusive)
+     * @param end last position of the subtree's range (exclusive)
+     * @param depth depth of the subtree's root
+     * @param query the query and its results so far
+     */
+    private void search(final int start, final int end, final int depth, final Query query) {
+        if (start >= end) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        int target = nodes[middle];
+        if (query.excluded == null || !query.excluded.test(target)) {
+            double latDistance = LatLngUtils.METERS_PER_LAT_DEGREE * (query.latitude - latitudes[target]);
+            double lngDistance = query.lngScale * (query.longitude - longitudes[target]);
+            query.offer(target, latDistance * latDistance + lngDistance * lngDistance);
+        }
+
+        // Signed distance to the splitting line, negative if the query point is on the lower side
+        double split;
+        if (depth % 2 == 0) {
+            split = query.lngScale * (query.longitude - longitudes[target]);
+        } else {
+            split = LatLngUtils.METERS_PER_LAT_DEGREE * (query.latitude - latitudes[target]);
+        }
+        if (split < 0) {
+            search(start, middle, depth + 1, query);
+            if (split * split < query.worstSquared()) {
+                search(middle + 1, end, depth + 1, query);
+            }
+        } else {
+            search(middle + 1, end, depth + 1, query);
+            if (split * split < query.worstSquared()) {
+                search(start, middle, depth + 1, query);
+            }
+        }
+    }
+
+    /**
+     * Holds the parameters and the results so far of a nearest-target search.
+     */
+    private static final class Query {
+
+        /** The query latitude. */
+        private double latitude;
+
+        /** The query longitude. */
+        private double longitude;
+
+        /** Meters per degree of longitude at the query latitude. */
+        private double lngScale;
+
+        /** Predicate for targets to skip, or null. */
+        private IntPredicate excluded;
+
+        /** The nearest target indexes so far, closest first. */
+        private final int[] indexes;
+
+        /** The squared distances of those targets. */
+        private final double[] squared;
+
+        /** How many results have been found. */
+        private int found;
+
+        /**
+         * Creates a query. Call reset to set its parameters.
+         * @param setIndexes array to fill with results (its length is how many are wanted)
+         */
+        Query(final int[] setIndexes) {
+            indexes = setIndexes;
+            squared = new double[setIndexes.length];
+        }
+
+        /**
+         * Sets the parameters for a new search and clears the results.
+         * @param setLatitude the query latitude
+         * @param setLongitude the query longitude
+         * @param setExcluded predicate for targets to skip, or null
+         */
+        void reset(final double setLatitude, final double setLongitude, final IntPredicate setExcluded) {
+            latitude = setLatitude;
+            longitude = setLongitude;
+            lngScale = LatLngUtils.METERS_PER_LNG_DEGREE * Math.cos(Math.toRadians(setLatitude));
+            excluded = setExcluded;
+            found = 0;
+        }
+
+        /**
+         * Gets the squared distance a target must beat to be added to the results.
+         * @return the farthest result's squared distance, or infinity if the results aren't full yet
+         */
+        double worstSquared() {
+            if (found < indexes.length) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return squared[found - 1];
+        }
+
+        /**
+         * Adds a target to the results if it is closer than the farthest result.
+         * @param target the target index
+         * @param distance the target's squared distance
+         */
+        void offer(final int target, final double distance) {
+            if (distance >= worstSquared()) {
+                return;
+            }
+            // Insertion into the sorted result list, dropping the farthest if it's full
+            int slot = Math.min(found, indexes.length - 1);
+            while (slot > 0 && squared[slot - 1] > distance) {
+                indexes[slot] = indexes[slot - 1];
+                squared[slot] = squared[slot - 1];
+                slot--;
+            }
+            indexes[slot] = target;
+            squared[slot] = distance;
+            found = Math.min(found + 1, indexes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,231 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A set of targets loaded from a precompiled binary target pack.
+ * <p>
+ * Target packs are generated at build time from the CSV files in res/raw by the app module's
+ * compileTargetPacks Gradle task, so the app doesn't have to parse text when it starts. A pack is
+ * little-endian and laid out as:
+ * <ol>
+ *     <li>the magic number {@value #MAGIC} and the format version {@value #VERSION} (ints)</li>
+ *     <li>the number of targets and a flags int (bit 0 set if names are included)</li>
+ *     <li>all latitudes, then all longitudes (doubles)</li>
+ *     <li>if names are included, for each target the length of its UTF-8 name (int) and then the bytes</li>
+ * </ol>
+ * The coordinate arrays are copied out of the file in bulk rather than parsed one value at a time.
+ */
+public final class TargetPack implements TargetCoordinates {
+
+    /** Magic number at the start of every target pack ("TGPK" in little-endian ASCII). */
+    static final int MAGIC = 0x4B504754;
+
+    /** The pack format version this class can read. */
+    static final int VERSION = 1;
+
+    /** Flag bit set if the pack includes target names. */
+    private static final int FLAG_NAMES = 1;
+
+    /** Size of the header, in bytes. */
+    static final int HEADER_SIZE = 16;
+
+    /** Offset of the flags int within the header, in bytes. */
+    private static final int FLAGS_OFFSET = 12;
+
+    /** Size of the buffer used to read the input stream, in bytes. */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /** Latitudes of all targets. */
+    private final double[] latitudes;
+
+    /** Longitudes of all targets. */
+    private final double[] longitudes;
+
+    /** Names of all targets, or null if the pack has no names. */
+    private final String[] names;
+
+    /**
+     * Creates a target pack from already-loaded data.
+     * @param setLatitudes latitudes of all targets
+     * @param setLongitudes longitudes of all targets
+     * @param setNames names of all targets, or null
+     */
+    private TargetPack(final double[] setLatitudes, final double[] setLongitudes, final String[] setNames) {
+        latitudes = setLatitudes;
+        longitudes = setLongitudes;
+        names = setNames;
+    }
+
+    /**
+     * Reads a target pack.
+     * @param input stream to read the pack from (closed by this method)
+     * @return the loaded targets
+     * @throws IOException if the stream couldn't be read or doesn't contain a valid target pack
+     */
+    public static TargetPack read(final InputStream input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = input) {
+            byte[] chunk = new byte[READ_BUFFER_SIZE];
+            int read = in.read(chunk);
+            while (read != -1) {
+                bytes.write(chunk, 0, read);
+                read = in.read(chunk);
+            }
+        }
+        return read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Reads a target pack from a buffer, starting at the buffer's current position.
+     * @param buffer buffer holding the pack
+     * @return the loaded targets
+     * @throws IOException if the buffer doesn't contain a valid target pack
+     */
+    public static TargetPack read(final ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = data.position();
+        int count = readHeader(data);
+        int flags = data.getInt(start + FLAGS_OFFSET);
+
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        data.asDoubleBuffer().get(lats).get(lngs);
+        data.position(data.position() + 2 * count * Double.BYTES);
+
+        String[] targetNames = null;
+        if ((flags & FLAG_NAMES) != 0) {
+            targetNames = new String[count];
+            try {
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[data.getInt()];
+                    data.get(name);
+                    targetNames[i] = new String(name, StandardCharsets.UTF_8);
+                }
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IOException("Target pack name table is truncated", e);
+            }
+        }
+        return new TargetPack(lats, lngs, targetNames);
+    }
+
+    /**
+     * Validates the header of a target pack and skips past it.
+     * @param data little-endian buffer positioned at the start of the pack
+     * @return the number of targets in the pack
+     * @throws IOException if the buffer doesn't start with a valid header or is too short for the coordinates
+     */
+    static int readHeader(final ByteBuffer data) throws IOException {
+        if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+            throw new IOException("Not a target pack");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported target pack version " + version);
+        }
+        int count = data.getInt();
+        data.getInt();
+        if (count < 0 || data.remaining() / (2 * Double.BYTES) < count) {
+            throw new IOException("Target pack is truncated");
+        }
+        return count;
+    }
+
+    /**
+     * Writes targets as a target pack.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same size as latitudes)
+     * @param names names of all targets (same size as latitudes), or null to leave out names
+     * @param output stream to write to (not closed by this method)
+     * @throws IOException if the stream couldn't be written
+     */
+    public static void write(final double[] latitudes, final double[] longitudes, final String[] names,
+                             final OutputStream output) throws IOException {
+        if (longitudes.length != latitudes.length || (names != null && names.length != latitudes.length)) {
+            throw new IllegalArgumentException("Target arrays must be the same size");
+        }
+        byte[][] nameBytes = new byte[latitudes.length][];
+        int size = HEADER_SIZE + 2 * latitudes.length * Double.BYTES;
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+                size += Integer.BYTES + nameBytes[i].length;
+            }
+        }
+        ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = 0;
+        if (names != null) {
+            flags = FLAG_NAMES;
+        }
+        data.putInt(MAGIC).putInt(VERSION).putInt(latitudes.length).putInt(flags);
+        data.asDoubleBuffer().put(latitudes).put(longitudes);
+        data.position(data.position() + 2 * latitudes.length * Double.BYTES);
+        if (names != null) {
+            for (byte[] name : nameBytes) {
+                data.putInt(name.length).put(name);
+            }
+        }
+        output.write(data.array());
+    }
+
+    /**
+     * Gets the number of targets in the pack.
+     * @return how many targets there are
+     */
+    @Override
+    public int size() {
+        return latitudes.length;
+    }
+
+    /**
+     * Gets a target's latitude.
+     * @param index the target index
+     * @return the target's latitude
+     */
+    @Override
+    public double getLatitude(final int index) {
+        return latitudes[index];
+    }
+
+    /**
+     * Gets a target's longitude.
+     * @param index the target index
+     * @return the target's longitude
+     */
+    @Override
+    public double getLongitude(final int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * Gets the latitudes of the targets.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    /**
+     * Gets the longitudes of the targets.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    /**
+     * Gets the names of the targets.
+     * @return the backing array (must not be modified), or null if the pack has no names
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+}
@@ -57,9 +57,26 @@ public final class WebApi {
     /** The Gson parser used to parse response JSON. */
     private static JsonParser jsonParser = new JsonParser();
 
+    /** The factory for every websocket, or null if it hasn't been created yet. */
+    private static WebSocketFactory webSocketFactory;
+
+    /** The cache of the user's Firebase ID token, or null if it hasn't been created yet. */
+    private static IdTokenCache tokenCache;
+
     /** Private constructor to prevent creating instances. */
     private WebApi() { }
 
+    /**
+     * Gets the cache that requests and websockets get Firebase ID tokens from, e.g. to check its hit rate.
+     * @return the token cache, created on first use
+     */
+    public static synchronized IdTokenCache getTokenCache() {
+        if (tokenCache == null) {
+            tokenCache = new IdTokenCache();
+        }
+        return tokenCache;
+    }
+
     /**
      * Starts an HTTP GET request.
      * @param context an Android context
@@ -118,7 +135,7 @@ public final class WebApi {
                 errorListener.onErrorResponse(error);
             }
         };
-        user.getIdToken(false).addOnSuccessListener(result ->
+        getTokenCache().getToken(user, token ->
             requestQueue.add(new StringRequest(method, url, serverResponseListener, serverErrorListener) {
                 {
                     Log.i(TAG, "startRequest creating Volley request (received Firebase ID token)");
@@ -141,11 +158,10 @@ public final class WebApi {
                 }
                 @Override
                 public Map<String, String> getHeaders() {
-                    return Collections.singletonMap("Firebase-Token", result.getToken());
+                    return Collections.singletonMap("Firebase-Token", token);
                 }
-            })
-        ).addOnFailureListener(e -> errorListener.onErrorResponse(new VolleyError(e)));
-        Log.i(TAG, "startRequest started getIdToken");
+            }), e -> errorListener.onErrorResponse(new VolleyError(e)));
+        Log.i(TAG, "startRequest requested Firebase ID token");
     }
 
     /**
@@ -160,24 +176,56 @@ public final class WebApi {
                                  final Consumer<WebSocket> onCreatedListener,
                                  final Runnable connectionLostListener,
                                  final Consumer<Throwable> errorListener) {
+        connectWebSocketText(url, text -> dataListener.accept(jsonParser.parse(text).getAsJsonObject()),
+                onCreatedListener, connectionLostListener, errorListener);
+    }
+
+    /**
+     * Connects to a game websocket, delivering updates as typed events.
+     * <p>
+     * Messages are decoded by GameEventDecoder, which avoids building a JSON tree for the frequent
+     * player location, exit and target capture updates. This has its own name rather than overloading
+     * connectWebSocket so that calls passing a lambda (or a Mockito matcher) for the listener stay unambiguous.
+     * @param url the websocket endpoint
+     * @param eventListener receiver for decoded game updates
+     * @param onCreatedListener callback to run with the websocket when it is created
+     * @param connectionLostListener callback to run if the connection is lost
+     * @param errorListener callback to run if an error occurs during the initial connection
+     */
+    public static void connectGameWebSocket(final String url, final Consumer<GameEvent> eventListener,
+                                            final Consumer<WebSocket> onCreatedListener,
+                                            final Runnable connectionLostListener,
+                                            final Consumer<Throwable> errorListener) {
+        connectWebSocketText(url, text -> eventListener.accept(GameEventDecoder.decode(text)),
+                onCreatedListener, connectionLostListener, errorListener);
+    }
+
+    /**
+     * Connects to a websocket, delivering each text message unparsed.
+     * @param url the websocket endpoint
+     * @param textListener receiver for text messages
+     * @param onCreatedListener callback to run with the websocket when it is created
+     * @param connectionLostListener callback to run if the connection is lost
+     * @param errorListener callback to run if an error occurs during the initial connection
+     */
+    private static void connectWebSocketText(final String url, final Consumer<String> textListener,
+                                             final Consumer<WebSocket> onCreatedListener,
+                                             final Runnable connectionLostListener,
+                                             final Consumer<Throwable> errorListener) {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
             Log.e(TAG, "connectWebSocket called before Firebase Authentication login");
             throw new IllegalStateException("No user is logged in");
         }
-        user.getIdToken(false).addOnSuccessListener(result -> {
+        getTokenCache().getToken(user, token -> {
             Log.i(TAG, "connectWebSocket received Firebase ID token");
-            WebSocketFactory factory = new WebSocketFactory();
-            factory.setConnectionTimeout(WEBSOCKET_CONNECTION_TIMEOUT);
             try {
-                WebSocket socket = factory.createSocket(url);
-                socket.setPingInterval(WEBSOCKET_PING_INTERVAL);
-                socket.addHeader("Firebase-Token", result.getToken());
+                WebSocket socket = createWebSocket(url, token);
                 socket.addListener(new WebSocketAdapter() {
                     private boolean disconnectedDueToError = false;
                     @Override
                     public void onTextMessage(final WebSocket websocket, final String text) {
-                        dataListener.accept(jsonParser.parse(text).getAsJsonObject());
+                        textListener.accept(text);
                     }
                     @Override
                     public void onError(final WebSocket websocket, final WebSocketException cause) {
@@ -207,8 +255,31 @@ public final class WebApi {
                 Log.i(TAG, "Delivering websocket setup error for " + url);
                 errorListener.accept(e);
             }
-        }).addOnFailureListener(errorListener::accept);
-        Log.i(TAG, "connectWebSocket started getIdToken");
+        }, errorListener::accept);
+        Log.i(TAG, "connectWebSocket requested Firebase ID token");
+    }
+
+    /**
+     * Creates a websocket that authenticates with a Firebase ID token. It is not connected yet.
+     * <p>
+     * All websockets come from one factory, which is created on first use.
+     * @param url the websocket endpoint
+     * @param token the Firebase ID token
+     * @return the new websocket
+     * @throws IOException if the URL is invalid or a socket couldn't be created
+     */
+    static WebSocket createWebSocket(final String url, final String token) throws IOException {
+        WebSocket socket;
+        synchronized (WebApi.class) {
+            if (webSocketFactory == null) {
+                webSocketFactory = new WebSocketFactory();
+                webSocketFactory.setConnectionTimeout(WEBSOCKET_CONNECTION_TIMEOUT);
+            }
+            socket = webSocketFactory.createSocket(url);
+        }
+        socket.setPingInterval(WEBSOCKET_PING_INTERVAL);
+        socket.addHeader("Firebase-Token", token);
+        return socket;
     }
 
 }
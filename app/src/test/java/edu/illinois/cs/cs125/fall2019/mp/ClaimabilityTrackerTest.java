@@ -0,0 +1,133 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+public class ClaimabilityTrackerTest {
+
+    /* The margin SnakePath leaves around bounding boxes. */
+    private static final double BOX_MARGIN = 1e-7;
+
+    private static double[] randomCoordinates(Random random, int count, double center, double spread) {
+        double[] coordinates = new double[count];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = center + (random.nextDouble() - 0.5) * spread;
+        }
+        return coordinates;
+    }
+
+    /*
+     * Whether every line of the path that linesCross says the new line crosses is nowhere near it. SnakePath
+     * doesn't test lines whose bounding boxes don't overlap the new line's, so it doesn't find those
+     * crossings (see LineCrossDetector.linesCrossByOrientation).
+     */
+    private static boolean onlyFarApartCrossings(double[] lats, double[] lngs, int[] path, int tryVisit) {
+        int length = 0;
+        while (length < path.length && path[length] != -1) {
+            length++;
+        }
+        int last = path[length - 1];
+        for (int i = 0; i < length - 1; i++) {
+            int start = path[i];
+            int end = path[i + 1];
+            if (!LineCrossDetector.linesCross(lats[start], lngs[start], lats[end], lngs[end],
+                    lats[last], lngs[last], lats[tryVisit], lngs[tryVisit])) {
+                continue;
+            }
+            boolean apart = Math.max(lats[start], lats[end]) + BOX_MARGIN < Math.min(lats[last], lats[tryVisit])
+                    || Math.max(lats[last], lats[tryVisit]) + BOX_MARGIN < Math.min(lats[start], lats[end])
+                    || Math.max(lngs[start], lngs[end]) + BOX_MARGIN < Math.min(lngs[last], lngs[tryVisit])
+                    || Math.max(lngs[last], lngs[tryVisit]) + BOX_MARGIN < Math.min(lngs[start], lngs[end]);
+            if (!apart) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Checks the tracker's claimable set against checkSnakeRule on every unvisited target.
+     * Returns how many targets differ only because of far-apart crossings.
+     */
+    private static int assertMatchesCheckSnakeRule(ClaimabilityTracker tracker, double[] lats, double[] lngs) {
+        int[] path = tracker.getPath().getVisited().getPath();
+        List<Integer> expected = new ArrayList<>();
+        int farApart = 0;
+        for (int i = 0; i < lats.length; i++) {
+            if (TargetVisitChecker.isVisited(path, i)) {
+                Assert.assertFalse("A visited target can't be claimed", tracker.isClaimable(i));
+                continue;
+            }
+            boolean claimable = TargetVisitChecker.checkSnakeRule(lats, lngs, path, i);
+            if (claimable != tracker.isClaimable(i)) {
+                Assert.assertTrue("Target " + i + " should " + (claimable ? "" : "not ") + "be claimable after "
+                        + Arrays.toString(path), !claimable && onlyFarApartCrossings(lats, lngs, path, i));
+                farApart++;
+            }
+            if (tracker.isClaimable(i)) {
+                expected.add(i);
+            }
+        }
+        Assert.assertEquals(expected.size(), tracker.claimableCount());
+        PrimitiveIterator.OfInt targets = tracker.claimableTargets();
+        for (int target : expected) {
+            Assert.assertTrue(targets.hasNext());
+            Assert.assertEquals("Claimable targets should be in increasing order", target, targets.nextInt());
+        }
+        Assert.assertFalse(targets.hasNext());
+        return farApart;
+    }
+
+    @Test
+    public void testMatchesCheckSnakeRule() {
+        Random random = new Random(125);
+        int farApart = 0;
+        for (int game = 0; game < 20; game++) {
+            double[] lats = randomCoordinates(random, 60, 40.108, 0.01);
+            double[] lngs = randomCoordinates(random, 60, -88.227, 0.01);
+            ClaimabilityTracker tracker = new ClaimabilityTracker(lats, lngs);
+            Assert.assertEquals("Every target can be claimed first", lats.length, tracker.claimableCount());
+            while (tracker.claimableCount() > 0) {
+                farApart += assertMatchesCheckSnakeRule(tracker, lats, lngs);
+                // Capture a random claimable target, so the path never breaks the snake rule itself
+                int pick = random.nextInt(tracker.claimableCount());
+                PrimitiveIterator.OfInt targets = tracker.claimableTargets();
+                for (int i = 0; i < pick; i++) {
+                    targets.nextInt();
+                }
+                Assert.assertNotEquals(-1, tracker.capture(targets.nextInt()));
+            }
+            farApart += assertMatchesCheckSnakeRule(tracker, lats, lngs);
+        }
+        Assert.assertTrue("Far-apart crossings should be rare: " + farApart, farApart < 20);
+    }
+
+    @Test
+    public void testExistingPath() {
+        double[] lats = {40.100, 40.110, 40.110, 40.100, 40.105};
+        double[] lngs = {-88.230, -88.230, -88.220, -88.220, -88.240};
+        // An upside-down U, open to the south: 0 -> 1 -> 2 -> 3, with target 4 off to the west
+        int[] path = {0, 1, 2, 3, -1};
+        ClaimabilityTracker tracker = new ClaimabilityTracker(new SnakePath(lats, lngs, path));
+        Assert.assertFalse("The line from 3 to 4 crosses the line from 0 to 1", tracker.isClaimable(4));
+        Assert.assertEquals(0, tracker.claimableCount());
+        Assert.assertEquals(0, assertMatchesCheckSnakeRule(tracker, lats, lngs));
+
+        ClaimabilityTracker fresh = new ClaimabilityTracker(lats, lngs);
+        fresh.capture(0);
+        fresh.capture(1);
+        Assert.assertTrue("The line from 1 to 4 only touches the line from 0 to 1", fresh.isClaimable(4));
+        fresh.capture(2);
+        Assert.assertFalse("A capture should mark the claimable set out of date", fresh.isClaimable(4));
+        Assert.assertTrue(fresh.isClaimable(3));
+        fresh.capture(3);
+        Assert.assertFalse(fresh.isClaimable(4));
+    }
+
+}
@@ -0,0 +1,109 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GameEventDecoderTest {
+
+    private static void assertMalformed(String message, String text) {
+        try {
+            GameEventDecoder.decode(text);
+            Assert.fail(message + ": " + text);
+        } catch (JsonParseException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTypeFirstOrLast() {
+        String[] texts = {
+            "{\"type\":\"playerLocation\",\"email\":\"a@illinois.edu\",\"team\":2,"
+                    + "\"lastLatitude\":40.11,\"lastLongitude\":-88.22,\"seq\":7,\"extra\":{\"x\":[1,2]}}",
+            "{\"extra\":{\"x\":[1,2]},\"seq\":7,\"lastLongitude\":-88.22,\"lastLatitude\":40.11,"
+                    + "\"team\":2,\"email\":\"a@illinois.edu\",\"type\":\"playerLocation\"}"
+        };
+        for (String text : texts) {
+            GameEvent event = GameEventDecoder.decode(text);
+            Assert.assertTrue(text, event instanceof GameEvent.PlayerLocation);
+            GameEvent.PlayerLocation location = (GameEvent.PlayerLocation) event;
+            Assert.assertEquals("a@illinois.edu", location.getEmail());
+            Assert.assertEquals(2, location.getTeam());
+            Assert.assertEquals(40.11, location.getLatitude(), 0);
+            Assert.assertEquals(-88.22, location.getLongitude(), 0);
+            Assert.assertEquals(7, event.getSequence());
+        }
+
+        GameEvent capture = GameEventDecoder.decode(
+                "{\"targetId\":\"Siebel\",\"team\":1,\"email\":\"b@illinois.edu\",\"type\":\"playerTargetVisit\"}");
+        Assert.assertTrue(capture instanceof GameEvent.TargetCapture);
+        Assert.assertEquals("Siebel", ((GameEvent.TargetCapture) capture).getTargetId());
+        Assert.assertEquals(1, ((GameEvent.TargetCapture) capture).getTeam());
+        Assert.assertEquals(GameEvent.NO_SEQUENCE, capture.getSequence());
+
+        GameEvent exit = GameEventDecoder.decode("{\"email\":\"c@illinois.edu\",\"type\":\"playerExit\"}");
+        Assert.assertEquals("c@illinois.edu", ((GameEvent.PlayerExit) exit).getEmail());
+    }
+
+    @Test
+    public void testUnknownTypeKeepsEveryField() {
+        JsonObject message = new JsonObject();
+        message.addProperty("email", "a@illinois.edu");
+        message.addProperty("team", 3);
+        message.addProperty("lastLatitude", 40.1);
+        message.addProperty("lastLongitude", -88.2);
+        message.addProperty("targetId", "Altgeld");
+        message.addProperty("seq", 42);
+        JsonArray nested = new JsonArray();
+        nested.add(1);
+        nested.add("two");
+        message.add("nested", nested);
+        message.addProperty("type", "somethingNew");
+
+        GameEvent event = GameEventDecoder.decode(message.toString());
+        Assert.assertTrue(event instanceof GameEvent.Full);
+        Assert.assertFalse(((GameEvent.Full) event).isFullUpdate());
+        Assert.assertEquals("somethingNew", event.getType());
+        Assert.assertEquals(42, event.getSequence());
+        Assert.assertEquals("Every field, including seq, should be kept", message, event.toJson());
+
+        // Unknown types keep a non-numeric team as sent instead of rejecting it
+        GameEvent odd = GameEventDecoder.decode("{\"type\":\"somethingNew\",\"team\":\"red\"}");
+        Assert.assertEquals("red", odd.toJson().get("team").getAsString());
+    }
+
+    @Test
+    public void testFullUpdateRoundTrip() {
+        JsonObject full = new HostedGame(SampleData.createTargetModeTestGame()).full();
+        GameEvent event = GameEventDecoder.decode(full.toString());
+        Assert.assertTrue(event instanceof GameEvent.Full);
+        Assert.assertTrue(((GameEvent.Full) event).isFullUpdate());
+        Assert.assertEquals(full.get("seq").getAsLong(), event.getSequence());
+        Assert.assertEquals(full, event.toJson());
+        Assert.assertEquals(full, GameEventDecoder.decode(event.toJson().toString()).toJson());
+    }
+
+    @Test
+    public void testMalformed() {
+        assertMalformed("A non-numeric team should be rejected",
+                "{\"type\":\"playerLocation\",\"email\":\"a@illinois.edu\",\"team\":\"red\","
+                        + "\"lastLatitude\":40.1,\"lastLongitude\":-88.2}");
+        assertMalformed("A non-numeric team should be rejected even before the type",
+                "{\"team\":{\"id\":1},\"type\":\"playerTargetVisit\",\"email\":\"a@illinois.edu\","
+                        + "\"targetId\":\"Siebel\"}");
+        assertMalformed("A non-numeric position should be rejected",
+                "{\"type\":\"playerLocation\",\"email\":\"a@illinois.edu\",\"team\":1,"
+                        + "\"lastLatitude\":\"north\",\"lastLongitude\":-88.2}");
+        assertMalformed("A non-numeric sequence number should be rejected",
+                "{\"type\":\"playerExit\",\"email\":\"a@illinois.edu\",\"seq\":\"abc\"}");
+        assertMalformed("A non-numeric sequence number should be rejected in any update",
+                "{\"seq\":[1],\"type\":\"full\"}");
+        assertMalformed("A message without a type should be rejected", "{\"email\":\"a@illinois.edu\"}");
+        assertMalformed("A message that isn't an object should be rejected", "[\"playerExit\"]");
+        assertMalformed("A truncated message should be rejected", "{\"type\":\"playerExit\",\"email\":");
+    }
+
+}
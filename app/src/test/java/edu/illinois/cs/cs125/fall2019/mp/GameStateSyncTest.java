@@ -0,0 +1,230 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GameStateSyncTest {
+
+    private Random random;
+    private HostedGame server;
+    private GameStateSync client;
+    private GameEngine clientState;
+    private List<String> emails;
+    private List<String> targetIds;
+
+    @Before
+    public void setup() {
+        random = new Random(125);
+        server = new HostedGame(SampleData.createTargetModeTestGame());
+        client = new GameStateSync(server.full());
+        clientState = GameEngine.fromFullUpdate(server.full());
+        emails = new ArrayList<>();
+        for (JsonElement p : server.full().getAsJsonArray("players")) {
+            emails.add(p.getAsJsonObject().get("email").getAsString());
+        }
+        targetIds = new ArrayList<>();
+        for (JsonElement t : server.full().getAsJsonArray("targets")) {
+            targetIds.add(t.getAsJsonObject().get("id").getAsString());
+        }
+    }
+
+    private static void apply(GameEngine engine, GameEvent event) {
+        engine.applyUpdate(event.toJson(), event.getType());
+    }
+
+    private GameStateSync.Result deliver(JsonObject update) {
+        GameEvent event = GameEventDecoder.decode(update.toString());
+        GameStateSync.Result result = client.accept(event);
+        if (result == GameStateSync.Result.APPLIED) {
+            apply(clientState, event);
+        }
+        return result;
+    }
+
+    private List<GameEvent> applyDiff(JsonObject diff) {
+        List<GameEvent> changes = client.applyDiff(diff);
+        for (GameEvent change : changes) {
+            apply(clientState, change);
+        }
+        return changes;
+    }
+
+    private void reset(JsonObject full) {
+        client.reset(full);
+        clientState.load(full);
+    }
+
+    private JsonObject resume(JsonObject request) {
+        return server.resume(request.get("since").getAsLong());
+    }
+
+    private void assertInSync() {
+        JsonObject full = server.full();
+        Assert.assertEquals("Client and server versions differ", full.get("seq").getAsLong(), client.getVersion());
+        PlayerRegistry clientPlayers = clientState.getPlayers();
+        for (JsonElement p : full.getAsJsonArray("players")) {
+            JsonObject player = p.getAsJsonObject();
+            int id = clientPlayers.idOf(player.get("email").getAsString());
+            Assert.assertNotEquals("Client doesn't know " + player, PlayerRegistry.UNKNOWN, id);
+            Assert.assertEquals("Wrong state for " + player, player.get("state").getAsInt(), clientPlayers.getState(id));
+            Assert.assertEquals("Wrong team for " + player, player.get("team").getAsInt(), clientPlayers.getTeam(id));
+            if (player.has("lastLatitude")) {
+                Assert.assertEquals("Wrong position for " + player, player.get("lastLatitude").getAsDouble(),
+                        clientPlayers.getLatitude(id), 0);
+            }
+        }
+        for (JsonElement t : full.getAsJsonArray("targets")) {
+            JsonObject target = t.getAsJsonObject();
+            Assert.assertEquals("Wrong claim for " + target, target.get("team").getAsInt(),
+                    clientState.getClaim(clientState.getTargetIndex(target.get("id").getAsString())));
+        }
+    }
+
+    /*
+     * Makes random changes on the server: mostly moves, with some exits and target claims (which only change
+     * anything if the target is unclaimed). The changes are delivered to the client if it's connected.
+     */
+    private void randomChanges(int count, boolean connected) {
+        for (int i = 0; i < count; i++) {
+            String email = emails.get(random.nextInt(emails.size()));
+            int kind = random.nextInt(20);
+            JsonObject update;
+            if (kind == 0) {
+                update = server.exitPlayer(email);
+            } else if (kind == 1) {
+                update = server.claimTarget(email, targetIds.get(random.nextInt(targetIds.size())));
+            } else {
+                update = server.movePlayer(email, 40.1 + random.nextDouble() / 100, -88.2 + random.nextDouble() / 100);
+            }
+            if (connected && update != null) {
+                Assert.assertEquals("Unexpected gap while connected", GameStateSync.Result.APPLIED, deliver(update));
+            }
+        }
+    }
+
+    @Test
+    public void testLiveUpdates() {
+        randomChanges(200, true);
+        assertInSync();
+        Assert.assertTrue(client.getVersion() > 0);
+
+        JsonObject last = server.movePlayer(emails.get(0), 40.11, -88.22);
+        Assert.assertEquals(GameStateSync.Result.APPLIED, deliver(last));
+        Assert.assertEquals("A repeated update should be ignored", GameStateSync.Result.DUPLICATE, deliver(last));
+        assertInSync();
+    }
+
+    @Test
+    public void testShortGap() {
+        randomChanges(200, true);
+        randomChanges(300, false);
+        JsonObject diff = resume(client.createResumeRequest());
+        Assert.assertEquals("A short gap should be resumed with a diff",
+                GameStateSync.DIFF_TYPE, diff.get("type").getAsString());
+        Assert.assertFalse("No more changes than players and targets should be listed",
+                applyDiff(diff).size() > emails.size() + targetIds.size());
+        Assert.assertTrue("The diff should be smaller than a full update",
+                diff.toString().length() < server.full().toString().length());
+        assertInSync();
+    }
+
+    @Test
+    public void testGapDetected() {
+        randomChanges(50, true);
+        long version = client.getVersion();
+        server.movePlayer("noone@illinois.edu", 40.11, -88.22);
+        Assert.assertEquals("An update after a missed one should be a gap", GameStateSync.Result.GAP,
+                deliver(server.movePlayer("noone@illinois.edu", 40.12, -88.22)));
+        Assert.assertEquals("An update after a gap shouldn't be applied", version, client.getVersion());
+
+        applyDiff(resume(client.createResumeRequest()));
+        assertInSync();
+        Assert.assertEquals(GameStateSync.Result.APPLIED, deliver(server.exitPlayer("noone@illinois.edu")));
+    }
+
+    @Test
+    public void testLongGap() {
+        randomChanges(100, true);
+        randomChanges(HostedGame.RETAINED_UPDATES * 2, false);
+        JsonObject response = resume(client.createResumeRequest());
+        Assert.assertEquals("A gap longer than the retained log should get a full update",
+                "full", response.get("type").getAsString());
+        reset(response);
+        assertInSync();
+    }
+
+    @Test
+    public void testFullUpdateAfterExit() {
+        randomChanges(100, true);
+        String leaving = emails.remove(0);
+        server.movePlayer(leaving, 40.11, -88.22);
+        server.exitPlayer(leaving);
+        randomChanges(HostedGame.RETAINED_UPDATES * 2, false);
+        JsonObject response = resume(client.createResumeRequest());
+        Assert.assertEquals("full", response.get("type").getAsString());
+        reset(response);
+        assertInSync();
+        PlayerRegistry clientPlayers = clientState.getPlayers();
+        Assert.assertEquals("A player who exited while disconnected should no longer be playing",
+                PlayerStateID.ACCEPTED, clientPlayers.getState(clientPlayers.idOf(leaving)));
+
+        // A player the server no longer lists at all has left the game
+        JsonObject full = server.full();
+        String dropped = emails.get(0);
+        JsonArray players = full.getAsJsonArray("players");
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getAsJsonObject().get("email").getAsString().equals(dropped)) {
+                players.remove(i);
+                break;
+            }
+        }
+        reset(full);
+        Assert.assertEquals("A player missing from a full update should be marked removed",
+                PlayerStateID.REMOVED, clientPlayers.getState(clientPlayers.idOf(dropped)));
+        Assert.assertEquals(PlayerStateID.ACCEPTED, clientPlayers.getState(clientPlayers.idOf(leaving)));
+    }
+
+    @Test
+    public void testResumeRetriedAfterTimeout() {
+        long now = 1000;
+        server.movePlayer("noone@illinois.edu", 40.11, -88.22);
+        Assert.assertEquals(GameStateSync.Result.GAP,
+                deliver(server.movePlayer("noone@illinois.edu", 40.12, -88.22)));
+        Assert.assertTrue(client.shouldResume(now));
+        client.requestResume(now);
+        Assert.assertTrue(client.isResumePending());
+
+        // The request is lost, so the gaps keep coming
+        now += 1000;
+        Assert.assertEquals(GameStateSync.Result.GAP, deliver(server.exitPlayer("noone@illinois.edu")));
+        Assert.assertFalse("A gap soon after the request should wait for its answer", client.shouldResume(now));
+        now += GameStateSync.RESUME_TIMEOUT;
+        Assert.assertEquals(GameStateSync.Result.GAP,
+                deliver(server.movePlayer("noone@illinois.edu", 40.13, -88.22)));
+        Assert.assertTrue("A gap after the timeout should resend the request", client.shouldResume(now));
+
+        JsonObject request = client.requestResume(now);
+        Assert.assertFalse(client.shouldResume(now + 1));
+        applyDiff(resume(request));
+        Assert.assertFalse("A diff should answer the request", client.isResumePending());
+        Assert.assertTrue(client.shouldResume(now + 1));
+        assertInSync();
+    }
+
+    @Test
+    public void testFullUpdateAnswersResume() {
+        client.requestResume(0);
+        reset(server.full());
+        Assert.assertFalse("A full update should answer the request", client.isResumePending());
+    }
+
+}
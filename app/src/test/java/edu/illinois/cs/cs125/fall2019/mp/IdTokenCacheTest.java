@@ -0,0 +1,204 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import edu.illinois.cs.cs125.robolectricsecurity.Trusted;
+
+@RunWith(RobolectricTestRunner.class)
+@Trusted
+public class IdTokenCacheTest {
+
+    private static final String UID = "student";
+
+    private static final long LIFETIME = TimeUnit.HOURS.toMillis(1);
+
+    /* Hands out tokens only when the test completes the pending request. */
+    private static final class FakeTokenSource implements IdTokenCache.TokenSource {
+        private String signedIn = UID;
+        private final List<Boolean> requests = Collections.synchronizedList(new ArrayList<>());
+        private ObjLongConsumer<String> pending;
+
+        @Override
+        public String getSignedInUid() {
+            return signedIn;
+        }
+
+        @Override
+        public synchronized void getIdToken(boolean forceRefresh, ObjLongConsumer<String> onToken,
+                                            Consumer<Exception> onError) {
+            requests.add(forceRefresh);
+            pending = onToken;
+        }
+
+        void complete(String token, long expiresAt) {
+            ObjLongConsumer<String> callback;
+            synchronized (this) {
+                callback = pending;
+                pending = null;
+            }
+            Assert.assertNotNull("No token was requested", callback);
+            callback.accept(token, TimeUnit.MILLISECONDS.toSeconds(expiresAt));
+        }
+    }
+
+    private long now;
+    private FakeTokenSource source;
+    private List<Long> scheduled;
+    private IdTokenCache cache;
+
+    @Before
+    public void setup() {
+        now = TimeUnit.DAYS.toMillis(18000);
+        source = new FakeTokenSource();
+        scheduled = new ArrayList<>();
+        cache = new IdTokenCache(source, scheduled::add, () -> now);
+    }
+
+    private List<String> request() {
+        List<String> received = new ArrayList<>();
+        cache.getToken(UID, received::add, e -> Assert.fail("Unexpected error: " + e));
+        return received;
+    }
+
+    @Test
+    public void testHitWhileFresh() {
+        List<String> first = request();
+        Assert.assertTrue("The first request has to wait for a token", first.isEmpty());
+        long expiresAt = now + LIFETIME;
+        source.complete("first", expiresAt);
+        Assert.assertEquals(Collections.singletonList("first"), first);
+
+        now = expiresAt - IdTokenCache.MIN_REMAINING - 1;
+        Assert.assertEquals("A token with enough time left should be handed out right away",
+                Collections.singletonList("first"), request());
+        Assert.assertEquals(1, source.requests.size());
+
+        now = expiresAt - IdTokenCache.MIN_REMAINING + 1;
+        List<String> late = request();
+        Assert.assertTrue("A token about to expire shouldn't be handed out", late.isEmpty());
+        Assert.assertEquals(2, source.requests.size());
+        source.complete("second", now + LIFETIME);
+        Assert.assertEquals(Collections.singletonList("second"), late);
+    }
+
+    @Test
+    public void testConcurrentCallersShareFetch() throws InterruptedException {
+        int callers = 8;
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                cache.getToken(UID, received::add, e -> Assert.fail("Unexpected error: " + e));
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals("Callers waiting at the same time should share one fetch", 1, source.requests.size());
+        Assert.assertTrue(received.isEmpty());
+
+        source.complete("shared", now + LIFETIME);
+        Assert.assertEquals(callers, received.size());
+        Assert.assertEquals(Collections.nCopies(callers, "shared"), received);
+        Assert.assertEquals(callers, cache.getMissCount());
+    }
+
+    @Test
+    public void testRefreshOnlyIfUsed() {
+        request();
+        long expiresAt = now + LIFETIME;
+        source.complete("first", expiresAt);
+        Assert.assertEquals("The refresh should be scheduled REFRESH_MARGIN before expiry",
+                Collections.singletonList(LIFETIME - IdTokenCache.REFRESH_MARGIN), scheduled);
+
+        now += TimeUnit.MINUTES.toMillis(10);
+        cache.refreshIfDue();
+        Assert.assertEquals("A refresh shouldn't happen before it's due", 1, source.requests.size());
+
+        now = expiresAt - IdTokenCache.REFRESH_MARGIN;
+        cache.refreshIfDue();
+        Assert.assertEquals("A used token should be refreshed before it expires", 2, source.requests.size());
+        Assert.assertTrue("The refresh should force a new token", source.requests.get(1));
+        cache.refreshIfDue();
+        Assert.assertEquals("A stale scheduled call shouldn't refresh again", 2, source.requests.size());
+        Assert.assertEquals("Requests during the refresh shouldn't wait",
+                Collections.singletonList("first"), request());
+
+        expiresAt = now + LIFETIME;
+        source.complete("refreshed", expiresAt);
+        Assert.assertEquals(Collections.singletonList("refreshed"), request());
+        now = expiresAt - IdTokenCache.REFRESH_MARGIN;
+        cache.refreshIfDue();
+        Assert.assertEquals(3, source.requests.size());
+
+        // Nothing uses this token, so it's left to expire
+        expiresAt = now + LIFETIME;
+        source.complete("unused", expiresAt);
+        now = expiresAt - IdTokenCache.REFRESH_MARGIN;
+        cache.refreshIfDue();
+        Assert.assertEquals("An unused token shouldn't be refreshed", 3, source.requests.size());
+    }
+
+    @Test
+    public void testSignedOutBeforeRefresh() {
+        request();
+        long expiresAt = now + LIFETIME;
+        source.complete("first", expiresAt);
+        request();
+        source.signedIn = null;
+        now = expiresAt - IdTokenCache.REFRESH_MARGIN;
+        cache.refreshIfDue();
+        Assert.assertEquals("A signed-out user's token shouldn't be refreshed", 1, source.requests.size());
+    }
+
+    @Test
+    public void testCounts() {
+        Assert.assertEquals(0, cache.getHitRate(), 0);
+        request();
+        request();
+        source.complete("first", now + LIFETIME);
+        for (int i = 0; i < 6; i++) {
+            request();
+        }
+        Assert.assertEquals(6, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0.75, cache.getHitRate(), 1e-9);
+
+        now += LIFETIME;
+        request();
+        Assert.assertEquals(6, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testOtherUserSignedIn() {
+        source.signedIn = "someone else";
+        List<Exception> errors = new ArrayList<>();
+        cache.getToken(UID, token -> Assert.fail("Got a token for the wrong user"), errors::add);
+        Assert.assertEquals("A request for a user who isn't signed in should fail", 1, errors.size());
+        Assert.assertTrue(source.requests.isEmpty());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+}
@@ -0,0 +1,78 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * JMH comparison of LineCrossDetector.linesCross (slope/intercept) against the orientation-based
+ * linesCrossByOrientation, over the linescross.json fixtures. Not part of the graded test suites;
+ * run main from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineCrossBenchmark {
+
+    private double[][] lines;
+
+    @Setup
+    public void setup() {
+        JsonObject[] tests = JsonResourceLoader.loadArray("linescross");
+        lines = new double[tests.length][];
+        for (int i = 0; i < tests.length; i++) {
+            JsonObject test = tests[i];
+            lines[i] = new double[] {
+                test.get("sla1").getAsDouble(), test.get("sln1").getAsDouble(),
+                test.get("ela1").getAsDouble(), test.get("eln1").getAsDouble(),
+                test.get("sla2").getAsDouble(), test.get("sln2").getAsDouble(),
+                test.get("ela2").getAsDouble(), test.get("eln2").getAsDouble()
+            };
+            boolean expected = test.get("answer").getAsBoolean();
+            double[] l = lines[i];
+            if (LineCrossDetector.linesCross(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7]) != expected
+                    || LineCrossDetector.linesCrossByOrientation(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7])
+                    != expected) {
+                throw new IllegalStateException("A crossing check disagrees with fixture " + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public void orientation(Blackhole blackhole) {
+        for (double[] l : lines) {
+            blackhole.consume(LineCrossDetector.linesCrossByOrientation(
+                    l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7]));
+        }
+    }
+
+    @Benchmark
+    public void slopeIntercept(Blackhole blackhole) {
+        for (double[] l : lines) {
+            blackhole.consume(LineCrossDetector.linesCross(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7]));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LineCrossBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,96 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LocalProjectionTest {
+
+    /* Half the height of the test areas, in degrees of latitude (about 1.5 km). */
+    private static final double HALF_HEIGHT = 0.0135;
+
+    @Test
+    public void testMatchesDistanceAtReferenceLatitude() {
+        Random random = new Random(125);
+        for (int i = 0; i < 1000; i++) {
+            double latitude = (random.nextDouble() - 0.5) * 120;
+            double longitude = (random.nextDouble() - 0.5) * 360;
+            LocalProjection projection = new LocalProjection(latitude);
+            double otherLat = latitude + (random.nextDouble() - 0.5) * 0.01;
+            double otherLng = longitude + (random.nextDouble() - 0.5) * 0.01;
+            double expected = LatLngUtils.distance(latitude, longitude, otherLat, otherLng);
+            Assert.assertEquals(expected, projection.distance(latitude, longitude, otherLat, otherLng), 1e-9);
+            Assert.assertEquals(expected * expected,
+                    projection.squaredDistance(latitude, longitude, otherLat, otherLng), 1e-6);
+        }
+        Assert.assertEquals("A degree of longitude at the reference latitude",
+                LatLngUtils.distance(40.1, -88.2, 40.1, -87.2), new LocalProjection(40.1).getLngScale(), 1e-6);
+    }
+
+    @Test
+    public void testAccuracyAcrossArea() {
+        // Within a 3 km tall area, short distances are off by under a centimeter per 20 meters
+        Random random = new Random(125);
+        for (double center : new double[] {0, 40.108, -33.9, 60}) {
+            double[] latitudes = new double[50];
+            for (int i = 0; i < latitudes.length; i++) {
+                latitudes[i] = center + (random.nextDouble() * 2 - 1) * HALF_HEIGHT;
+            }
+            latitudes[0] = center - HALF_HEIGHT;
+            latitudes[1] = center + HALF_HEIGHT;
+            LocalProjection projection = LocalProjection.forTargets(latitudes);
+            for (int i = 0; i < 10000; i++) {
+                double lat = center + (random.nextDouble() * 2 - 1) * HALF_HEIGHT;
+                double lng = -88.227 + (random.nextDouble() - 0.5) * 0.04;
+                double otherLat = lat + (random.nextDouble() - 0.5) * 0.0003;
+                double otherLng = lng + (random.nextDouble() - 0.5) * 0.0003;
+                double expected = LatLngUtils.distance(lat, lng, otherLat, otherLng);
+                double actual = projection.distance(lat, lng, otherLat, otherLng);
+                Assert.assertEquals("Too far off at " + lat + ", " + lng, expected, actual,
+                        0.01 * expected / 20);
+            }
+        }
+    }
+
+    @Test
+    public void testWithinRange() {
+        Random random = new Random(125);
+        double[] latitudes = {40.095, 40.121};
+        LocalProjection projection = LocalProjection.forTargets(latitudes);
+        int inRange = 0;
+        for (int i = 0; i < 10000; i++) {
+            double lat = 40.095 + random.nextDouble() * 0.026;
+            double lng = -88.227 + (random.nextDouble() - 0.5) * 0.03;
+            double otherLat = lat + (random.nextDouble() - 0.5) * 0.0006;
+            double otherLng = lng + (random.nextDouble() - 0.5) * 0.0006;
+            double range = 5 + random.nextDouble() * 30;
+            double distance = LatLngUtils.distance(lat, lng, otherLat, otherLng);
+            if (Math.abs(distance - range) < 0.01) {
+                // Too close to the edge of the range for the approximation to decide the same way
+                continue;
+            }
+            boolean expected = distance <= range;
+            Assert.assertEquals(expected, projection.withinRange(lat, lng, otherLat, otherLng, range));
+            if (expected) {
+                inRange++;
+            }
+        }
+        Assert.assertTrue(inRange > 1000);
+        Assert.assertTrue("A point is within any range of itself",
+                projection.withinRange(40.1, -88.2, 40.1, -88.2, 0));
+    }
+
+    @Test
+    public void testForTargetsUsesMiddleLatitude() {
+        double[] latitudes = {40.10, 40.12, 40.09, 40.11};
+        Assert.assertEquals(new LocalProjection(40.105).getLngScale(),
+                LocalProjection.forTargets(latitudes).getLngScale(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForNoTargets() {
+        LocalProjection.forTargets(new double[0]);
+    }
+
+}
@@ -0,0 +1,127 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.JsonObject;
+import com.neovisionaries.ws.client.WebSocket;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Random;
+
+import edu.illinois.cs.cs125.robolectricsecurity.Trusted;
+
+@RunWith(RobolectricTestRunner.class)
+@Trusted
+public class ManagedWebSocketTest {
+
+    private static final String URL = "wss://cs125-cloud.cs.illinois.edu/Fall2019-MP/games/abc/play";
+
+    private long now = 1000;
+
+    @After
+    public void unpause() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    private static JsonObject location(double latitude, double longitude) {
+        JsonObject update = new JsonObject();
+        update.addProperty("type", OutboundPipeline.LOCATION_TYPE);
+        update.addProperty("latitude", latitude);
+        update.addProperty("longitude", longitude);
+        return update;
+    }
+
+    private static JsonObject capture(String targetId) {
+        JsonObject capture = new JsonObject();
+        capture.addProperty("type", "targetVisit");
+        capture.addProperty("targetId", targetId);
+        return capture;
+    }
+
+    @Test
+    public void testBackoffDelay() {
+        Assert.assertEquals("The first retry without jitter should wait the initial backoff",
+                ManagedWebSocket.INITIAL_BACKOFF, ManagedWebSocket.backoffDelay(0, 0));
+        long previousLongest = 0;
+        for (int failures = 0; failures < 40; failures++) {
+            long shortest = ManagedWebSocket.backoffDelay(failures, 0);
+            long longest = ManagedWebSocket.backoffDelay(failures, Math.nextDown(1.0));
+            Assert.assertTrue("Too short after " + failures + " failures: " + shortest,
+                    shortest >= ManagedWebSocket.INITIAL_BACKOFF);
+            Assert.assertTrue("Too long after " + failures + " failures: " + longest,
+                    longest <= ManagedWebSocket.MAX_BACKOFF);
+            Assert.assertTrue("The delay shouldn't shrink as failures pile up", longest >= previousLongest);
+            previousLongest = longest;
+        }
+        Assert.assertTrue("Many failures should reach the longest backoff",
+                previousLongest > ManagedWebSocket.MAX_BACKOFF * 9 / 10);
+
+        Random random = new Random(125);
+        for (int i = 0; i < 1000; i++) {
+            long delay = ManagedWebSocket.backoffDelay(random.nextInt(100), random.nextDouble());
+            Assert.assertTrue("Delay out of range: " + delay, delay >= ManagedWebSocket.INITIAL_BACKOFF
+                    && delay <= ManagedWebSocket.MAX_BACKOFF);
+        }
+    }
+
+    @Test
+    public void testResumeUrl() {
+        Assert.assertEquals(URL + "?since=42", ManagedWebSocket.resumeUrl(URL, 42));
+        Assert.assertEquals(URL + "?spectate=true&since=0", ManagedWebSocket.resumeUrl(URL + "?spectate=true", 0));
+        Assert.assertEquals("Without a version the endpoint should be unchanged",
+                URL, ManagedWebSocket.resumeUrl(URL, GameEvent.NO_SEQUENCE));
+    }
+
+    @Test
+    public void testCapturesBeforeHeldLocation() {
+        ManagedWebSocket connection = new ManagedWebSocket(URL, text -> { });
+        OutboundPipeline pipeline = new OutboundPipeline(connection::sendText, delay -> { }, () -> now,
+                OutboundPipeline.DEFAULT_MIN_DISTANCE, OutboundPipeline.DEFAULT_MIN_INTERVAL);
+        pipeline.holdLocationsWhile(() -> !connection.isConnected());
+        // Like Game.reconnected, flush the held location from a task posted to the main thread
+        Handler handler = new Handler(Looper.getMainLooper());
+        connection.setReconnectListener(newSocket -> handler.post(pipeline::flush));
+
+        WebSocket first = Mockito.mock(WebSocket.class);
+        connection.attach(first);
+        connection.opened(first);
+        JsonObject before = location(40.110, -88.227);
+        pipeline.send(before);
+        Mockito.verify(first).sendText(before.toString());
+
+        // Offline: the locations are held back by the pipeline and the capture is buffered by the connection
+        connection.lost(first);
+        Assert.assertFalse(connection.isConnected());
+        now += 1000;
+        pipeline.send(location(40.111, -88.227));
+        JsonObject visit = capture("Siebel");
+        pipeline.send(visit);
+        now += 1000;
+        JsonObject latest = location(40.112, -88.227);
+        pipeline.send(latest);
+        Mockito.verify(first, Mockito.never()).sendText(visit.toString());
+
+        WebSocket second = Mockito.mock(WebSocket.class);
+        ShadowLooper.pauseMainLooper();
+        connection.attach(second);
+        connection.opened(second);
+        ShadowLooper.runUiThreadTasks();
+
+        Assert.assertTrue(connection.isConnected());
+        Assert.assertEquals(1, connection.getReconnectCount());
+        InOrder order = Mockito.inOrder(second);
+        order.verify(second).sendText(visit.toString());
+        order.verify(second).sendText(latest.toString());
+        Mockito.verify(second, Mockito.times(2)).sendText(Mockito.anyString());
+    }
+
+}
@@ -0,0 +1,161 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutboundPipelineTest {
+
+    private List<String> sent;
+    private List<Long> scheduled;
+    private long now;
+    private OutboundPipeline pipeline;
+
+    @Before
+    public void setup() {
+        sent = new ArrayList<>();
+        scheduled = new ArrayList<>();
+        now = 1000;
+        pipeline = new OutboundPipeline(sent::add, scheduled::add, () -> now,
+                OutboundPipeline.DEFAULT_MIN_DISTANCE, OutboundPipeline.DEFAULT_MIN_INTERVAL);
+    }
+
+    private static JsonObject location(double latitude, double longitude) {
+        JsonObject update = new JsonObject();
+        update.addProperty("type", OutboundPipeline.LOCATION_TYPE);
+        update.addProperty("latitude", latitude);
+        update.addProperty("longitude", longitude);
+        return update;
+    }
+
+    private static JsonObject capture(String targetId) {
+        JsonObject capture = new JsonObject();
+        capture.addProperty("type", "targetVisit");
+        capture.addProperty("targetId", targetId);
+        return capture;
+    }
+
+    private double sentLatitude(int index) {
+        return new JsonParser().parse(sent.get(index)).getAsJsonObject().get("latitude").getAsDouble();
+    }
+
+    @Test
+    public void testDeduplicatesSmallMoves() {
+        pipeline.send(location(40.1100000, -88.2270000));
+        now += 2000;
+        // About 1.1 meters north, under the 2 meter threshold
+        pipeline.send(location(40.1100100, -88.2270000));
+        Assert.assertEquals("A fix under the distance threshold should be dropped", 1, sent.size());
+        Assert.assertEquals(1, pipeline.getDeduplicatedCount());
+        Assert.assertTrue("A dropped fix shouldn't schedule a flush", scheduled.isEmpty());
+
+        // About 3.3 meters from the first (the dropped fix doesn't move the reference point)
+        pipeline.send(location(40.1100300, -88.2270000));
+        Assert.assertEquals("A fix over the distance threshold should be sent", 2, sent.size());
+        Assert.assertEquals(40.1100300, sentLatitude(1), 1e-9);
+        Assert.assertEquals(1, pipeline.getDeduplicatedCount());
+    }
+
+    @Test
+    public void testCoalescesWithinInterval() {
+        pipeline.send(location(40.110, -88.227));
+        Assert.assertEquals("The first fix should be sent right away", 1, sent.size());
+
+        now += 100;
+        pipeline.send(location(40.111, -88.227));
+        Assert.assertEquals("A fix inside the interval should be held back", 1, sent.size());
+        Assert.assertEquals("The flush should be scheduled for the end of the interval",
+                Long.valueOf(400), scheduled.get(0));
+        now += 100;
+        pipeline.send(location(40.112, -88.227));
+        now += 100;
+        pipeline.send(location(40.113, -88.227));
+        Assert.assertEquals("Only one flush should be scheduled per interval", 1, scheduled.size());
+        Assert.assertEquals(2, pipeline.getCoalescedCount());
+
+        now += 100;
+        pipeline.flushIfDue();
+        Assert.assertEquals("An early flush shouldn't send anything", 1, sent.size());
+        Assert.assertEquals("An early flush should reschedule itself", Long.valueOf(100), scheduled.get(1));
+
+        now += 100;
+        pipeline.flushIfDue();
+        Assert.assertEquals("Only the latest fix should be sent when the interval is up", 2, sent.size());
+        Assert.assertEquals(40.113, sentLatitude(1), 1e-9);
+        pipeline.flushIfDue();
+        Assert.assertEquals("Nothing should be left to flush", 2, sent.size());
+    }
+
+    @Test
+    public void testCaptureSentImmediately() {
+        pipeline.send(location(40.110, -88.227));
+        now += 100;
+        pipeline.send(location(40.111, -88.227));
+        pipeline.send(capture("Siebel"));
+        Assert.assertEquals("A capture shouldn't wait for the interval", 2, sent.size());
+        Assert.assertEquals("A capture should go out ahead of the held location",
+                "targetVisit", new JsonParser().parse(sent.get(1)).getAsJsonObject().get("type").getAsString());
+
+        now += 400;
+        pipeline.flushIfDue();
+        Assert.assertEquals("The held location should still be sent when the interval is up", 3, sent.size());
+        Assert.assertEquals(40.111, sentLatitude(2), 1e-9);
+
+        pipeline.send(capture("Altgeld"));
+        pipeline.send(capture("Altgeld"));
+        Assert.assertEquals("Captures should never be deduplicated", 5, sent.size());
+    }
+
+    @Test
+    public void testHeldWhileDisconnected() {
+        boolean[] disconnected = {false};
+        pipeline.holdLocationsWhile(() -> disconnected[0]);
+        pipeline.send(location(40.110, -88.227));
+        disconnected[0] = true;
+
+        now += 1000;
+        pipeline.send(location(40.111, -88.227));
+        now += 1000;
+        pipeline.send(location(40.112, -88.227));
+        pipeline.send(capture("Siebel"));
+        pipeline.send(location(40.113, -88.227));
+        pipeline.flushIfDue();
+        pipeline.flush();
+        Assert.assertEquals("Only the capture should be sent while disconnected", 2, sent.size());
+        Assert.assertTrue("A held fix shouldn't schedule a flush", scheduled.isEmpty());
+        Assert.assertEquals(2, pipeline.getCoalescedCount());
+
+        disconnected[0] = false;
+        pipeline.flush();
+        Assert.assertEquals("Only the latest held fix should be sent once reconnected", 3, sent.size());
+        Assert.assertEquals(40.113, sentLatitude(2), 1e-9);
+        pipeline.flush();
+        Assert.assertEquals(3, sent.size());
+    }
+
+    @Test
+    public void testCounters() {
+        pipeline.send(location(40.110, -88.227));
+        pipeline.send(location(40.110, -88.227));
+        now += 100;
+        pipeline.send(location(40.111, -88.227));
+        pipeline.send(location(40.112, -88.227));
+        pipeline.send(capture("Noyes"));
+        now += 400;
+        pipeline.flushIfDue();
+        pipeline.send(location(40.112, -88.227));
+
+        Assert.assertEquals("Sent messages: two locations and a capture", 3, pipeline.getSentCount());
+        Assert.assertEquals(sent.size(), pipeline.getSentCount());
+        Assert.assertEquals(2, pipeline.getDeduplicatedCount());
+        Assert.assertEquals(1, pipeline.getCoalescedCount());
+        Assert.assertEquals(3, pipeline.getSuppressedCount());
+    }
+
+}
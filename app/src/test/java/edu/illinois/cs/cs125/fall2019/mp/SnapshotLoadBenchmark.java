@@ -0,0 +1,122 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Measures the client-side part of time to first render when re-entering a game: before snapshots the
+ * game could only be drawn once the full update's JSON text had arrived and been parsed, now it can be
+ * drawn as soon as the GameSnapshot file is read. The network round trip for the full update (connecting
+ * the websocket and waiting for the server) is excluded from "before", so the real difference on a device
+ * is larger. Not part of the graded test suites; run main from the IDE.
+ */
+final class SnapshotLoadBenchmark {
+
+    private static final int[][] SIZES = {{100, 10}, {1_000, 50}, {10_000, 200}};
+
+    private static final int RUNS = 25;
+
+    private static final String EMAIL = "player0@illinois.edu";
+
+    private SnapshotLoadBenchmark() { }
+
+    private static JsonObject createGame(Random random, int targetCount, int playerCount) {
+        JsonObject game = new JsonObject();
+        game.addProperty("type", "full");
+        game.addProperty("seq", 1000);
+        game.addProperty("owner", EMAIL);
+        game.addProperty("mode", "target");
+        game.addProperty("state", GameStateID.RUNNING);
+        game.addProperty("proximityThreshold", 20);
+        JsonArray targets = new JsonArray();
+        for (int i = 0; i < targetCount; i++) {
+            JsonObject target = new JsonObject();
+            target.addProperty("id", "target" + i);
+            target.addProperty("latitude", 40.09 + random.nextDouble() * 0.04);
+            target.addProperty("longitude", -88.25 + random.nextDouble() * 0.05);
+            target.addProperty("team", TeamID.OBSERVER);
+            targets.add(target);
+        }
+        JsonArray players = new JsonArray();
+        for (int p = 0; p < playerCount; p++) {
+            JsonObject player = new JsonObject();
+            player.addProperty("email", "player" + p + "@illinois.edu");
+            int team = TeamID.MIN_TEAM + p % TeamID.NUM_TEAMS;
+            player.addProperty("team", team);
+            player.addProperty("state", PlayerStateID.PLAYING);
+            player.addProperty("lastLatitude", 40.09 + random.nextDouble() * 0.04);
+            player.addProperty("lastLongitude", -88.25 + random.nextDouble() * 0.05);
+            JsonArray path = new JsonArray();
+            for (int i = p; i < targetCount; i += playerCount * 4) {
+                JsonObject target = targets.get(i).getAsJsonObject();
+                target.addProperty("team", team);
+                path.add(target);
+            }
+            player.add("path", path);
+            players.add(player);
+        }
+        game.add("targets", targets);
+        game.add("players", players);
+        return game;
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(125);
+        JsonParser parser = new JsonParser();
+        System.out.printf("%8s %8s %12s %12s %14s %16s%n", "targets", "players", "JSON bytes", "file bytes",
+                "parse full ms", "read snapshot ms");
+        for (int[] size : SIZES) {
+            String text = createGame(random, size[0], size[1]).toString();
+            GameSnapshot snapshot = GameSnapshot.capture(GameEngine.fromFullUpdate(
+                    parser.parse(text).getAsJsonObject()), 1000, EMAIL, System.currentTimeMillis());
+            File file = File.createTempFile("game", ".snapshot");
+            file.deleteOnExit();
+            try (OutputStream output = new FileOutputStream(file)) {
+                snapshot.write(output);
+            }
+            ByteArrayOutputStream check = new ByteArrayOutputStream();
+            snapshot.write(check);
+            GameEngine reloaded = GameEngine.fromFullUpdate(snapshot.toFullUpdate());
+            if (!Arrays.equals(GameSnapshot.capture(reloaded, 1000, EMAIL, 0).getPath(), snapshot.getPath())) {
+                throw new AssertionError("Snapshot round trip lost the path");
+            }
+
+            long[] before = new long[RUNS];
+            long[] after = new long[RUNS];
+            long checksum = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                GameEngine parsed = GameEngine.fromFullUpdate(parser.parse(text).getAsJsonObject());
+                before[run] = System.nanoTime() - start;
+                checksum += parsed.getObjectiveCount();
+
+                start = System.nanoTime();
+                try (InputStream input = new FileInputStream(file)) {
+                    checksum += GameSnapshot.read(input).getPath().length;
+                }
+                after[run] = System.nanoTime() - start;
+            }
+            System.out.printf("%8d %8d %,12d %,12d %14.3f %16.3f%n", size[0], size[1], text.length(),
+                    check.size(), median(before), median(after));
+            System.out.println("(checksum " + checksum + ")");
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+public class TargetKdTreeTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    private static int linearNearest(double[] lats, double[] lngs, double lat, double lng, IntPredicate excluded) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < lats.length; i++) {
+            double distance = LatLngUtils.distance(lat, lng, lats[i], lngs[i]);
+            if (distance < bestDistance && (excluded == null || !excluded.test(i))) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /* Distances from the query point to every allowed target, sorted. */
+    private static double[] linearDistances(double[] lats, double[] lngs, double lat, double lng,
+                                            IntPredicate excluded) {
+        return IntStream.range(0, lats.length)
+                .filter(i -> excluded == null || !excluded.test(i))
+                .mapToDouble(i -> LatLngUtils.distance(lat, lng, lats[i], lngs[i])).sorted().toArray();
+    }
+
+    /*
+     * The tree computes the same distances in a slightly different order, so targets at (almost) the same
+     * distance may come back in either order; the distances must match.
+     */
+    private static void assertSameNearest(double[] lats, double[] lngs, double lat, double lng, int expected,
+                                          int actual) {
+        if (expected == -1 || actual == -1) {
+            Assert.assertEquals(expected, actual);
+            return;
+        }
+        Assert.assertEquals("Wrong nearest target for " + lat + ", " + lng,
+                LatLngUtils.distance(lat, lng, lats[expected], lngs[expected]),
+                LatLngUtils.distance(lat, lng, lats[actual], lngs[actual]), TOLERANCE);
+    }
+
+    private static double[] randomCoordinates(Random random, int count, double center, double spread) {
+        double[] coordinates = new double[count];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = center + (random.nextDouble() - 0.5) * spread;
+        }
+        return coordinates;
+    }
+
+    @Test
+    public void testNearestMatchesLinearScan() {
+        Random random = new Random(125);
+        for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            double[] lats = randomCoordinates(random, size, 40.108, 0.02);
+            double[] lngs = randomCoordinates(random, size, -88.227, 0.02);
+            TargetKdTree tree = new TargetKdTree(lats, lngs);
+            Assert.assertEquals(size, tree.size());
+            for (int query = 0; query < 200; query++) {
+                // Some queries land well outside the targets
+                double lat = 40.108 + (random.nextDouble() - 0.5) * 0.06;
+                double lng = -88.227 + (random.nextDouble() - 0.5) * 0.06;
+                boolean[] skip = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    skip[i] = random.nextInt(4) == 0;
+                }
+                IntPredicate excluded = i -> skip[i];
+                assertSameNearest(lats, lngs, lat, lng, linearNearest(lats, lngs, lat, lng, null),
+                        tree.nearest(lat, lng, null));
+                assertSameNearest(lats, lngs, lat, lng, linearNearest(lats, lngs, lat, lng, excluded),
+                        tree.nearest(lat, lng, excluded));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestReusedAcrossQueries() {
+        double[] lats = {40.100, 40.101, 40.102};
+        double[] lngs = {-88.220, -88.221, -88.222};
+        TargetKdTree tree = new TargetKdTree(lats, lngs);
+        Assert.assertEquals(1, tree.nearest(40.1011, -88.2211, null));
+        Assert.assertEquals("A query with every target excluded should find none after one that found some",
+                -1, tree.nearest(40.1011, -88.2211, i -> true));
+        Assert.assertEquals(2, tree.nearest(40.1011, -88.2211, i -> i < 2));
+        Assert.assertEquals(0, tree.nearest(40.0, -88.2, null));
+        Assert.assertEquals(-1, new TargetKdTree(new double[0], new double[0]).nearest(40.1, -88.2, null));
+    }
+
+    @Test
+    public void testDuplicateAndCollinearTargets() {
+        // Many targets on the same point and on the same lines stress the median splits
+        Random random = new Random(125);
+        double[] lats = new double[500];
+        double[] lngs = new double[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = 40.1 + random.nextInt(5) * 0.001;
+            lngs[i] = -88.22 - random.nextInt(5) * 0.001;
+        }
+        TargetKdTree tree = new TargetKdTree(lats, lngs);
+        for (int query = 0; query < 500; query++) {
+            double lat = 40.1 + random.nextDouble() * 0.005;
+            double lng = -88.22 - random.nextDouble() * 0.005;
+            int skipped = random.nextInt(lats.length);
+            IntPredicate excluded = i -> i % 7 == skipped % 7;
+            assertSameNearest(lats, lngs, lat, lng, linearNearest(lats, lngs, lat, lng, excluded),
+                    tree.nearest(lat, lng, excluded));
+        }
+    }
+
+    @Test
+    public void testKNearestMatchesLinearScan() {
+        Random random = new Random(125);
+        double[] lats = randomCoordinates(random, 300, 40.108, 0.02);
+        double[] lngs = randomCoordinates(random, 300, -88.227, 0.02);
+        TargetKdTree tree = new TargetKdTree(lats, lngs);
+        for (int query = 0; query < 200; query++) {
+            double lat = 40.108 + (random.nextDouble() - 0.5) * 0.03;
+            double lng = -88.227 + (random.nextDouble() - 0.5) * 0.03;
+            int modulus = 1 + random.nextInt(3);
+            IntPredicate excluded = i -> i % modulus == 1;
+            double[] expected = linearDistances(lats, lngs, lat, lng, excluded);
+
+            int[] indexes = new int[1 + random.nextInt(20)];
+            double[] distances = new double[indexes.length];
+            int found = tree.nearest(lat, lng, excluded, indexes, distances);
+            Assert.assertEquals(Math.min(indexes.length, expected.length), found);
+            for (int i = 0; i < found; i++) {
+                Assert.assertFalse(excluded.test(indexes[i]));
+                Assert.assertEquals(expected[i], distances[i], TOLERANCE);
+                Assert.assertEquals(expected[i], LatLngUtils.distance(lat, lng, lats[indexes[i]], lngs[indexes[i]]),
+                        TOLERANCE);
+            }
+            Assert.assertEquals("Results should be distinct targets",
+                    found, Arrays.stream(indexes, 0, found).distinct().count());
+        }
+
+        int[] all = new int[lats.length + 5];
+        Arrays.fill(all, -2);
+        Assert.assertEquals("Asking for more targets than exist should find them all",
+                lats.length, tree.nearest(40.1, -88.2, null, all, null));
+        Assert.assertEquals("Slots past the results should be left alone", -2, all[lats.length]);
+    }
+
+    @Test
+    public void testNearestUnvisitedFixtures() {
+        for (JsonObject test : JsonResourceLoader.loadArray("targetrange")) {
+            double[] lats = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] lngs = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            double lat = test.get("lat").getAsDouble();
+            double lng = test.get("lng").getAsDouble();
+            TargetKdTree tree = new TargetKdTree(lats, lngs);
+            int expected = linearNearest(lats, lngs, lat, lng, i -> TargetVisitChecker.isVisited(path, i));
+            assertSameNearest(lats, lngs, lat, lng, expected, tree.nearestUnvisited(lat, lng, path));
+            assertSameNearest(lats, lngs, lat, lng, expected,
+                    tree.nearestUnvisited(lat, lng, new VisitedTargets(path)));
+        }
+    }
+
+}
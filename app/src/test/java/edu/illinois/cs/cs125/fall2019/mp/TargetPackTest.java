@@ -0,0 +1,165 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class TargetPackTest {
+
+    /*
+     * Writes a pack the way the compileTargetPacks Gradle task does: a little-endian header, then every
+     * latitude, then every longitude, then (if there are names) each name's length and UTF-8 bytes.
+     */
+    private static byte[] packLikeBuildTask(double[] latitudes, double[] longitudes, String[] names) {
+        byte[][] nameBytes = new byte[latitudes.length][];
+        int size = 16 + latitudes.length * 16;
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+                size += 4 + nameBytes[i].length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x4B504754).putInt(1).putInt(latitudes.length).putInt(names == null ? 0 : 1);
+        for (double latitude : latitudes) {
+            buffer.putDouble(latitude);
+        }
+        for (double longitude : longitudes) {
+            buffer.putDouble(longitude);
+        }
+        if (names != null) {
+            for (byte[] name : nameBytes) {
+                buffer.putInt(name.length).put(name);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static double[] randomCoordinates(Random random, int count, double center) {
+        double[] coordinates = new double[count];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = center + (random.nextDouble() - 0.5) / 10;
+        }
+        return coordinates;
+    }
+
+    private static void assertPack(double[] latitudes, double[] longitudes, String[] names, TargetPack pack) {
+        Assert.assertEquals(latitudes.length, pack.size());
+        Assert.assertArrayEquals(latitudes, pack.getLatitudes(), 0);
+        Assert.assertArrayEquals(longitudes, pack.getLongitudes(), 0);
+        for (int i = 0; i < latitudes.length; i++) {
+            Assert.assertEquals(latitudes[i], pack.getLatitude(i), 0);
+            Assert.assertEquals(longitudes[i], pack.getLongitude(i), 0);
+        }
+        Assert.assertArrayEquals(names, pack.getNames());
+    }
+
+    private static void assertRejected(String message, byte[] data) {
+        try {
+            TargetPack.read(new ByteArrayInputStream(data));
+            Assert.fail(message);
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testReadsBuildTaskPack() throws IOException {
+        Random random = new Random(125);
+        double[] latitudes = randomCoordinates(random, 500, 40.11);
+        double[] longitudes = randomCoordinates(random, 500, -88.23);
+        String[] names = new String[latitudes.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Target " + i;
+        }
+        names[0] = "";
+        names[1] = "Caf\u00e9 \u00dcnion \u2713";
+
+        TargetPack pack = TargetPack.read(new ByteArrayInputStream(packLikeBuildTask(latitudes, longitudes, names)));
+        assertPack(latitudes, longitudes, names, pack);
+
+        TargetPack unnamed = TargetPack.read(new ByteArrayInputStream(packLikeBuildTask(latitudes, longitudes, null)));
+        assertPack(latitudes, longitudes, null, unnamed);
+
+        TargetPack empty = TargetPack.read(new ByteArrayInputStream(
+                packLikeBuildTask(new double[0], new double[0], null)));
+        Assert.assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void testWriteMatchesBuildTask() throws IOException {
+        Random random = new Random(125);
+        double[] latitudes = randomCoordinates(random, 50, 40.11);
+        double[] longitudes = randomCoordinates(random, 50, -88.23);
+        String[] names = new String[latitudes.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "\u2691" + i;
+        }
+        for (String[] withNames : new String[][] {names, null}) {
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            TargetPack.write(latitudes, longitudes, withNames, written);
+            Assert.assertArrayEquals(packLikeBuildTask(latitudes, longitudes, withNames), written.toByteArray());
+            assertPack(latitudes, longitudes, withNames,
+                    TargetPack.read(new ByteArrayInputStream(written.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testReadsFromBufferPosition() throws IOException {
+        double[] latitudes = {40.1, 40.2, 40.3};
+        double[] longitudes = {-88.1, -88.2, -88.3};
+        String[] names = {"Siebel", "Altgeld", "Noyes"};
+        byte[] pack = packLikeBuildTask(latitudes, longitudes, names);
+        ByteBuffer buffer = ByteBuffer.allocate(pack.length + 5);
+        buffer.position(5);
+        buffer.put(pack);
+        buffer.position(5);
+        assertPack(latitudes, longitudes, names, TargetPack.read(buffer));
+        Assert.assertEquals("Reading shouldn't move the caller's buffer", 5, buffer.position());
+    }
+
+    @Test
+    public void testRejectsBadPacks() {
+        double[] latitudes = {40.1, 40.2};
+        double[] longitudes = {-88.1, -88.2};
+        String[] names = {"Siebel", "Altgeld"};
+        byte[] good = packLikeBuildTask(latitudes, longitudes, names);
+
+        byte[] badMagic = good.clone();
+        badMagic[0] = 'X';
+        assertRejected("A pack with the wrong magic number should be rejected", badMagic);
+
+        byte[] badVersion = good.clone();
+        ByteBuffer.wrap(badVersion).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 2);
+        assertRejected("A pack with an unknown version should be rejected", badVersion);
+
+        byte[] bigEndian = good.clone();
+        ByteBuffer.wrap(bigEndian).putInt(0, 0x4B504754);
+        assertRejected("A big-endian header should be rejected", bigEndian);
+
+        assertRejected("An empty file should be rejected", new byte[0]);
+        byte[] truncatedHeader = new byte[12];
+        System.arraycopy(good, 0, truncatedHeader, 0, truncatedHeader.length);
+        assertRejected("A truncated header should be rejected", truncatedHeader);
+
+        byte[] truncatedCoordinates = new byte[16 + 3 * 8];
+        System.arraycopy(good, 0, truncatedCoordinates, 0, truncatedCoordinates.length);
+        assertRejected("Truncated coordinates should be rejected", truncatedCoordinates);
+
+        byte[] truncatedNames = new byte[good.length - 1];
+        System.arraycopy(good, 0, truncatedNames, 0, truncatedNames.length);
+        assertRejected("A truncated name table should be rejected", truncatedNames);
+
+        byte[] negativeName = good.clone();
+        ByteBuffer.wrap(negativeName).order(ByteOrder.LITTLE_ENDIAN).putInt(16 + 2 * 16, -1);
+        assertRejected("A negative name length should be rejected", negativeName);
+    }
+
+}
@@ -0,0 +1,81 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+/*
+ * Compares TargetKdTree's nearest-unvisited query against a full linear scan, using the
+ * targetrange.json fixtures. Not part of the graded test suites; run main from the IDE.
+ */
+final class TargetQueryBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 2000;
+
+    private TargetQueryBenchmark() { }
+
+    private static int linearNearestUnvisited(double[] lats, double[] lngs, int[] path, double lat, double lng) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < lats.length; i++) {
+            double distance = LatLngUtils.distance(lat, lng, lats[i], lngs[i]);
+            if (distance < bestDistance && !TargetVisitChecker.isVisited(path, i)) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        JsonObject[] tests = JsonResourceLoader.loadArray("targetrange");
+        double[][] lats = new double[tests.length][];
+        double[][] lngs = new double[tests.length][];
+        int[][] paths = new int[tests.length][];
+        double[] queryLats = new double[tests.length];
+        double[] queryLngs = new double[tests.length];
+        TargetKdTree[] trees = new TargetKdTree[tests.length];
+        for (int t = 0; t < tests.length; t++) {
+            lats[t] = JsonResourceLoader.getDoubleArray(tests[t].getAsJsonArray("lats"));
+            lngs[t] = JsonResourceLoader.getDoubleArray(tests[t].getAsJsonArray("lngs"));
+            paths[t] = JsonResourceLoader.getIntArray(tests[t].getAsJsonArray("path"));
+            queryLats[t] = tests[t].get("lat").getAsDouble();
+            queryLngs[t] = tests[t].get("lng").getAsDouble();
+            trees[t] = new TargetKdTree(lats[t], lngs[t]);
+            int expected = linearNearestUnvisited(lats[t], lngs[t], paths[t], queryLats[t], queryLngs[t]);
+            int actual = trees[t].nearestUnvisited(queryLats[t], queryLngs[t], paths[t]);
+            if (expected != actual) {
+                throw new AssertionError("Mismatch on fixture " + t + ": linear " + expected + ", k-d tree " + actual);
+            }
+        }
+
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (int t = 0; t < tests.length; t++) {
+                checksum += linearNearestUnvisited(lats[t], lngs[t], paths[t], queryLats[t], queryLngs[t]);
+                checksum += trees[t].nearestUnvisited(queryLats[t], queryLngs[t], paths[t]);
+            }
+        }
+
+        long linearStart = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (int t = 0; t < tests.length; t++) {
+                checksum += linearNearestUnvisited(lats[t], lngs[t], paths[t], queryLats[t], queryLngs[t]);
+            }
+        }
+        long linearTime = System.nanoTime() - linearStart;
+
+        long treeStart = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (int t = 0; t < tests.length; t++) {
+                checksum += trees[t].nearestUnvisited(queryLats[t], queryLngs[t], paths[t]);
+            }
+        }
+        long treeTime = System.nanoTime() - treeStart;
+
+        long queries = (long) MEASURED_ROUNDS * tests.length;
+        System.out.printf("Linear scan: %.1f ns/query%n", (double) linearTime / queries);
+        System.out.printf("K-d tree:    %.1f ns/query%n", (double) treeTime / queries);
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+}
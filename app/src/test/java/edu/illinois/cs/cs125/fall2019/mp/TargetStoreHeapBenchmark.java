@@ -0,0 +1,83 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Compares the heap used to hold a target set as a List<LatLng> (how DefaultTargets used to store
+ * targets), as a loaded TargetPack (how DefaultTargets stores them now), and as a MappedTargetStore.
+ * Not part of the graded test suites; run main from the IDE, ideally with a fixed heap size (-Xmx2g).
+ */
+final class TargetStoreHeapBenchmark {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    private TargetStoreHeapBenchmark() { }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String name, int size, long bytes) {
+        System.out.printf("%9d targets  %-18s %,14d bytes  (%.1f bytes/target)%n",
+                size, name, bytes, (double) bytes / size);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(125);
+        for (int size : SIZES) {
+            double[] lats = new double[size];
+            double[] lngs = new double[size];
+            for (int i = 0; i < size; i++) {
+                lats[i] = 40.09 + random.nextDouble() * 0.04;
+                lngs[i] = -88.25 + random.nextDouble() * 0.05;
+            }
+            File file = File.createTempFile("targets", ".bin");
+            file.deleteOnExit();
+            try (OutputStream output = new FileOutputStream(file)) {
+                TargetPack.write(lats, lngs, null, output);
+            }
+            double checksum = 0;
+
+            long before = usedHeap();
+            List<LatLng> list = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                list.add(new LatLng(lats[i], lngs[i]));
+            }
+            report("List<LatLng>", size, usedHeap() - before);
+            checksum += list.get(size - 1).latitude;
+            list = null;
+
+            before = usedHeap();
+            TargetPack pack = TargetPack.read(new FileInputStream(file));
+            report("TargetPack", size, usedHeap() - before);
+            checksum += pack.getLatitude(size - 1);
+            pack = null;
+
+            before = usedHeap();
+            MappedTargetStore mapped = new MappedTargetStore(file);
+            report("MappedTargetStore", size, usedHeap() - before);
+            checksum += mapped.getLatitude(size - 1);
+
+            System.out.println("(checksum " + checksum + ")");
+        }
+    }
+
+}
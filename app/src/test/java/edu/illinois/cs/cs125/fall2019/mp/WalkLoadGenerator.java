@@ -0,0 +1,347 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Load generator that drives many simulated players against an in-process GameServer over real websockets
+ * (the same nv-websocket-client library and Firebase-Token header as WebApi). Each walker is a WalkSimulator:
+ * either a replay of the humanpaths.json trajectories, looping through them, or a GeneratedWalkSimulator
+ * random walk. Walkers send a locationUpdate per fix from a scheduled thread pool; a tick only queues the
+ * message on the socket's writing thread, so one thread per core keeps up. End-to-end latency is the time
+ * from a walker sending a fix to each other player in its game receiving the matching playerLocation. Not
+ * part of the graded test suites; run main from the IDE with optional key=value arguments, e.g.
+ * players=500 perGame=20 rate=1 seconds=30 walk=human.
+ */
+final class WalkLoadGenerator {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final long LATCH_TIMEOUT_SECONDS = 30;
+    private static final long DRAIN_MILLIS = 1000;
+    private static final int REMEMBERED_FIXES = 64;
+    private static final double RANDOM_STEP_DEGREES = 0.00005;
+    private static final String[] PERCENTILES = {"50", "90", "99", "99.9"};
+
+    private final int players;
+    private final int perGame;
+    private final double rate;
+    private final int seconds;
+    private final boolean humanPaths;
+
+    private final JsonArray paths;
+    private final Map<String, Walker> walkers = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder fixesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private CountDownLatch joined;
+    private CountDownLatch closed;
+
+    private WalkLoadGenerator(Map<String, String> options) {
+        players = Integer.parseInt(options.getOrDefault("players", "500"));
+        perGame = Integer.parseInt(options.getOrDefault("perGame", "20"));
+        rate = Double.parseDouble(options.getOrDefault("rate", "1"));
+        seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        humanPaths = options.getOrDefault("walk", "human").equals("human");
+        paths = JsonResourceLoader.load("humanpaths").getAsJsonObject().getAsJsonArray("paths");
+    }
+
+    private final class Walker extends WebSocketAdapter {
+
+        private final String email;
+        private final JsonParser parser = new JsonParser();
+        private WebSocket socket;
+        private WalkSimulator simulator;
+        private int pathIndex;
+        private boolean closing;
+
+        private final double[] fixLats = new double[REMEMBERED_FIXES];
+        private final double[] fixLngs = new double[REMEMBERED_FIXES];
+        private final long[] fixTimes = new long[REMEMBERED_FIXES];
+        private int fixCount;
+
+        Walker(int index, Random random) {
+            email = "walker" + index + "@illinois.edu";
+            pathIndex = index % paths.size();
+            if (humanPaths) {
+                simulator = new JsonWalkSimulator(paths.get(pathIndex).getAsJsonArray());
+            } else {
+                JsonObject start = paths.get(pathIndex).getAsJsonArray().get(0).getAsJsonObject();
+                simulator = new RandomWalk(start.get("lat").getAsDouble(), start.get("lng").getAsDouble(), random);
+            }
+        }
+
+        void connect(WebSocketFactory factory, String url) throws IOException, WebSocketException {
+            socket = factory.createSocket(url);
+            socket.addHeader("Firebase-Token", email);
+            socket.addListener(this);
+            socket.connect();
+        }
+
+        /*
+         * Sends the next fix. An exception thrown out of a scheduleAtFixedRate task would silently cancel
+         * the walker's remaining ticks, so failures are counted as errors and the walk goes on.
+         */
+        void tick() {
+            try {
+                fix();
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+        }
+
+        private void fix() {
+            if (simulator.atEnd()) {
+                pathIndex = (pathIndex + 1) % paths.size();
+                simulator = new JsonWalkSimulator(paths.get(pathIndex).getAsJsonArray());
+            }
+            LatLng position = simulator.step();
+            JsonObject update = new JsonObject();
+            update.addProperty("type", "locationUpdate");
+            update.addProperty("latitude", position.latitude);
+            update.addProperty("longitude", position.longitude);
+            synchronized (this) {
+                int slot = fixCount++ % REMEMBERED_FIXES;
+                fixLats[slot] = position.latitude;
+                fixLngs[slot] = position.longitude;
+                fixTimes[slot] = System.nanoTime();
+            }
+            socket.sendText(update.toString());
+            fixesSent.increment();
+        }
+
+        synchronized long sentAt(double latitude, double longitude) {
+            for (int i = fixCount - 1; i >= 0 && i >= fixCount - REMEMBERED_FIXES; i--) {
+                int slot = i % REMEMBERED_FIXES;
+                if (fixLats[slot] == latitude && fixLngs[slot] == longitude) {
+                    return fixTimes[slot];
+                }
+            }
+            return -1;
+        }
+
+        void close() {
+            closing = true;
+            socket.disconnect();
+        }
+
+        @Override
+        public void onTextMessage(WebSocket websocket, String text) {
+            long received = System.nanoTime();
+            messagesReceived.increment();
+            JsonObject message;
+            try {
+                message = parser.parse(text).getAsJsonObject();
+            } catch (JsonParseException | IllegalStateException e) {
+                errors.increment();
+                return;
+            }
+            String type = message.get("type").getAsString();
+            if (type.equals("full")) {
+                joined.countDown();
+            } else if (type.equals("playerLocation")) {
+                Walker sender = walkers.get(message.get("email").getAsString());
+                long sent = -1;
+                if (sender != null) {
+                    sent = sender.sentAt(message.get("lastLatitude").getAsDouble(),
+                            message.get("lastLongitude").getAsDouble());
+                }
+                if (sent < 0) {
+                    unmatched.increment();
+                } else {
+                    latency.record(received - sent);
+                }
+            }
+        }
+
+        @Override
+        public void onError(WebSocket websocket, WebSocketException cause) {
+            errors.increment();
+        }
+
+        @Override
+        public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                                   WebSocketFrame clientCloseFrame, boolean closedByServer) {
+            if (!closing) {
+                errors.increment();
+            }
+            closed.countDown();
+        }
+
+    }
+
+    private static final class RandomWalk extends GeneratedWalkSimulator {
+
+        RandomWalk(double startLat, double startLng, Random setRandom) {
+            super(startLat, startLng);
+            random = setRandom;
+        }
+
+        @Override
+        void updatePosition(Random random) {
+            lastLat += random.nextGaussian() * RANDOM_STEP_DEGREES;
+            lastLng += random.nextGaussian() * RANDOM_STEP_DEGREES;
+        }
+
+    }
+
+    /*
+     * Log-linear latency histogram in microseconds: 32 linear buckets per power of two, so values are
+     * kept to within about 3% without storing every sample.
+     */
+    private static final class LatencyHistogram {
+
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(Long.SIZE * SUB_BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts.incrementAndGet(index(micros));
+            max.accumulateAndGet(micros, Math::max);
+        }
+
+        private static int index(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+        }
+
+        private static long lowestValue(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << (index / SUB_BUCKETS - 1);
+        }
+
+        long count() {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100 * count());
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return lowestValue(i) / 1e3;
+                }
+            }
+            return 0;
+        }
+
+        double maxMillis() {
+            return max.get() / 1e3;
+        }
+
+    }
+
+    private void run() throws InterruptedException, IOException {
+        Random random = new Random(125);
+        GameServer server = new GameServer(0).start();
+        WebSocketFactory factory = new WebSocketFactory();
+        factory.setConnectionTimeout(CONNECT_TIMEOUT);
+
+        joined = new CountDownLatch(players);
+        closed = new CountDownLatch(players);
+        List<Walker> connected = new ArrayList<>();
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < players; i++) {
+            Walker walker = new Walker(i, random);
+            walkers.put(walker.email, walker);
+            try {
+                walker.connect(factory, server.getUrl("load" + i / perGame));
+                connected.add(walker);
+            } catch (IOException | WebSocketException e) {
+                errors.increment();
+                joined.countDown();
+                closed.countDown();
+            }
+        }
+        if (!joined.await(LATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.out.println("Timed out waiting for full updates; " + joined.getCount() + " missing");
+        }
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+        System.out.printf("%d walkers (%s paths) in %d games connected in %.2f s; %.2f fixes/s each for %d s%n",
+                connected.size(), humanPaths ? "human" : "random", (players + perGame - 1) / perGame,
+                connectSeconds, rate, seconds);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        long period = Math.round(TimeUnit.SECONDS.toNanos(1) / rate);
+        long receivedBefore = messagesReceived.sum();
+        long start = System.nanoTime();
+        for (Walker walker : connected) {
+            scheduler.scheduleAtFixedRate(walker::tick, (long) (random.nextDouble() * period), period,
+                    TimeUnit.NANOSECONDS);
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        scheduler.shutdownNow();
+        Thread.sleep(DRAIN_MILLIS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long received = messagesReceived.sum() - receivedBefore;
+        long serverSent = server.getMessagesSent();
+
+        for (Walker walker : connected) {
+            walker.close();
+        }
+        closed.await(LATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        server.close();
+
+        System.out.printf("fixes sent %,d (%,.0f/s), updates received %,d (%,.0f/s), server sent %,d%n",
+                fixesSent.sum(), fixesSent.sum() / elapsed, received, received / elapsed, serverSent);
+        StringBuilder percentiles = new StringBuilder();
+        for (String percentile : PERCENTILES) {
+            percentiles.append(String.format("p%s %.2f ms, ", percentile,
+                    latency.percentileMillis(Double.parseDouble(percentile))));
+        }
+        System.out.printf("playerLocation latency over %,d deliveries: %smax %.2f ms%n", latency.count(),
+                percentiles, latency.maxMillis());
+        System.out.printf("errors: client %d, server %d; unmatched updates %d%n", errors.sum(),
+                server.getErrorCount(), unmatched.sum());
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            options.put(parts[0], parts[1]);
+        }
+        new WalkLoadGenerator(options).run();
+        // nv-websocket-client 2.9 can leave a non-daemon ReadingThreadCloseTimer behind after a disconnect
+        System.exit(0);
+    }
+
+}
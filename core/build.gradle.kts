@@ -0,0 +1,28 @@
+plugins {
+    `java-library`
+    checkstyle
+}
+
+/*
+ * The game rules and the Android-free classes they build on (LatLngUtils, LineCrossDetector,
+ * TargetVisitChecker, PlayerRegistry, etc.). The app depends on this module.
+ */
+
+// The maps library is an Android archive, so LatLngUtils' LatLng overloads compile against a stand-in.
+// The app supplies the real class at runtime.
+val stubs by sourceSets.creating
+
+dependencies {
+    compileOnly(stubs.output)
+    implementation("com.google.code.gson:gson:2.8.5")
+    testImplementation(stubs.output)
+    testImplementation("junit:junit:4.12")
+}
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+checkstyle {
+    configFile = rootProject.file("config/checkstyle.xml")
+    sourceSets = listOf(project.sourceSets["main"])
+}
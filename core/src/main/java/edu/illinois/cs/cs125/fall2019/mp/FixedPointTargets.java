@@ -0,0 +1,135 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * A set of targets stored in fixed point, with each target's coordinates packed into one long.
+ * <p>
+ * Each coordinate is stored as an int number of 1e-7 degree units (about 1 cm), the precision
+ * LatLngUtils.same already uses as its tolerance. The latitude goes in the high 32 bits of a point and the
+ * longitude in the low 32 bits. That takes half the memory of a pair of doubles, and makes comparisons
+ * exact: two points are the same exactly when their packed values are equal, and
+ * LineCrossDetector.linesCross has an overload that decides crossings with integer arithmetic.
+ */
+public final class FixedPointTargets implements TargetCoordinates {
+
+    /** Fixed-point units per degree. */
+    public static final double UNITS_PER_DEGREE = 10_000_000;
+
+    /** Mask for the low 32 bits of a point. */
+    private static final long LOW_MASK = 0xFFFFFFFFL;
+
+    /** Number of bits the latitude is shifted by in a point. */
+    private static final int LATITUDE_SHIFT = 32;
+
+    /** Packed coordinates of all targets. */
+    private final long[] points;
+
+    /**
+     * Converts a set of targets to fixed point.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same size as latitudes)
+     */
+    public FixedPointTargets(final double[] latitudes, final double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must be the same size");
+        }
+        points = new long[latitudes.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = pack(latitudes[i], longitudes[i]);
+        }
+    }
+
+    /**
+     * Converts a coordinate in degrees to fixed-point units, rounding to the nearest unit.
+     * @param degrees the latitude or longitude
+     * @return the coordinate in 1e-7 degree units
+     */
+    public static int toFixed(final double degrees) {
+        return (int) Math.round(degrees * UNITS_PER_DEGREE);
+    }
+
+    /**
+     * Converts a coordinate in fixed-point units to degrees.
+     * @param fixed the coordinate in 1e-7 degree units
+     * @return the latitude or longitude
+     */
+    public static double toDegrees(final int fixed) {
+        return fixed / UNITS_PER_DEGREE;
+    }
+
+    /**
+     * Packs a point's fixed-point coordinates into a long.
+     * @param latitude the latitude in 1e-7 degree units
+     * @param longitude the longitude in 1e-7 degree units
+     * @return the packed point
+     */
+    public static long pack(final int latitude, final int longitude) {
+        return ((long) latitude << LATITUDE_SHIFT) | (longitude & LOW_MASK);
+    }
+
+    /**
+     * Converts a point to fixed point and packs it into a long.
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return the packed point
+     */
+    public static long pack(final double latitude, final double longitude) {
+        return pack(toFixed(latitude), toFixed(longitude));
+    }
+
+    /**
+     * Gets the latitude of a packed point.
+     * @param point the packed point
+     * @return the latitude in 1e-7 degree units
+     */
+    public static int latitudeOf(final long point) {
+        return (int) (point >> LATITUDE_SHIFT);
+    }
+
+    /**
+     * Gets the longitude of a packed point.
+     * @param point the packed point
+     * @return the longitude in 1e-7 degree units
+     */
+    public static int longitudeOf(final long point) {
+        return (int) point;
+    }
+
+    /**
+     * Gets the number of targets.
+     * @return how many targets there are
+     */
+    @Override
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * Gets a target's packed coordinates.
+     * @param index the target index
+     * @return the packed point
+     */
+    public long getPoint(final int index) {
+        return points[index];
+    }
+
+    /**
+     * Gets a target's latitude.
+     * @param index the target index
+     * @return the target's latitude in degrees
+     */
+    @Override
+    public double getLatitude(final int index) {
+        return toDegrees(latitudeOf(points[index]));
+    }
+
+    /**
+     * Gets a target's longitude.
+     * @param index the target index
+     * @return the target's longitude in degrees
+     */
+    @Override
+    public double getLongitude(final int index) {
+        return toDegrees(longitudeOf(points[index]));
+    }
+
+}
@@ -0,0 +1,686 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rules of a multiplayer game, with no dependencies on Android.
+ * <p>
+ * An engine holds a game's objectives (targets in target mode, grid cells in area mode), which team has
+ * claimed each one, every player's capture path, and the team scores. It decides whether a player's new
+ * location captures an objective, but it doesn't draw anything or talk to the server: Game adapts it to
+ * the map and websocket, and a server or a simulation can drive it directly.
+ * <p>
+ * Objectives are identified by index. A target's index is its position in the full update's targets array.
+ * A cell's index is y * getColumns() + x, where x counts cells east from the west edge of the area and y
+ * counts cells north from the south edge.
+ * <p>
+ * In target mode, a player captures an unclaimed target by coming within the proximity threshold of it,
+ * as long as the line from their last captured target doesn't cross their own path (the snake rule, as
+ * checked by TargetVisitChecker). In area mode, a player captures the unclaimed cell they're standing in
+ * if it's their first capture or the cell shares an edge with their last captured cell. Either way a
+ * team's score is the number of objectives it has claimed.
+ * <p>
+ * Server updates may be applied on the websocket's thread while the UI thread reports the user's location,
+ * so every method that reads or changes claims, paths or the game state is synchronized. The player registry
+ * is shared the same way and does its own locking.
+ */
+public final class GameEngine {
+
+    /** The mode string of target mode games. */
+    public static final String TARGET_MODE = "target";
+
+    /** The mode string of area mode games. */
+    public static final String AREA_MODE = "area";
+
+    /** Returned in place of an objective index when there is no such objective. */
+    public static final int NONE = -1;
+
+    /** Proximity threshold (meters) used when a target mode full update doesn't specify one. */
+    public static final int DEFAULT_PROXIMITY_THRESHOLD = 20;
+
+    /** The game mode (TARGET_MODE or AREA_MODE). */
+    private final String mode;
+
+    /** Target IDs, by target index (null in area mode). */
+    private final String[] targetIds;
+
+    /** Target index by target ID (empty in area mode). */
+    private final Map<String, Integer> targetIndexes = new HashMap<>();
+
+    /** Target latitudes (null in area mode). */
+    private final double[] latitudes;
+
+    /** Target longitudes (null in area mode). */
+    private final double[] longitudes;
+
+    /** Spatial index used to find targets near a player (null in area mode). */
+    private final TargetSpatialIndex targetIndex;
+
+    /** How close (meters) a player has to be to a target to capture it. */
+    private final int proximityThreshold;
+
+    /** Northern boundary of the area. */
+    private final double north;
+
+    /** Eastern boundary of the area. */
+    private final double east;
+
+    /** Southern boundary of the area. */
+    private final double south;
+
+    /** Western boundary of the area. */
+    private final double west;
+
+    /** The requested side length (meters) of each cell (0 in target mode). */
+    private final int cellSize;
+
+    /** Number of cell columns (1 in target mode). */
+    private final int columns;
+
+    /** Number of cell rows (1 in target mode). */
+    private final int rows;
+
+    /** The team that has claimed each objective, TeamID.OBSERVER if unclaimed. */
+    private final int[] claims;
+
+    /** The objectives claimed by anyone, in claim order. */
+    private VisitedTargets claimed;
+
+    /** Each player's capture path, indexed by player ID (null if the player hasn't captured anything). */
+    private VisitedTargets[] paths = new VisitedTargets[0];
+
+    /** The number of objectives each team has claimed, indexed by team ID. */
+    private final int[] scores = new int[TeamID.MAX_TEAM + 1];
+
+    /** All players' teams, states and last positions. */
+    private final PlayerRegistry players = new PlayerRegistry();
+
+    /** The game state (as defined in GameStateID). */
+    private int state = GameStateID.RUNNING;
+
+    /**
+     * Creates a target mode game with no claims.
+     * @param setTargetIds the targets' IDs
+     * @param setLatitudes the targets' latitudes (not copied, so must not be modified)
+     * @param setLongitudes the targets' longitudes (not copied, so must not be modified)
+     * @param setProximityThreshold how close (meters) a player must be to a target to capture it
+     */
+    public GameEngine(final String[] setTargetIds, final double[] setLatitudes, final double[] setLongitudes,
+                      final int setProximityThreshold) {
+        mode = TARGET_MODE;
+        targetIds = setTargetIds;
+        latitudes = setLatitudes;
+        longitudes = setLongitudes;
+        proximityThreshold = setProximityThreshold;
+        targetIndex = new TargetSpatialIndex(latitudes, longitudes, Math.max(proximityThreshold, 1));
+        for (int i = 0; i < targetIds.length; i++) {
+            targetIndexes.put(targetIds[i], i);
+        }
+        north = Double.NaN;
+        east = Double.NaN;
+        south = Double.NaN;
+        west = Double.NaN;
+        cellSize = 0;
+        columns = 1;
+        rows = 1;
+        claims = new int[targetIds.length];
+        clearClaims();
+    }
+
+    /**
+     * Creates an area mode game with no claims.
+     * @param setNorth the northern boundary of the area
+     * @param setEast the eastern boundary of the area
+     * @param setSouth the southern boundary of the area
+     * @param setWest the western boundary of the area
+     * @param setCellSize the requested side length of each cell, in meters
+     */
+    public GameEngine(final double setNorth, final double setEast, final double setSouth, final double setWest,
+                      final int setCellSize) {
+        mode = AREA_MODE;
+        targetIds = null;
+        latitudes = null;
+        longitudes = null;
+        targetIndex = null;
+        proximityThreshold = 0;
+        north = setNorth;
+        east = setEast;
+        south = setSouth;
+        west = setWest;
+        cellSize = setCellSize;
+        columns = Math.max(1, (int) Math.ceil(LatLngUtils.distance(north, west, north, east) / cellSize));
+        rows = Math.max(1, (int) Math.ceil(LatLngUtils.distance(north, west, south, west) / cellSize));
+        claims = new int[columns * rows];
+        clearClaims();
+    }
+
+    /**
+     * Creates an engine from a full update from the server.
+     * @param full the "full" update
+     * @return an engine holding the game's objectives, claims and players
+     */
+    public static GameEngine fromFullUpdate(final JsonObject full) {
+        GameEngine engine;
+        if (AREA_MODE.equals(full.get("mode").getAsString())) {
+            engine = new GameEngine(full.get("areaNorth").getAsDouble(), full.get("areaEast").getAsDouble(),
+                    full.get("areaSouth").getAsDouble(), full.get("areaWest").getAsDouble(),
+                    full.get("cellSize").getAsInt());
+        } else {
+            JsonArray targets = new JsonArray();
+            if (full.has("targets")) {
+                targets = full.getAsJsonArray("targets");
+            }
+            int threshold = DEFAULT_PROXIMITY_THRESHOLD;
+            if (full.has("proximityThreshold")) {
+                threshold = full.get("proximityThreshold").getAsInt();
+            }
+            String[] ids = new String[targets.size()];
+            double[] lats = new double[targets.size()];
+            double[] lngs = new double[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                JsonObject target = targets.get(i).getAsJsonObject();
+                ids[i] = target.get("id").getAsString();
+                lats[i] = target.get("latitude").getAsDouble();
+                lngs[i] = target.get("longitude").getAsDouble();
+            }
+            engine = new GameEngine(ids, lats, lngs, threshold);
+        }
+        engine.load(full);
+        return engine;
+    }
+
+    /**
+     * Marks every objective unclaimed and forgets all capture paths.
+     */
+    private void clearClaims() {
+        Arrays.fill(claims, TeamID.OBSERVER);
+        Arrays.fill(scores, 0);
+        claimed = new VisitedTargets(claims.length);
+        paths = new VisitedTargets[players.size()];
+    }
+
+    /**
+     * Replaces the claims, paths and player states with those in a full update.
+     * <p>
+     * The objectives themselves (targets or area) are assumed not to have changed. Player IDs are kept, so
+     * IDs from getPlayers stay valid. Players who are registered but missing from the update's player list
+     * have left the game, so their state is set to PlayerStateID.REMOVED.
+     * @param full the "full" update from the server
+     */
+    public synchronized void load(final JsonObject full) {
+        clearClaims();
+        if (full.has("state")) {
+            state = full.get("state").getAsInt();
+        }
+        JsonArray objectives = full.getAsJsonArray(isAreaMode() ? "cells" : "targets");
+        if (objectives != null) {
+            for (JsonElement o : objectives) {
+                int objective = objectiveOf(o.getAsJsonObject());
+                int team = o.getAsJsonObject().get("team").getAsInt();
+                if (objective != NONE && team != TeamID.OBSERVER) {
+                    claim(objective, team);
+                }
+            }
+        }
+        if (!full.has("players")) {
+            return;
+        }
+        boolean[] listed = new boolean[players.size()];
+        for (JsonElement p : full.getAsJsonArray("players")) {
+            JsonObject player = p.getAsJsonObject();
+            int id = addPlayer(player.get("email").getAsString(), player.get("team").getAsInt(),
+                    player.get("state").getAsInt());
+            if (id < listed.length) {
+                listed[id] = true;
+            }
+            if (player.has("lastLatitude")) {
+                players.setPosition(id, player.get("lastLatitude").getAsDouble(),
+                        player.get("lastLongitude").getAsDouble());
+            }
+            if (player.has("path")) {
+                for (JsonElement o : player.getAsJsonArray("path")) {
+                    int objective = objectiveOf(o.getAsJsonObject());
+                    if (objective != NONE) {
+                        pathOf(id).visit(objective);
+                    }
+                }
+            }
+        }
+        for (int id = 0; id < listed.length; id++) {
+            if (!listed[id]) {
+                players.setState(id, PlayerStateID.REMOVED);
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the objective a JSON target or cell refers to.
+     * @param objective a target (with "id") or cell (with "x" and "y")
+     * @return the objective index, or NONE if it isn't part of this game
+     */
+    private int objectiveOf(final JsonObject objective) {
+        if (isAreaMode()) {
+            return getCellIndex(objective.get("x").getAsInt(), objective.get("y").getAsInt());
+        }
+        return getTargetIndex(objective.get("id").getAsString());
+    }
+
+    /**
+     * Registers a player, or updates the team and state of one already registered.
+     * @param email the player's email
+     * @param team the player's team ID
+     * @param playerState the player's state (as defined in PlayerStateID)
+     * @return the player's ID
+     */
+    public synchronized int addPlayer(final String email, final int team, final int playerState) {
+        int id = players.intern(email);
+        players.setTeam(id, team);
+        players.setState(id, playerState);
+        return id;
+    }
+
+    /**
+     * Gets a player's capture path, creating it if needed.
+     * @param playerId the player's ID
+     * @return the player's path
+     */
+    private VisitedTargets pathOf(final int playerId) {
+        if (playerId >= paths.length) {
+            paths = Arrays.copyOf(paths, Math.max(players.size(), playerId + 1));
+        }
+        if (paths[playerId] == null) {
+            paths[playerId] = new VisitedTargets(claims.length);
+        }
+        return paths[playerId];
+    }
+
+    /**
+     * Records a team's claim on an objective.
+     * @param objective the objective index
+     * @param team the claiming team
+     */
+    private void claim(final int objective, final int team) {
+        claims[objective] = team;
+        claimed.visit(objective);
+        if (team >= 0 && team < scores.length) {
+            scores[team]++;
+        }
+    }
+
+    /**
+     * Processes a player's new location, capturing an objective if the rules allow it.
+     * <p>
+     * Nothing is captured unless the game is running and the player is on a team.
+     * @param playerId the player's ID
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     * @return the index of the captured objective, or NONE if nothing was captured
+     */
+    public synchronized int locationUpdated(final int playerId, final double latitude, final double longitude) {
+        players.setPosition(playerId, latitude, longitude);
+        int team = players.getTeam(playerId);
+        if (state != GameStateID.RUNNING || team < TeamID.MIN_TEAM || team > TeamID.MAX_TEAM) {
+            return NONE;
+        }
+        int objective = findCapturable(playerId, latitude, longitude);
+        if (objective != NONE) {
+            capture(playerId, objective);
+        }
+        return objective;
+    }
+
+    /**
+     * Finds the objective a player at a location could capture, without capturing it.
+     * @param playerId the player's ID
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     * @return the index of a capturable objective, or NONE if there isn't one
+     */
+    public synchronized int findCapturable(final int playerId, final double latitude, final double longitude) {
+        VisitedTargets path = pathOf(playerId);
+        if (isAreaMode()) {
+            int cell = getCellAt(latitude, longitude);
+            if (cell == NONE || claims[cell] != TeamID.OBSERVER) {
+                return NONE;
+            }
+            int last = path.last();
+            if (last != -1 && Math.abs(last % columns - cell % columns) + Math.abs(last / columns - cell / columns)
+                    != 1) {
+                return NONE;
+            }
+            return cell;
+        }
+        int target = TargetVisitChecker.getTargetWithinRange(targetIndex, claimed, latitude, longitude,
+                proximityThreshold);
+        if (target == -1 || !TargetVisitChecker.checkSnakeRule(latitudes, longitudes, path.getPath(), target)) {
+            return NONE;
+        }
+        return target;
+    }
+
+    /**
+     * Records a capture, e.g. one reported by the server, without checking the rules.
+     * @param playerId the ID of the capturing player
+     * @param objective the objective index
+     * @return whether the capture was new (false if the objective was already claimed)
+     */
+    public synchronized boolean capture(final int playerId, final int objective) {
+        if (objective < 0 || objective >= claims.length || claims[objective] != TeamID.OBSERVER) {
+            return false;
+        }
+        claim(objective, players.getTeam(playerId));
+        pathOf(playerId).visit(objective);
+        return true;
+    }
+
+    /**
+     * Applies an update from the server.
+     * <p>
+     * This handles playerLocation, playerExit, playerTargetVisit, playerCellCapture and gameState updates.
+     * @param message JSON from the server
+     * @param type the update type
+     * @return the index of the newly claimed objective, or NONE if the update didn't claim one
+     */
+    public synchronized int applyUpdate(final JsonObject message, final String type) {
+        switch (type) {
+            case "playerLocation":
+                int team = PlayerRegistry.UNKNOWN;
+                if (message.has("team")) {
+                    team = message.get("team").getAsInt();
+                }
+                playerMoved(message.get("email").getAsString(), team, message.get("lastLatitude").getAsDouble(),
+                        message.get("lastLongitude").getAsDouble());
+                return NONE;
+            case "playerExit":
+                playerExited(message.get("email").getAsString());
+                return NONE;
+            case "playerTargetVisit":
+                return applyCapture(message, getTargetIndex(message.get("targetId").getAsString()));
+            case "playerCellCapture":
+                return applyCapture(message, getCellIndex(message.get("x").getAsInt(), message.get("y").getAsInt()));
+            case "gameState":
+                state = message.get("state").getAsInt();
+                return NONE;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * Records another player's new position, reported by the server.
+     * <p>
+     * The position doesn't capture anything: the server reports the player's captures separately.
+     * @param email the player's email
+     * @param team the player's team ID, or PlayerRegistry.UNKNOWN to keep the team already known for them
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     * @return the player's ID
+     */
+    public synchronized int playerMoved(final String email, final int team, final double latitude,
+                                        final double longitude) {
+        int id = players.intern(email);
+        if (team != PlayerRegistry.UNKNOWN) {
+            players.setTeam(id, team);
+        }
+        players.setState(id, PlayerStateID.PLAYING);
+        players.setPosition(id, latitude, longitude);
+        return id;
+    }
+
+    /**
+     * Records that a player left the game.
+     * <p>
+     * The player stays registered (so their ID and path remain valid) but is no longer playing.
+     * @param email the player's email
+     * @return the player's ID, or PlayerRegistry.UNKNOWN if the player was never registered
+     */
+    public synchronized int playerExited(final String email) {
+        int id = players.idOf(email);
+        if (id != PlayerRegistry.UNKNOWN) {
+            players.setState(id, PlayerStateID.ACCEPTED);
+        }
+        return id;
+    }
+
+    /**
+     * Applies a capture reported by the server.
+     * @param message the capture update, with the capturing player's email and team
+     * @param objective the captured objective's index, or NONE if it isn't part of this game
+     * @return the objective index if the capture was new, otherwise NONE
+     */
+    private int applyCapture(final JsonObject message, final int objective) {
+        int id = players.intern(message.get("email").getAsString());
+        if (message.has("team")) {
+            players.setTeam(id, message.get("team").getAsInt());
+        }
+        if (objective == NONE || !capture(id, objective)) {
+            return NONE;
+        }
+        return objective;
+    }
+
+    /**
+     * Creates the top-level properties of a full update describing this game.
+     * <p>
+     * Only the mode, state and the settings the engine was created with are included (not the targets,
+     * cells or players), so fromFullUpdate can recreate an equivalent engine once those are added.
+     * @return the properties as a JSON object
+     */
+    public synchronized JsonObject createProperties() {
+        JsonObject properties = new JsonObject();
+        properties.addProperty("mode", mode);
+        properties.addProperty("state", state);
+        if (isAreaMode()) {
+            properties.addProperty("areaNorth", north);
+            properties.addProperty("areaEast", east);
+            properties.addProperty("areaSouth", south);
+            properties.addProperty("areaWest", west);
+            properties.addProperty("cellSize", cellSize);
+        } else {
+            properties.addProperty("proximityThreshold", proximityThreshold);
+        }
+        return properties;
+    }
+
+    /**
+     * Creates the message telling the server that the user captured an objective.
+     * @param objective the objective index
+     * @return a targetVisit or cellCapture message
+     */
+    public JsonObject createCaptureMessage(final int objective) {
+        JsonObject message = new JsonObject();
+        if (isAreaMode()) {
+            message.addProperty("type", "cellCapture");
+            message.addProperty("x", objective % columns);
+            message.addProperty("y", objective / columns);
+        } else {
+            message.addProperty("type", "targetVisit");
+            message.addProperty("targetId", targetIds[objective]);
+        }
+        return message;
+    }
+
+    /**
+     * Gets a team's score.
+     * @param teamId the team ID
+     * @return how many objectives the team has claimed
+     */
+    public synchronized int getTeamScore(final int teamId) {
+        if (teamId < 0 || teamId >= scores.length) {
+            return 0;
+        }
+        return scores[teamId];
+    }
+
+    /**
+     * Gets the game mode.
+     * @return TARGET_MODE or AREA_MODE
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Determines whether this is an area mode game.
+     * @return whether the objectives are grid cells
+     */
+    public boolean isAreaMode() {
+        return mode.equals(AREA_MODE);
+    }
+
+    /**
+     * Gets the game state.
+     * @return the state as defined in GameStateID
+     */
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Sets the game state.
+     * @param setState the new state as defined in GameStateID
+     */
+    public synchronized void setState(final int setState) {
+        state = setState;
+    }
+
+    /**
+     * Gets the players.
+     * @return the registry of players' IDs, teams, states and positions
+     */
+    public PlayerRegistry getPlayers() {
+        return players;
+    }
+
+    /**
+     * Gets the number of objectives.
+     * @return how many targets or cells the game has
+     */
+    public int getObjectiveCount() {
+        return claims.length;
+    }
+
+    /**
+     * Gets the team that has claimed an objective.
+     * @param objective the objective index
+     * @return the claiming team, or TeamID.OBSERVER if unclaimed
+     */
+    public synchronized int getClaim(final int objective) {
+        return claims[objective];
+    }
+
+    /**
+     * Gets the objectives a player has captured.
+     * @param playerId the player's ID
+     * @return the objective indexes in capture order
+     */
+    public synchronized int[] getPath(final int playerId) {
+        if (playerId < 0 || playerId >= paths.length || paths[playerId] == null) {
+            return new int[0];
+        }
+        return Arrays.copyOf(paths[playerId].getPath(), paths[playerId].size());
+    }
+
+    /**
+     * Gets the objective a player captured most recently.
+     * @param playerId the player's ID
+     * @return the objective index, or NONE if the player hasn't captured anything
+     */
+    public synchronized int getLastCapture(final int playerId) {
+        if (playerId < 0 || playerId >= paths.length || paths[playerId] == null) {
+            return NONE;
+        }
+        return paths[playerId].last();
+    }
+
+    /**
+     * Gets a target's index.
+     * @param targetId the target ID
+     * @return the target index, or NONE if there's no such target
+     */
+    public int getTargetIndex(final String targetId) {
+        Integer index = targetIndexes.get(targetId);
+        if (index == null) {
+            return NONE;
+        }
+        return index;
+    }
+
+    /**
+     * Gets a target's ID.
+     * @param target the target index
+     * @return the target ID
+     */
+    public String getTargetId(final int target) {
+        return targetIds[target];
+    }
+
+    /**
+     * Gets a target's latitude.
+     * @param target the target index
+     * @return the target's latitude
+     */
+    public double getTargetLatitude(final int target) {
+        return latitudes[target];
+    }
+
+    /**
+     * Gets a target's longitude.
+     * @param target the target index
+     * @return the target's longitude
+     */
+    public double getTargetLongitude(final int target) {
+        return longitudes[target];
+    }
+
+    /**
+     * Gets the number of cell columns in area mode.
+     * @return how many cells span the area from west to east
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of cell rows in area mode.
+     * @return how many cells span the area from south to north
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets a cell's index from its coordinates.
+     * @param x the cell's X coordinate (0 at the west edge)
+     * @param y the cell's Y coordinate (0 at the south edge)
+     * @return the cell index, or NONE if the coordinates are outside the grid or this isn't an area mode game
+     */
+    public int getCellIndex(final int x, final int y) {
+        if (!isAreaMode() || x < 0 || x >= columns || y < 0 || y >= rows) {
+            return NONE;
+        }
+        return y * columns + x;
+    }
+
+    /**
+     * Gets the cell containing a location.
+     * @param latitude the latitude
+     * @param longitude the longitude
+     * @return the cell index, or NONE if the location is outside the area
+     */
+    public int getCellAt(final double latitude, final double longitude) {
+        if (!isAreaMode() || latitude < south || latitude > north || longitude < west || longitude > east) {
+            return NONE;
+        }
+        int x = Math.min(columns - 1, (int) ((longitude - west) / ((east - west) / columns)));
+        int y = Math.min(rows - 1, (int) ((latitude - south) / ((north - south) / rows)));
+        return getCellIndex(x, y);
+    }
+
+}
@@ -0,0 +1,153 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Holds helpful static methods for working with locations.
+ * <p>
+ * STOP! Do not modify this file. Changes will be overwritten during official grading.
+ */
+public final class LatLngUtils {
+
+    /** Tolerance for LatLng-related double comparisons. */
+    private static final double COMPARE_EPSILON = 0.0000001;
+
+    /** Meters per degree of latitude. */
+    static final double METERS_PER_LAT_DEGREE = 110574;
+
+    /** Meters per degree of longitude at the equator. */
+    static final double METERS_PER_LNG_DEGREE = 111320;
+
+    /**
+     * Computes the distance between two points.
+     * <p>
+     * The east-west distance is scaled by the cosine of the first point's latitude.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance between the two points, in meters
+     */
+    public static double distance(final double oneLat, final double oneLng,
+                                  final double anotherLat, final double anotherLng) {
+        final double degToRad = Math.PI / 180;
+        double latDistance = METERS_PER_LAT_DEGREE * (oneLat - anotherLat);
+        double lngDistance = METERS_PER_LNG_DEGREE * (oneLng - anotherLng) * Math.cos(degToRad * oneLat);
+        return Math.sqrt(latDistance * latDistance + lngDistance * lngDistance);
+    }
+
+    /**
+     * Computes the distance between two points represented as LatLngs.
+     * @param one one latitude-longitude coordinate pair
+     * @param another the other latitude-longitude coordinate pair
+     * @return the distance between the two points, in meters
+     */
+    public static double distance(final LatLng one, final LatLng another) {
+        return distance(one.latitude, one.longitude, another.latitude, another.longitude);
+    }
+
+    /**
+     * Computes the distance from one point to each of many points.
+     * <p>
+     * Each result matches distance(lat, lng, lats[i], lngs[i]) up to rounding, but the cosine is only
+     * computed once.
+     * @param lat the latitude of the point to measure from
+     * @param lng the longitude of that point
+     * @param lats latitudes of the other points
+     * @param lngs longitudes of the other points (same size as lats)
+     * @param out array (at least as long as lats) to store the distances in meters in
+     */
+    public static void distances(final double lat, final double lng, final double[] lats, final double[] lngs,
+                                 final double[] out) {
+        squaredDistances(lat, lng, lats, lngs, out);
+        for (int i = 0; i < lats.length; i++) {
+            out[i] = Math.sqrt(out[i]);
+        }
+    }
+
+    /**
+     * Computes the squared distance from one point to each of many points.
+     * <p>
+     * Squared distances sort the same way as distances and can be compared against a squared range,
+     * so this avoids square roots when only the order or a range check matters.
+     * @param lat the latitude of the point to measure from
+     * @param lng the longitude of that point
+     * @param lats latitudes of the other points
+     * @param lngs longitudes of the other points (same size as lats)
+     * @param out array (at least as long as lats) to store the squared distances in square meters in
+     */
+    public static void squaredDistances(final double lat, final double lng, final double[] lats,
+                                        final double[] lngs, final double[] out) {
+        final double degToRad = Math.PI / 180;
+        double lngScale = METERS_PER_LNG_DEGREE * Math.cos(degToRad * lat);
+        for (int i = 0; i < lats.length; i++) {
+            double latDistance = METERS_PER_LAT_DEGREE * (lat - lats[i]);
+            double lngDistance = lngScale * (lng - lngs[i]);
+            out[i] = latDistance * latDistance + lngDistance * lngDistance;
+        }
+    }
+
+    /**
+     * Finds all points within a distance of one point.
+     * <p>
+     * Distances match distance(lat, lng, lats[i], lngs[i]) up to rounding, but are compared squared so no
+     * square roots are needed. Nothing is allocated.
+     * @param lat the latitude of the point to measure from
+     * @param lng the longitude of that point
+     * @param lats latitudes of the other points
+     * @param lngs longitudes of the other points (same size as lats)
+     * @param range the maximum distance, in meters
+     * @param out array (at least as long as lats) to store the indexes of points in range in, in increasing order
+     * @return how many points are in range (the number of entries of out that were filled)
+     */
+    public static int withinRange(final double lat, final double lng, final double[] lats, final double[] lngs,
+                                  final double range, final int[] out) {
+        final double degToRad = Math.PI / 180;
+        double lngScale = METERS_PER_LNG_DEGREE * Math.cos(degToRad * lat);
+        double rangeSquared = range * range;
+        int count = 0;
+        for (int i = 0; i < lats.length; i++) {
+            double latDistance = METERS_PER_LAT_DEGREE * (lat - lats[i]);
+            double lngDistance = lngScale * (lng - lngs[i]);
+            out[count] = i;
+            if (latDistance * latDistance + lngDistance * lngDistance <= rangeSquared) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines whether two location-related coordinates are similar enough to be considered the same.
+     * @param one a coordinate of one point
+     * @param another the corresponding coordinate of the other point
+     * @return whether they're effectively the same coordinate
+     */
+    public static boolean same(final double one, final double another) {
+        return Math.abs(one - another) < COMPARE_EPSILON;
+    }
+
+    /**
+     * Determines whether two points are similar enough to be considered the same spot.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return whether they're the same place
+     */
+    public static boolean same(final double oneLat, final double oneLng,
+                               final double anotherLat, final double anotherLng) {
+        return same(oneLat, anotherLat) && same(oneLng, anotherLng);
+    }
+
+    /**
+     * Determines whether two points are similar enough to be considered the same spot.
+     * @param one one point
+     * @param another the other point
+     * @return whether they're the same place
+     */
+    public static boolean same(final LatLng one, final LatLng another) {
+        return same(one.latitude, another.latitude) && same(one.longitude, another.longitude);
+    }
+
+}
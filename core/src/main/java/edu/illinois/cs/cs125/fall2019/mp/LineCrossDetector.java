@@ -0,0 +1,411 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.math.BigInteger;
+
+/**
+ * Holds methods to determine whether two lines cross.
+ * <p>
+ * linesCross decides crossings for the snake rule. linesCrossByOrientation is a faster alternative without
+ * divisions, but it measures the tolerance differently, so it isn't used by the game rules; the batch methods
+ * and the fixed-point overload follow its rules.
+ * <p>
+ * This file will be revisited in Checkpoint 3.
+ */
+public class LineCrossDetector {
+
+    /** Tolerance for coordinate comparisons (matches LatLngUtils.same). */
+    private static final double COMPARE_EPSILON = 0.0000001;
+
+    /** Shift that converts a bit index to the index of the long holding it. */
+    private static final int BITS_PER_WORD_SHIFT = 6;
+
+    /**
+     * Determines whether two lines cross.
+     * <p>
+     * <i>Crossing</i> is not always the same as <i>intersecting</i>. Lines that share a tip
+     * intersect but do not cross for purposes of this function. However, a line that has an endpoint
+     * on the <i>middle</i> of another line must be considered to cross that line (to prevent
+     * circumventing the snake rule).
+     * <p>
+     * For simplicity, longitude and latitude are treated as X and Y, respectively, on a 2D coordinate plane.
+     * This ignores the roundness of the earth, but it's undetectable at reasonable scales of the game.
+     * <p>
+     * All parameters are assumed to be valid: both lines have positive length.
+     * @param firstStartLat the latitude of the start of one line
+     * @param firstStartLng the longitude of the start of that line
+     * @param firstEndLat the latitude of the end of that line
+     * @param firstEndLng the longitude of the end of that line
+     * @param secondStartLat the latitude of the start of another line
+     * @param secondStartLng the longitude of the start of that other line
+     * @param secondEndLat the latitude of the end of that other line
+     * @param secondEndLng the longitude of the end of that other line
+     * @return whether the two lines cross
+     */
+    public static boolean linesCross(final double firstStartLat, final double firstStartLng,
+                                     final double firstEndLat, final double firstEndLng,
+                                     final double secondStartLat, final double secondStartLng,
+                                     final double secondEndLat, final double secondEndLng) {
+        if (LatLngUtils.same(firstStartLat, firstStartLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstStartLat, firstStartLng, secondEndLat, secondEndLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondEndLat, secondEndLng)) {
+            // The lines are just sharing endpoints, not crossing each other
+            return false;
+        }
+
+        // A line is vertical (purely north-south) if its longitude is constant
+        boolean firstVertical = LatLngUtils.same(firstStartLng, firstEndLng);
+        boolean secondVertical = LatLngUtils.same(secondStartLng, secondEndLng);
+        if (firstVertical && secondVertical) {
+            // They're parallel vertical lines
+            return false;
+        } else if (firstVertical) {
+            return lineCrossesVertical(firstStartLat, firstEndLat, firstStartLng,
+                    secondStartLat, secondStartLng, secondEndLat, secondEndLng);
+        } else if (secondVertical) {
+            return lineCrossesVertical(secondStartLat, secondEndLat, secondStartLng,
+                    firstStartLat, firstStartLng, firstEndLat, firstEndLng);
+        }
+
+        // At this point, neither line is vertical
+        double firstSlope = lineSlope(firstStartLat, firstStartLng, firstEndLat, firstEndLng);
+        double secondSlope = lineSlope(secondStartLat, secondStartLng, secondEndLat, secondEndLng);
+        if (LatLngUtils.same(firstSlope, secondSlope)) {
+            // They're parallel
+            return false;
+        }
+
+        // At this point, the lines are non-parallel (would intersect if infinitely extended)
+        double firstIntercept = firstStartLat - firstSlope * firstStartLng;
+        double secondIntercept = secondStartLat - secondSlope * secondStartLng;
+        double intersectionX = -(firstIntercept - secondIntercept) / (firstSlope - secondSlope);
+        if (LatLngUtils.same(intersectionX, firstStartLng) || LatLngUtils.same(intersectionX, firstEndLng)
+                || LatLngUtils.same(intersectionX, secondStartLng) || LatLngUtils.same(intersectionX, secondEndLng)) {
+            // Endpoint of one line is in the middle of the other line
+            return true;
+        }
+        boolean onFirst = intersectionX > Math.min(firstStartLng, firstEndLng)
+                && intersectionX < Math.max(firstStartLng, firstEndLng);
+        boolean onSecond = intersectionX > Math.min(secondStartLng, secondEndLng)
+                && intersectionX < Math.max(secondStartLng, secondEndLng);
+        return onFirst && onSecond;
+    }
+
+    /**
+     * Determines whether two lines cross using the orientation (cross product sign) of each line's endpoints
+     * relative to the other line.
+     * <p>
+     * This needs no divisions and no special case for vertical lines, and lines whose bounding boxes don't
+     * overlap are rejected first, so it's faster than linesCross. But the tolerance is measured perpendicular
+     * to each line instead of along longitude, so near the tolerance the answers differ: linesCross can report
+     * a crossing for lines that are nowhere near each other when their infinite extensions meet within the
+     * tolerance of an endpoint's longitude, and it can miss an endpoint on the middle of a nearly parallel line
+     * (see LineCrossDetectorTest). Switching the snake rule to these rules is a separate change.
+     * @param firstStartLat the latitude of the start of one line
+     * @param firstStartLng the longitude of the start of that line
+     * @param firstEndLat the latitude of the end of that line
+     * @param firstEndLng the longitude of the end of that line
+     * @param secondStartLat the latitude of the start of another line
+     * @param secondStartLng the longitude of the start of that other line
+     * @param secondEndLat the latitude of the end of that other line
+     * @param secondEndLng the longitude of the end of that other line
+     * @return whether the two lines cross
+     */
+    static boolean linesCrossByOrientation(final double firstStartLat, final double firstStartLng,
+                                           final double firstEndLat, final double firstEndLng,
+                                           final double secondStartLat, final double secondStartLng,
+                                           final double secondEndLat, final double secondEndLng) {
+        // Bounding boxes that don't overlap (even allowing for the tolerance) can't cross
+        if (Math.max(firstStartLng, firstEndLng) + COMPARE_EPSILON < Math.min(secondStartLng, secondEndLng)
+                || Math.max(secondStartLng, secondEndLng) + COMPARE_EPSILON < Math.min(firstStartLng, firstEndLng)
+                || Math.max(firstStartLat, firstEndLat) + COMPARE_EPSILON < Math.min(secondStartLat, secondEndLat)
+                || Math.max(secondStartLat, secondEndLat) + COMPARE_EPSILON < Math.min(firstStartLat, firstEndLat)) {
+            return false;
+        }
+        if (LatLngUtils.same(firstStartLat, firstStartLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstStartLat, firstStartLng, secondEndLat, secondEndLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondEndLat, secondEndLng)) {
+            // The lines are just sharing endpoints, not crossing each other
+            return false;
+        }
+
+        // Direction vectors, with longitude as X and latitude as Y
+        double firstX = firstEndLng - firstStartLng;
+        double firstY = firstEndLat - firstStartLat;
+        double secondX = secondEndLng - secondStartLng;
+        double secondY = secondEndLat - secondStartLat;
+        double firstLengthSquared = firstX * firstX + firstY * firstY;
+        double secondLengthSquared = secondX * secondX + secondY * secondY;
+        final double epsilonSquared = COMPARE_EPSILON * COMPARE_EPSILON;
+
+        // The cross product of the directions is |first| |second| sin(angle) - near zero means parallel
+        double directionCross = firstX * secondY - firstY * secondX;
+        if (directionCross * directionCross <= epsilonSquared * firstLengthSquared * secondLengthSquared) {
+            return false;
+        }
+
+        // Orientation of each endpoint relative to the other line: |line| times the signed distance from it
+        double secondStartSide = firstX * (secondStartLat - firstStartLat) - firstY * (secondStartLng - firstStartLng);
+        double secondEndSide = firstX * (secondEndLat - firstStartLat) - firstY * (secondEndLng - firstStartLng);
+        double firstStartSide = secondX * (firstStartLat - secondStartLat) - secondY * (firstStartLng - secondStartLng);
+        double firstEndSide = secondX * (firstEndLat - secondStartLat) - secondY * (firstEndLng - secondStartLng);
+
+        // Each line must have its endpoints on opposite sides of the other, or one endpoint on the other line
+        // (within the tolerance) - an endpoint on the middle of the other line counts as crossing
+        double firstTolerance = epsilonSquared * firstLengthSquared;
+        double secondTolerance = epsilonSquared * secondLengthSquared;
+        boolean straddlesFirst = secondStartSide * secondEndSide <= 0
+                || secondStartSide * secondStartSide < firstTolerance
+                || secondEndSide * secondEndSide < firstTolerance;
+        boolean straddlesSecond = firstStartSide * firstEndSide <= 0
+                || firstStartSide * firstStartSide < secondTolerance
+                || firstEndSide * firstEndSide < secondTolerance;
+        return straddlesFirst && straddlesSecond;
+    }
+
+    /**
+     * Finds the first segment in a range of a batch that a line crosses.
+     * <p>
+     * Each segment is tested with the same rules as linesCrossByOrientation.
+     * @param segments the segments to test against
+     * @param from the first segment index to test (inclusive)
+     * @param to the last segment index to test (exclusive)
+     * @param startLat the latitude of the start of the line
+     * @param startLng the longitude of the start of the line
+     * @param endLat the latitude of the end of the line
+     * @param endLng the longitude of the end of the line
+     * @return the index of the first crossed segment, or -1 if the line crosses none of them
+     */
+    public static int firstCrossing(final LineSegments segments, final int from, final int to,
+                                    final double startLat, final double startLng,
+                                    final double endLat, final double endLng) {
+        double[] startLats = segments.getStartLatitudes();
+        double[] startLngs = segments.getStartLongitudes();
+        double[] endLats = segments.getEndLatitudes();
+        double[] endLngs = segments.getEndLongitudes();
+        for (int i = from; i < to; i++) {
+            if (crossesUnbranched(startLats[i], startLngs[i], endLats[i], endLngs[i],
+                    startLat, startLng, endLat, endLng)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks every segment in a range of a batch that a line crosses.
+     * <p>
+     * Bit i of the result (bit i % 64 of word i / 64) is set if segment i is crossed and cleared otherwise;
+     * bits outside the range are left unchanged. Each segment is tested with the same rules as
+     * linesCrossByOrientation.
+     * @param segments the segments to test against
+     * @param from the first segment index to test (inclusive)
+     * @param to the last segment index to test (exclusive)
+     * @param startLat the latitude of the start of the line
+     * @param startLng the longitude of the start of the line
+     * @param endLat the latitude of the end of the line
+     * @param endLng the longitude of the end of the line
+     * @param crossed bitmap to fill, with at least (to + 63) / 64 words
+     * @return how many segments in the range the line crosses
+     */
+    public static int findCrossings(final LineSegments segments, final int from, final int to,
+                                    final double startLat, final double startLng,
+                                    final double endLat, final double endLng, final long[] crossed) {
+        double[] startLats = segments.getStartLatitudes();
+        double[] startLngs = segments.getStartLongitudes();
+        double[] endLats = segments.getEndLatitudes();
+        double[] endLngs = segments.getEndLongitudes();
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            long bit = 1L << i;
+            if (crossesUnbranched(startLats[i], startLngs[i], endLats[i], endLngs[i],
+                    startLat, startLng, endLat, endLng)) {
+                crossed[i >>> BITS_PER_WORD_SHIFT] |= bit;
+                count++;
+            } else {
+                crossed[i >>> BITS_PER_WORD_SHIFT] &= ~bit;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines whether two lines cross, with the same result as linesCrossByOrientation but without early
+     * returns.
+     * <p>
+     * Every condition is evaluated with non-short-circuiting operators so the batch loops have a single,
+     * straight-line body that the JIT can unroll.
+     * @param firstStartLat the latitude of the start of one line
+     * @param firstStartLng the longitude of the start of that line
+     * @param firstEndLat the latitude of the end of that line
+     * @param firstEndLng the longitude of the end of that line
+     * @param secondStartLat the latitude of the start of another line
+     * @param secondStartLng the longitude of the start of that other line
+     * @param secondEndLat the latitude of the end of that other line
+     * @param secondEndLng the longitude of the end of that other line
+     * @return whether the two lines cross
+     */
+    private static boolean crossesUnbranched(final double firstStartLat, final double firstStartLng,
+                                             final double firstEndLat, final double firstEndLng,
+                                             final double secondStartLat, final double secondStartLng,
+                                             final double secondEndLat, final double secondEndLng) {
+        boolean boxesOverlap = Math.max(firstStartLng, firstEndLng) + COMPARE_EPSILON
+                >= Math.min(secondStartLng, secondEndLng)
+                & Math.max(secondStartLng, secondEndLng) + COMPARE_EPSILON >= Math.min(firstStartLng, firstEndLng)
+                & Math.max(firstStartLat, firstEndLat) + COMPARE_EPSILON >= Math.min(secondStartLat, secondEndLat)
+                & Math.max(secondStartLat, secondEndLat) + COMPARE_EPSILON >= Math.min(firstStartLat, firstEndLat);
+        boolean sharesEndpoint = sameUnbranched(firstStartLat, firstStartLng, secondStartLat, secondStartLng)
+                | sameUnbranched(firstStartLat, firstStartLng, secondEndLat, secondEndLng)
+                | sameUnbranched(firstEndLat, firstEndLng, secondStartLat, secondStartLng)
+                | sameUnbranched(firstEndLat, firstEndLng, secondEndLat, secondEndLng);
+
+        double firstX = firstEndLng - firstStartLng;
+        double firstY = firstEndLat - firstStartLat;
+        double secondX = secondEndLng - secondStartLng;
+        double secondY = secondEndLat - secondStartLat;
+        double firstTolerance = COMPARE_EPSILON * COMPARE_EPSILON * (firstX * firstX + firstY * firstY);
+        double secondTolerance = COMPARE_EPSILON * COMPARE_EPSILON * (secondX * secondX + secondY * secondY);
+        double directionCross = firstX * secondY - firstY * secondX;
+        boolean parallel = directionCross * directionCross <= firstTolerance * (secondX * secondX + secondY * secondY);
+
+        double secondStartSide = firstX * (secondStartLat - firstStartLat) - firstY * (secondStartLng - firstStartLng);
+        double secondEndSide = firstX * (secondEndLat - firstStartLat) - firstY * (secondEndLng - firstStartLng);
+        double firstStartSide = secondX * (firstStartLat - secondStartLat) - secondY * (firstStartLng - secondStartLng);
+        double firstEndSide = secondX * (firstEndLat - secondStartLat) - secondY * (firstEndLng - secondStartLng);
+        boolean straddlesFirst = secondStartSide * secondEndSide <= 0
+                | secondStartSide * secondStartSide < firstTolerance
+                | secondEndSide * secondEndSide < firstTolerance;
+        boolean straddlesSecond = firstStartSide * firstEndSide <= 0
+                | firstStartSide * firstStartSide < secondTolerance
+                | firstEndSide * firstEndSide < secondTolerance;
+        return boxesOverlap & !sharesEndpoint & !parallel & straddlesFirst & straddlesSecond;
+    }
+
+    /**
+     * Determines whether two points are the same (like LatLngUtils.same) without short-circuiting.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return whether they're the same place
+     */
+    private static boolean sameUnbranched(final double oneLat, final double oneLng,
+                                          final double anotherLat, final double anotherLng) {
+        return Math.abs(oneLat - anotherLat) < COMPARE_EPSILON & Math.abs(oneLng - anotherLng) < COMPARE_EPSILON;
+    }
+
+    /**
+     * Determines whether two lines between fixed-point points cross.
+     * <p>
+     * This follows the same rules as linesCrossByOrientation, but with exact integer arithmetic instead of a
+     * tolerance: lines that share an endpoint don't cross, parallel lines don't cross, and an endpoint exactly
+     * on the middle of the other line counts as crossing.
+     * @param firstStart the start of one line, packed as by FixedPointTargets.pack
+     * @param firstEnd the end of that line
+     * @param secondStart the start of another line
+     * @param secondEnd the end of that other line
+     * @return whether the two lines cross
+     */
+    public static boolean linesCross(final long firstStart, final long firstEnd,
+                                     final long secondStart, final long secondEnd) {
+        if (firstStart == secondStart || firstStart == secondEnd || firstEnd == secondStart || firstEnd == secondEnd) {
+            // The lines are just sharing endpoints, not crossing each other
+            return false;
+        }
+        long firstX = (long) FixedPointTargets.longitudeOf(firstEnd) - FixedPointTargets.longitudeOf(firstStart);
+        long firstY = (long) FixedPointTargets.latitudeOf(firstEnd) - FixedPointTargets.latitudeOf(firstStart);
+        long secondX = (long) FixedPointTargets.longitudeOf(secondEnd) - FixedPointTargets.longitudeOf(secondStart);
+        long secondY = (long) FixedPointTargets.latitudeOf(secondEnd) - FixedPointTargets.latitudeOf(secondStart);
+        if (crossSign(firstX, firstY, secondX, secondY) == 0) {
+            // They're parallel
+            return false;
+        }
+        int secondStartSide = orientation(firstStart, firstEnd, secondStart);
+        int secondEndSide = orientation(firstStart, firstEnd, secondEnd);
+        int firstStartSide = orientation(secondStart, secondEnd, firstStart);
+        int firstEndSide = orientation(secondStart, secondEnd, firstEnd);
+        return secondStartSide * secondEndSide <= 0 && firstStartSide * firstEndSide <= 0;
+    }
+
+    /**
+     * Determines which side of a line a fixed-point point is on, exactly.
+     * @param lineStart the start of the line, packed as by FixedPointTargets.pack
+     * @param lineEnd the end of the line
+     * @param point the point to test
+     * @return 1 if the point is to the left of the line (looking from start to end), -1 if it's to the right,
+     * or 0 if it's exactly on the (infinitely extended) line
+     */
+    public static int orientation(final long lineStart, final long lineEnd, final long point) {
+        int startLat = FixedPointTargets.latitudeOf(lineStart);
+        int startLng = FixedPointTargets.longitudeOf(lineStart);
+        return crossSign((long) FixedPointTargets.longitudeOf(lineEnd) - startLng,
+                (long) FixedPointTargets.latitudeOf(lineEnd) - startLat,
+                (long) FixedPointTargets.longitudeOf(point) - startLng,
+                (long) FixedPointTargets.latitudeOf(point) - startLat);
+    }
+
+    /**
+     * Computes the sign of the cross product of two vectors exactly.
+     * <p>
+     * Each component is a difference of two ints. Latitude differences always fit in an int, so if the
+     * longitude differences do too the cross product fits in a long; otherwise it's computed with BigInteger.
+     * @param firstX the X (longitude) component of one vector
+     * @param firstY the Y (latitude) component of that vector
+     * @param secondX the X component of the other vector
+     * @param secondY the Y component of the other vector
+     * @return the sign of firstX * secondY - firstY * secondX
+     */
+    private static int crossSign(final long firstX, final long firstY, final long secondX, final long secondY) {
+        if (firstX == (int) firstX && firstY == (int) firstY && secondX == (int) secondX && secondY == (int) secondY) {
+            return Long.signum(firstX * secondY - firstY * secondX);
+        }
+        return BigInteger.valueOf(firstX).multiply(BigInteger.valueOf(secondY))
+                .subtract(BigInteger.valueOf(firstY).multiply(BigInteger.valueOf(secondX))).signum();
+    }
+
+    /**
+     * Determines if a non-vertical line crosses a vertical line.
+     * @param verticalStartLat the latitude of one endpoint of the vertical line
+     * @param verticalEndLat the latitude of the other endpoint of the vertical line
+     * @param verticalLng the longitude of the vertical line
+     * @param lineStartLat the latitude of one endpoint of the non-vertical line
+     * @param lineStartLng the longitude of that endpoint
+     * @param lineEndLat the latitude of the other endpoint of the line
+     * @param lineEndLng the longitude of that other endpoin
+     * @return whether the lines cross
+     */
+    private static boolean lineCrossesVertical(final double verticalStartLat, final double verticalEndLat,
+                                               final double verticalLng,
+                                               final double lineStartLat, final double lineStartLng,
+                                               final double lineEndLat, final double lineEndLng) {
+        if (Math.max(lineStartLng, lineEndLng) < verticalLng
+                || Math.min(lineStartLng, lineEndLng) > verticalLng) {
+            // The non-vertical line is completely off to the side of the vertical line
+            return false;
+        }
+        double slope = lineSlope(lineStartLat, lineStartLng, lineEndLat, lineEndLng);
+        double yAtVert = slope * (verticalLng - lineStartLng) + lineStartLat;
+        if (LatLngUtils.same(yAtVert, verticalStartLat) || LatLngUtils.same(yAtVert, verticalEndLat)) {
+            // Ends on the middle of the non-vertical line
+            return true;
+        }
+        // See if the intersection of the lines is between the endpoints of the vertical line segment
+        return yAtVert > Math.min(verticalStartLat, verticalEndLat)
+                && yAtVert < Math.max(verticalStartLat, verticalEndLat);
+    }
+
+    /**
+     * Determines the slope of a non-vertical line.
+     * @param startLat the latitude of one endpoint of the line
+     * @param startLng the longitude of that endpoint
+     * @param endLat the latitude of the other endpoint of the line
+     * @param endLng the longitude of that other endpoint
+     * @return the slope, treating longitude as X and latitude as Y
+     */
+    private static double lineSlope(final double startLat, final double startLng,
+                                    final double endLat, final double endLng) {
+        return (endLat - startLat) / (endLng - startLng);
+    }
+
+}
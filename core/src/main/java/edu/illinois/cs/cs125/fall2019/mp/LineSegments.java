@@ -0,0 +1,113 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * A batch of line segments stored as four parallel coordinate arrays.
+ * <p>
+ * Segment i runs from (startLatitudes[i], startLongitudes[i]) to (endLatitudes[i], endLongitudes[i]).
+ * Keeping each coordinate in its own array lets LineCrossDetector test one line against many segments
+ * in a simple loop over primitive arrays. The arrays are not copied, so they must not be modified while
+ * the batch is in use.
+ */
+public final class LineSegments {
+
+    /** Latitudes of the segments' start points. */
+    private final double[] startLatitudes;
+
+    /** Longitudes of the segments' start points. */
+    private final double[] startLongitudes;
+
+    /** Latitudes of the segments' end points. */
+    private final double[] endLatitudes;
+
+    /** Longitudes of the segments' end points. */
+    private final double[] endLongitudes;
+
+    /**
+     * Creates a batch of segments from existing coordinate arrays.
+     * @param setStartLatitudes latitudes of the start points
+     * @param setStartLongitudes longitudes of the start points
+     * @param setEndLatitudes latitudes of the end points
+     * @param setEndLongitudes longitudes of the end points
+     */
+    public LineSegments(final double[] setStartLatitudes, final double[] setStartLongitudes,
+                        final double[] setEndLatitudes, final double[] setEndLongitudes) {
+        if (setStartLongitudes.length != setStartLatitudes.length
+                || setEndLatitudes.length != setStartLatitudes.length
+                || setEndLongitudes.length != setStartLatitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must be the same size");
+        }
+        startLatitudes = setStartLatitudes;
+        startLongitudes = setStartLongitudes;
+        endLatitudes = setEndLatitudes;
+        endLongitudes = setEndLongitudes;
+    }
+
+    /**
+     * Creates a batch holding the lines between sequentially captured targets.
+     * <p>
+     * Segment i connects the target captured i-th to the one captured next.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets
+     * @param path indexes of targets visited so far (-1 for empty slots)
+     * @return the path's line segments, in capture order
+     */
+    public static LineSegments fromPath(final double[] latitudes, final double[] longitudes, final int[] path) {
+        int length = 0;
+        while (length < path.length && path[length] != -1) {
+            length++;
+        }
+        int count = Math.max(0, length - 1);
+        double[] startLats = new double[count];
+        double[] startLngs = new double[count];
+        double[] endLats = new double[count];
+        double[] endLngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            startLats[i] = latitudes[path[i]];
+            startLngs[i] = longitudes[path[i]];
+            endLats[i] = latitudes[path[i + 1]];
+            endLngs[i] = longitudes[path[i + 1]];
+        }
+        return new LineSegments(startLats, startLngs, endLats, endLngs);
+    }
+
+    /**
+     * Gets the number of segments.
+     * @return how many segments there are
+     */
+    public int size() {
+        return startLatitudes.length;
+    }
+
+    /**
+     * Gets the latitudes of the segments' start points.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getStartLatitudes() {
+        return startLatitudes;
+    }
+
+    /**
+     * Gets the longitudes of the segments' start points.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getStartLongitudes() {
+        return startLongitudes;
+    }
+
+    /**
+     * Gets the latitudes of the segments' end points.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getEndLatitudes() {
+        return endLatitudes;
+    }
+
+    /**
+     * Gets the longitudes of the segments' end points.
+     * @return the backing array (must not be modified)
+     */
+    public double[] getEndLongitudes() {
+        return endLongitudes;
+    }
+
+}
@@ -0,0 +1,188 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each player in a game a dense int ID and stores their state in parallel primitive arrays.
+ * <p>
+ * Messages from the server identify players by email. Looking an email up here once gives an ID that can
+ * then be used to index the arrays directly, instead of hashing the email (and boxing the team) again for
+ * every piece of per-player state. IDs are assigned in order starting at 0 and are never reused, so they
+ * stay valid for the life of the game.
+ * <p>
+ * A game's registry is shared between the thread updates arrive on, which registers players as they first
+ * appear, and the UI thread, which reads and sets their state while drawing. Registering can replace the
+ * arrays, so every method is synchronized. The lock is almost never contended, so this costs little next to
+ * the hashing it replaces.
+ */
+public final class PlayerRegistry {
+
+    /** Value returned for unknown players and stored for unknown teams and states. */
+    public static final int UNKNOWN = -1;
+
+    /** Initial capacity of the per-player arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The ID of each interned email. */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /** The email of each player, indexed by ID. */
+    private String[] emails = new String[INITIAL_CAPACITY];
+
+    /** The team ID of each player, or UNKNOWN. */
+    private int[] teams = new int[INITIAL_CAPACITY];
+
+    /** The state (a PlayerStateID) of each player, or UNKNOWN. */
+    private int[] states = new int[INITIAL_CAPACITY];
+
+    /** The last known latitude of each player, or NaN if no position is known. */
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+
+    /** The last known longitude of each player, or NaN if no position is known. */
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+
+    /** The number of players registered. */
+    private int size;
+
+    /**
+     * Gets a player's ID, registering the player if they haven't been seen before.
+     * @param email the player's email
+     * @return the player's ID
+     */
+    public synchronized int intern(final String email) {
+        Integer existing = ids.get(email);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == emails.length) {
+            grow();
+        }
+        int id = size++;
+        emails[id] = email;
+        teams[id] = UNKNOWN;
+        states[id] = UNKNOWN;
+        latitudes[id] = Double.NaN;
+        longitudes[id] = Double.NaN;
+        ids.put(email, id);
+        return id;
+    }
+
+    /**
+     * Gets a player's ID without registering them.
+     * @param email the player's email
+     * @return the player's ID, or UNKNOWN if the player isn't registered
+     */
+    public synchronized int idOf(final String email) {
+        Integer existing = ids.get(email);
+        if (existing == null) {
+            return UNKNOWN;
+        }
+        return existing;
+    }
+
+    /**
+     * Doubles the capacity of the per-player arrays.
+     */
+    private void grow() {
+        int capacity = emails.length * 2;
+        emails = Arrays.copyOf(emails, capacity);
+        teams = Arrays.copyOf(teams, capacity);
+        states = Arrays.copyOf(states, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+    }
+
+    /**
+     * Gets the number of registered players.
+     * @return the number of IDs assigned so far (IDs range from 0 to this minus 1)
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets a player's email.
+     * @param id the player's ID
+     * @return the email the ID was assigned to
+     */
+    public synchronized String getEmail(final int id) {
+        return emails[id];
+    }
+
+    /**
+     * Gets a player's team.
+     * @param id the player's ID
+     * @return the team ID, or UNKNOWN if it hasn't been set
+     */
+    public synchronized int getTeam(final int id) {
+        return teams[id];
+    }
+
+    /**
+     * Sets a player's team.
+     * @param id the player's ID
+     * @param team the team ID
+     */
+    public synchronized void setTeam(final int id, final int team) {
+        teams[id] = team;
+    }
+
+    /**
+     * Gets a player's state.
+     * @param id the player's ID
+     * @return the player state as defined in PlayerStateID, or UNKNOWN if it hasn't been set
+     */
+    public synchronized int getState(final int id) {
+        return states[id];
+    }
+
+    /**
+     * Sets a player's state.
+     * @param id the player's ID
+     * @param state the player state as defined in PlayerStateID
+     */
+    public synchronized void setState(final int id, final int state) {
+        states[id] = state;
+    }
+
+    /**
+     * Determines whether a player's position is known.
+     * @param id the player's ID
+     * @return whether setPosition has been called for the player
+     */
+    public synchronized boolean hasPosition(final int id) {
+        return !Double.isNaN(latitudes[id]);
+    }
+
+    /**
+     * Gets a player's last known latitude.
+     * @param id the player's ID
+     * @return the latitude, or NaN if not known
+     */
+    public synchronized double getLatitude(final int id) {
+        return latitudes[id];
+    }
+
+    /**
+     * Gets a player's last known longitude.
+     * @param id the player's ID
+     * @return the longitude, or NaN if not known
+     */
+    public synchronized double getLongitude(final int id) {
+        return longitudes[id];
+    }
+
+    /**
+     * Records a player's position.
+     * @param id the player's ID
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     */
+    public synchronized void setPosition(final int id, final double latitude, final double longitude) {
+        latitudes[id] = latitude;
+        longitudes[id] = longitude;
+    }
+
+}
@@ -0,0 +1,245 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Arrays;
+
+/**
+ * A player's capture path with an index of its line segments, used to check the snake rule quickly.
+ * <p>
+ * Checking the snake rule with TargetVisitChecker.checkSnakeRule tests the new line against every line
+ * on the path. This class instead files each line under every cell of a uniform grid that its bounding
+ * box touches. A snake rule check then only tests the lines filed under the cells the new line's bounding
+ * box touches, which for typical paths is a small fraction of the whole path.
+ * <p>
+ * Lines whose bounding boxes don't overlap are never tested. The result matches checkSnakeRule except for
+ * the rare crossings linesCross reports between lines that are nowhere near each other (see
+ * LineCrossDetector.linesCrossByOrientation), which this class doesn't find.
+ * <p>
+ * Targets can only be added to the path, never removed. Like LineCrossDetector, longitude is treated as X
+ * and latitude as Y. The coordinate arrays are not copied, so they must not be modified while in use.
+ */
+public final class SnakePath {
+
+    /** The most grid cells along each axis. */
+    private static final int MAX_GRID_SIZE = 256;
+
+    /** Initial capacity of each cell's line list. */
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    /** Extra margin (degrees) around bounding boxes so lines that barely touch are still compared. */
+    private static final double BOX_MARGIN = 0.0000001;
+
+    /** Latitudes of all targets. */
+    private final double[] latitudes;
+
+    /** Longitudes of all targets. */
+    private final double[] longitudes;
+
+    /** The captured targets. */
+    private final VisitedTargets visited;
+
+    /** The smallest latitude of any target (bottom edge of the grid). */
+    private final double minLat;
+
+    /** The smallest longitude of any target (left edge of the grid). */
+    private final double minLng;
+
+    /** Height of a cell, in degrees of latitude. */
+    private final double cellLat;
+
+    /** Width of a cell, in degrees of longitude. */
+    private final double cellLng;
+
+    /** Number of cells along each axis. */
+    private final int gridSize;
+
+    /** For each cell, the indexes of lines whose bounding boxes touch it (line i runs from capture i to i + 1). */
+    private final int[][] cellLines;
+
+    /** Number of used entries in each cellLines array. */
+    private final int[] cellCounts;
+
+    /** For each line, the number of the last query that tested it, so lines in several cells are tested once. */
+    private final int[] lineStamps;
+
+    /** Number of the current query. */
+    private int queryStamp;
+
+    /**
+     * Creates an empty path over a set of targets.
+     * @param setLatitudes latitudes of all targets
+     * @param setLongitudes longitudes of all targets (same size as latitudes)
+     */
+    public SnakePath(final double[] setLatitudes, final double[] setLongitudes) {
+        if (setLatitudes.length != setLongitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must be the same size");
+        }
+        latitudes = setLatitudes;
+        longitudes = setLongitudes;
+        visited = new VisitedTargets(latitudes.length);
+
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        double lowLng = Double.POSITIVE_INFINITY;
+        double highLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < latitudes.length; i++) {
+            lowLat = Math.min(lowLat, latitudes[i]);
+            highLat = Math.max(highLat, latitudes[i]);
+            lowLng = Math.min(lowLng, longitudes[i]);
+            highLng = Math.max(highLng, longitudes[i]);
+        }
+        if (latitudes.length == 0) {
+            lowLat = 0;
+            highLat = 0;
+            lowLng = 0;
+            highLng = 0;
+        }
+        minLat = lowLat;
+        minLng = lowLng;
+        gridSize = Math.max(1, Math.min(MAX_GRID_SIZE, (int) Math.ceil(Math.sqrt(latitudes.length))));
+        cellLat = Math.max(highLat - lowLat, BOX_MARGIN) / gridSize;
+        cellLng = Math.max(highLng - lowLng, BOX_MARGIN) / gridSize;
+        cellLines = new int[gridSize * gridSize][];
+        cellCounts = new int[gridSize * gridSize];
+        lineStamps = new int[Math.max(0, latitudes.length - 1)];
+    }
+
+    /**
+     * Creates a path over a set of targets, starting with the captures in an existing path array.
+     * @param setLatitudes latitudes of all targets
+     * @param setLongitudes longitudes of all targets (same size as latitudes)
+     * @param path indexes of targets visited so far (same size as latitudes, -1 for empty slots)
+     */
+    public SnakePath(final double[] setLatitudes, final double[] setLongitudes, final int[] path) {
+        this(setLatitudes, setLongitudes);
+        for (int target : path) {
+            if (target == -1) {
+                break;
+            }
+            append(target);
+        }
+    }
+
+    /**
+     * Gets the captured targets.
+     * <p>
+     * The returned object must not be modified directly; use append to capture targets.
+     * @return the visited targets in capture order
+     */
+    public VisitedTargets getVisited() {
+        return visited;
+    }
+
+    /**
+     * Gets the number of line segments on the path.
+     * @return how many lines connect sequentially captured targets
+     */
+    public int lineCount() {
+        return Math.max(0, visited.size() - 1);
+    }
+
+    /**
+     * Adds a target to the end of the path.
+     * <p>
+     * This does not check the snake rule; use canVisit first.
+     * @param targetIndex the target being captured
+     * @return the index in the path array that was updated, or -1 if the path was full or the target
+     * was already visited
+     */
+    public int append(final int targetIndex) {
+        int previous = visited.last();
+        int slot = visited.visit(targetIndex);
+        if (slot <= 0) {
+            // Failed, or the first capture (which doesn't make a line)
+            return slot;
+        }
+        int line = slot - 1;
+        int firstRow = row(Math.min(latitudes[previous], latitudes[targetIndex]) - BOX_MARGIN);
+        int lastRow = row(Math.max(latitudes[previous], latitudes[targetIndex]) + BOX_MARGIN);
+        int firstColumn = column(Math.min(longitudes[previous], longitudes[targetIndex]) - BOX_MARGIN);
+        int lastColumn = column(Math.max(longitudes[previous], longitudes[targetIndex]) + BOX_MARGIN);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = r * gridSize + c;
+                if (cellLines[cell] == null) {
+                    cellLines[cell] = new int[INITIAL_CELL_CAPACITY];
+                } else if (cellCounts[cell] == cellLines[cell].length) {
+                    cellLines[cell] = Arrays.copyOf(cellLines[cell], cellLines[cell].length * 2);
+                }
+                cellLines[cell][cellCounts[cell]] = line;
+                cellCounts[cell]++;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Determines whether the specified target can be visited without violating the snake rule.
+     * <p>
+     * This gives the same answer as TargetVisitChecker.checkSnakeRule, but only tests lines near the new one.
+     * The target must not have been visited yet.
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public boolean canVisit(final int tryVisit) {
+        int previous = visited.last();
+        if (visited.size() < 2) {
+            return true;
+        }
+        double startLat = latitudes[previous];
+        double startLng = longitudes[previous];
+        double endLat = latitudes[tryVisit];
+        double endLng = longitudes[tryVisit];
+        double boxBottom = Math.min(startLat, endLat) - BOX_MARGIN;
+        double boxTop = Math.max(startLat, endLat) + BOX_MARGIN;
+        double boxLeft = Math.min(startLng, endLng) - BOX_MARGIN;
+        double boxRight = Math.max(startLng, endLng) + BOX_MARGIN;
+
+        queryStamp++;
+        int[] path = visited.getPath();
+        for (int r = row(boxBottom); r <= row(boxTop); r++) {
+            for (int c = column(boxLeft); c <= column(boxRight); c++) {
+                int cell = r * gridSize + c;
+                for (int i = 0; i < cellCounts[cell]; i++) {
+                    int line = cellLines[cell][i];
+                    if (lineStamps[line] == queryStamp) {
+                        continue;
+                    }
+                    lineStamps[line] = queryStamp;
+                    int lineStart = path[line];
+                    int lineEnd = path[line + 1];
+                    if (Math.max(latitudes[lineStart], latitudes[lineEnd]) < boxBottom
+                            || Math.min(latitudes[lineStart], latitudes[lineEnd]) > boxTop
+                            || Math.max(longitudes[lineStart], longitudes[lineEnd]) < boxLeft
+                            || Math.min(longitudes[lineStart], longitudes[lineEnd]) > boxRight) {
+                        // Same cell, but the bounding boxes don't overlap
+                        continue;
+                    }
+                    if (LineCrossDetector.linesCross(latitudes[lineStart], longitudes[lineStart],
+                            latitudes[lineEnd], longitudes[lineEnd], startLat, startLng, endLat, endLng)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines the grid row containing a latitude, clamped to the grid.
+     * @param latitude the latitude
+     * @return the row index
+     */
+    private int row(final double latitude) {
+        return Math.max(0, Math.min(gridSize - 1, (int) Math.floor((latitude - minLat) / cellLat)));
+    }
+
+    /**
+     * Determines the grid column containing a longitude, clamped to the grid.
+     * @param longitude the longitude
+     * @return the column index
+     */
+    private int column(final double longitude) {
+        return Math.max(0, Math.min(gridSize - 1, (int) Math.floor((longitude - minLng) / cellLng)));
+    }
+
+}
@@ -0,0 +1,31 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Read-only access to the coordinates of a set of targets by index.
+ * <p>
+ * This lets TargetVisitChecker work with target sets that aren't held as a pair of double arrays,
+ * like a MappedTargetStore.
+ */
+public interface TargetCoordinates {
+
+    /**
+     * Gets the number of targets.
+     * @return how many targets there are
+     */
+    int size();
+
+    /**
+     * Gets a target's latitude.
+     * @param index the target index
+     * @return the target's latitude
+     */
+    double getLatitude(int index);
+
+    /**
+     * Gets a target's longitude.
+     * @param index the target index
+     * @return the target's longitude
+     */
+    double getLongitude(int index);
+
+}
@@ -0,0 +1,221 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.function.IntPredicate;
+
+/**
+ * A uniform grid over a set of targets, used to find targets near a point without visiting every target.
+ * <p>
+ * The grid is built once from the same pair of coordinate arrays used by TargetVisitChecker. Each cell
+ * covers roughly the requested number of meters in each direction, so a range query with a similar range
+ * only has to look at the handful of cells around the query point. Target indexes are stored cell by cell
+ * in one flat array, with a second array marking where each cell's run of indexes starts.
+ * <p>
+ * Like LineCrossDetector, longitude is treated as X and latitude as Y. The index does not copy the
+ * coordinate arrays, so they must not be modified while the index is in use.
+ */
+public final class TargetSpatialIndex {
+
+    /** The most cells the grid may have, to keep the offsets array small for sparse target sets. */
+    private static final int MAX_CELLS = 1 << 20;
+
+    /** Latitudes of all targets. */
+    private final double[] latitudes;
+
+    /** Longitudes of all targets. */
+    private final double[] longitudes;
+
+    /** The smallest latitude of any target (bottom edge of the grid). */
+    private final double minLat;
+
+    /** The smallest longitude of any target (left edge of the grid). */
+    private final double minLng;
+
+    /** Height of a cell, in degrees of latitude. */
+    private final double cellLat;
+
+    /** Width of a cell, in degrees of longitude. */
+    private final double cellLng;
+
+    /** Number of cell rows (latitude direction). */
+    private final int rows;
+
+    /** Number of cell columns (longitude direction). */
+    private final int columns;
+
+    /** Start of each cell's run in cellTargets; entry rows * columns is the total count. */
+    private final int[] cellStarts;
+
+    /** Target indexes grouped by cell. */
+    private final int[] cellTargets;
+
+    /**
+     * Builds a grid over the given targets.
+     * <p>
+     * The two arrays must be non-null and of the same length. The cell size should usually be the
+     * proximity threshold of the game.
+     * @param setLatitudes latitudes of all targets
+     * @param setLongitudes longitudes of all targets (same size as latitudes)
+     * @param cellSize approximate size of each grid cell, in meters
+     */
+    public TargetSpatialIndex(final double[] setLatitudes, final double[] setLongitudes, final double cellSize) {
+        if (setLatitudes.length != setLongitudes.length) {
+            throw new IllegalArgumentException("Coordinate arrays must be the same size");
+        }
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        latitudes = setLatitudes;
+        longitudes = setLongitudes;
+
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        double lowLng = Double.POSITIVE_INFINITY;
+        double highLng = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < latitudes.length; i++) {
+            lowLat = Math.min(lowLat, latitudes[i]);
+            highLat = Math.max(highLat, latitudes[i]);
+            lowLng = Math.min(lowLng, longitudes[i]);
+            highLng = Math.max(highLng, longitudes[i]);
+        }
+        if (latitudes.length == 0) {
+            lowLat = 0;
+            highLat = 0;
+            lowLng = 0;
+            highLng = 0;
+        }
+        minLat = lowLat;
+        minLng = lowLng;
+
+        // Size longitude cells for the middle of the area; queries compute their own exact extent
+        double middleLat = Math.toRadians((lowLat + highLat) / 2);
+        double latDegrees = cellSize / LatLngUtils.METERS_PER_LAT_DEGREE;
+        double lngDegrees = cellSize
+                / (LatLngUtils.METERS_PER_LNG_DEGREE * Math.max(Math.cos(middleLat), Double.MIN_NORMAL));
+        long rowCount = (long) ((highLat - lowLat) / latDegrees) + 1;
+        long columnCount = (long) ((highLng - lowLng) / lngDegrees) + 1;
+        while (rowCount * columnCount > MAX_CELLS) {
+            // Very spread-out targets: coarsen the grid rather than allocate a huge, mostly empty one
+            latDegrees *= 2;
+            lngDegrees *= 2;
+            rowCount = (long) ((highLat - lowLat) / latDegrees) + 1;
+            columnCount = (long) ((highLng - lowLng) / lngDegrees) + 1;
+        }
+        cellLat = latDegrees;
+        cellLng = lngDegrees;
+        rows = (int) rowCount;
+        columns = (int) columnCount;
+
+        // Counting sort of target indexes by cell
+        cellStarts = new int[rows * columns + 1];
+        int[] targetCells = new int[latitudes.length];
+        for (int i = 0; i < latitudes.length; i++) {
+            targetCells[i] = row(latitudes[i]) * columns + column(longitudes[i]);
+            cellStarts[targetCells[i] + 1]++;
+        }
+        for (int c = 0; c < rows * columns; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+        cellTargets = new int[latitudes.length];
+        int[] fill = new int[rows * columns];
+        for (int i = 0; i < latitudes.length; i++) {
+            int cell = targetCells[i];
+            cellTargets[cellStarts[cell] + fill[cell]] = i;
+            fill[cell]++;
+        }
+    }
+
+    /**
+     * Gets the latitudes array this index was built over.
+     * @return latitudes of all targets
+     */
+    public double[] getLatitudes() {
+        return latitudes;
+    }
+
+    /**
+     * Gets the longitudes array this index was built over.
+     * @return longitudes of all targets
+     */
+    public double[] getLongitudes() {
+        return longitudes;
+    }
+
+    /**
+     * Gets the number of targets in the index.
+     * @return how many targets there are
+     */
+    public int size() {
+        return latitudes.length;
+    }
+
+    /**
+     * Determines the grid row containing a latitude, clamped to the grid.
+     * @param latitude the latitude
+     * @return the row index
+     */
+    private int row(final double latitude) {
+        return clamp((int) Math.floor((latitude - minLat) / cellLat), rows);
+    }
+
+    /**
+     * Determines the grid column containing a longitude, clamped to the grid.
+     * @param longitude the longitude
+     * @return the column index
+     */
+    private int column(final double longitude) {
+        return clamp((int) Math.floor((longitude - minLng) / cellLng), columns);
+    }
+
+    /**
+     * Clamps a cell coordinate into the grid.
+     * @param value the unclamped row or column
+     * @param count the number of rows or columns
+     * @return the value limited to [0, count)
+     */
+    private static int clamp(final int value, final int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    /**
+     * Gets an index of an unvisited target within the specified range of a location.
+     * <p>
+     * Only targets in grid cells overlapping the range are checked, so the cost depends on how many targets
+     * are near the location rather than on the total number of targets.
+     * @param visited predicate that is true for the indexes of targets already visited
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public int findWithinRange(final IntPredicate visited, final double currentLatitude,
+                               final double currentLongitude, final int range) {
+        if (latitudes.length == 0) {
+            return -1;
+        }
+        double latReach = range / LatLngUtils.METERS_PER_LAT_DEGREE;
+        double lngReach = range / (LatLngUtils.METERS_PER_LNG_DEGREE
+                * Math.max(Math.cos(Math.toRadians(currentLatitude)), Double.MIN_NORMAL));
+        if (currentLatitude + latReach < minLat || currentLatitude - latReach > minLat + rows * cellLat
+                || currentLongitude + lngReach < minLng || currentLongitude - lngReach > minLng + columns * cellLng) {
+            // Nowhere near any target
+            return -1;
+        }
+        int firstRow = row(currentLatitude - latReach);
+        int lastRow = row(currentLatitude + latReach);
+        int firstColumn = column(currentLongitude - lngReach);
+        int lastColumn = column(currentLongitude + lngReach);
+        for (int r = firstRow; r <= lastRow; r++) {
+            int rowStart = r * columns;
+            for (int i = cellStarts[rowStart + firstColumn]; i < cellStarts[rowStart + lastColumn + 1]; i++) {
+                int target = cellTargets[i];
+                if (LatLngUtils.distance(currentLatitude, currentLongitude,
+                        latitudes[target], longitudes[target]) <= range
+                        && !visited.test(target)) {
+                    return target;
+                }
+            }
+        }
+        return -1;
+    }
+
+}
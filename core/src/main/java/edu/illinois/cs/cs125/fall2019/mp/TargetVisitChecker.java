@@ -0,0 +1,297 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Holds methods for managing a path of target claims.
+ * <p>
+ * The set of locations is represented as a pair of identically sized arrays. The first target's latitude
+ * is the first entry in the latitudes array; its longitude is the first entry in the longitudes array.
+ * The path array contains indexes of the captured targets in the order they were captured. To ensure
+ * that's it's possible to capture all targets, the path array has the same size as the coordinate arrays.
+ * If not all targets have been captured yet, unused slots of the path array have the value -1. The path
+ * array is filled starting at the beginning, so all instances of -1 are contiguous at the end of the array.
+ * <p>
+ * For example, if latitudes is [40.2, 40.8], longitudes is [-88.5, -88.3], and path is [1, -1],
+ * there are two targets: (40.2, -88.5) and (40.8, -88.3). The target at index 1, that is, (40.8, -88.3),
+ * has been captured; the other has not. If path were [-1, -1], that would indicate that the user has
+ * captured no targets so far. If path were [0, 1], that would indicate that the user first captured target
+ * 0, that is, (40.2, -88.5), and then captured target 1.
+ * <p>
+ * The array methods for finding a target in range, checking the snake rule, and visiting a target have
+ * overloads for faster representations of the same data: a TargetSpatialIndex for range checks, a
+ * VisitedTargets in place of the path array, a SnakePath for snake rule checks, and TargetCoordinates or
+ * FixedPointTargets in place of the coordinate arrays. They follow the same contracts as the array versions,
+ * except where their documentation says otherwise.
+ */
+public class TargetVisitChecker {
+
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location.
+     * <p>
+     * A target is visited if its index appears in the path array.
+     * <p>
+     * It is assumed that all parameters are valid. The three arrays are non-null and of the same length.
+     * All coordinates are valid. The range is positive.
+     * <p>
+     * This function should not modify the arrays it receives.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same size as latitudes)
+     * @param path indexes of targets visited so far (same size as latitudes, -1 for empty slots)
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getTargetWithinRange(final double[] latitudes, final double[] longitudes, final int[] path,
+                                           final double currentLatitude, final double currentLongitude,
+                                           final int range) {
+        for (int i = 0; i < latitudes.length; i++) {
+            if (LatLngUtils.distance(currentLatitude, currentLongitude, latitudes[i], longitudes[i]) <= range
+                    && !isVisited(path, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location,
+     * using a spatial index to check only the targets near the current location.
+     * <p>
+     * This behaves like the array version, but its cost depends on how many targets are near the
+     * player rather than on the total number of targets. The index should be built once per game
+     * (with a cell size around the proximity threshold) and reused for every location update.
+     * @param index spatial index over the targets' coordinates
+     * @param path indexes of targets visited so far (same size as the index, -1 for empty slots)
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getTargetWithinRange(final TargetSpatialIndex index, final int[] path,
+                                           final double currentLatitude, final double currentLongitude,
+                                           final int range) {
+        return index.findWithinRange(target -> isVisited(path, target), currentLatitude, currentLongitude, range);
+    }
+
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location.
+     * <p>
+     * This behaves like the path array version, but checks whether each target was visited in constant time.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same size as latitudes)
+     * @param visited the targets visited so far
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getTargetWithinRange(final double[] latitudes, final double[] longitudes,
+                                           final VisitedTargets visited,
+                                           final double currentLatitude, final double currentLongitude,
+                                           final int range) {
+        for (int i = 0; i < latitudes.length; i++) {
+            if (!visited.contains(i)
+                    && LatLngUtils.distance(currentLatitude, currentLongitude, latitudes[i], longitudes[i]) <= range) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location,
+     * using a spatial index to check only the targets near the current location.
+     * @param index spatial index over the targets' coordinates
+     * @param visited the targets visited so far
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getTargetWithinRange(final TargetSpatialIndex index, final VisitedTargets visited,
+                                           final double currentLatitude, final double currentLongitude,
+                                           final int range) {
+        return index.findWithinRange(visited::contains, currentLatitude, currentLongitude, range);
+    }
+
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location,
+     * reading coordinates from any target store (e.g. a MappedTargetStore).
+     * @param targets the targets' coordinates
+     * @param visited the targets visited so far
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getTargetWithinRange(final TargetCoordinates targets, final VisitedTargets visited,
+                                           final double currentLatitude, final double currentLongitude,
+                                           final int range) {
+        for (int i = 0; i < targets.size(); i++) {
+            if (!visited.contains(i) && LatLngUtils.distance(currentLatitude, currentLongitude,
+                    targets.getLatitude(i), targets.getLongitude(i)) <= range) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether a target's index appears in the path array.
+     * @param path indexes of targets visited so far (-1 for empty slots)
+     * @param targetIndex the target to look for
+     * @return whether the target has been visited
+     */
+    static boolean isVisited(final int[] path, final int targetIndex) {
+        for (int visited : path) {
+            if (visited == -1) {
+                return false;
+            } else if (visited == targetIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the specified target can be visited without violating the snake rule.
+     * <p>
+     * The snake rule is violated if the new line created between the last captured target and this
+     * new target would cross the straight line connecting two sequentially captured targets. For example,
+     * there is a line between the first-captured and second-captured targets, and between the second-captured
+     * and third-captured targets, but no line directly connecting the first-captured and third-captured
+     * targets. If zero or one targets have been captured so far, there are no lines and it is permissible
+     * to capture any target.
+     * <p>
+     * It is assumed that all parameters are valid. The three arrays are non-null and of the same length.
+     * All coordinates are valid. The index of the target to visit is a valid index into the coordinate
+     * arrays. The index of the target to visit does not appear in the path array (i.e. the target has not
+     * been visited yet). No existing lines violate the snake rule.
+     * <p>
+     * This function should not modify the arrays it receives.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets
+     * @param path indexes of targets visited so far (-1 for empty slots)
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final double[] latitudes, final double[] longitudes, final int[] path,
+                                         final int tryVisit) {
+        int length = 0;
+        while (length < path.length && path[length] != -1) {
+            length++;
+        }
+        if (length < 2) {
+            return true;
+        }
+        int last = path[length - 1];
+        for (int i = 0; i < length - 1; i++) {
+            if (LineCrossDetector.linesCross(latitudes[path[i]], longitudes[path[i]],
+                    latitudes[path[i + 1]], longitudes[path[i + 1]],
+                    latitudes[last], longitudes[last], latitudes[tryVisit], longitudes[tryVisit])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the specified target can be visited without violating the snake rule,
+     * testing only the lines of the path that are near the new line.
+     * <p>
+     * The index of the target to visit must not already be on the path.
+     * @param path the player's indexed capture path
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final SnakePath path, final int tryVisit) {
+        return path.canVisit(tryVisit);
+    }
+
+    /**
+     * Determines whether the specified target can be visited without violating the snake rule,
+     * reading coordinates from any target store (e.g. a MappedTargetStore).
+     * <p>
+     * The index of the target to visit must not already be on the path.
+     * @param targets the targets' coordinates
+     * @param visited the targets visited so far
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final TargetCoordinates targets, final VisitedTargets visited,
+                                         final int tryVisit) {
+        if (visited.size() < 2) {
+            return true;
+        }
+        int last = visited.last();
+        double lastLat = targets.getLatitude(last);
+        double lastLng = targets.getLongitude(last);
+        double tryLat = targets.getLatitude(tryVisit);
+        double tryLng = targets.getLongitude(tryVisit);
+        for (int i = 0; i < visited.size() - 1; i++) {
+            int start = visited.get(i);
+            int end = visited.get(i + 1);
+            if (LineCrossDetector.linesCross(targets.getLatitude(start), targets.getLongitude(start),
+                    targets.getLatitude(end), targets.getLongitude(end), lastLat, lastLng, tryLat, tryLng)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the specified target can be visited without violating the snake rule,
+     * using exact fixed-point geometry.
+     * <p>
+     * The index of the target to visit must not already be on the path.
+     * @param targets the targets' fixed-point coordinates
+     * @param visited the targets visited so far
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final FixedPointTargets targets, final VisitedTargets visited,
+                                         final int tryVisit) {
+        if (visited.size() < 2) {
+            return true;
+        }
+        long last = targets.getPoint(visited.last());
+        long next = targets.getPoint(tryVisit);
+        for (int i = 0; i < visited.size() - 1; i++) {
+            if (LineCrossDetector.linesCross(targets.getPoint(visited.get(i)), targets.getPoint(visited.get(i + 1)),
+                    last, next)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks a target captured by putting its index in the first available (-1) slot of the path array.
+     * <p>
+     * It is assumed that all parameters are valid. The path array is non-null and does not yet contain
+     * the target index. The target index is non-negative.
+     * @param path the path array
+     * @param targetIndex the target being visited
+     * @return the index in the path array that was updated, or -1 if the path array was full
+     */
+    public static int visitTarget(final int[] path, final int targetIndex) {
+        for (int i = 0; i < path.length; i++) {
+            if (path[i] == -1) {
+                path[i] = targetIndex;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks a target captured by adding it to the end of the path, in constant time.
+     * @param visited the targets visited so far
+     * @param targetIndex the target being visited
+     * @return the index in the path array that was updated, or -1 if the path array was full
+     */
+    public static int visitTarget(final VisitedTargets visited, final int targetIndex) {
+        return visited.visit(targetIndex);
+    }
+
+}
@@ -0,0 +1,128 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tracks which targets have been captured and in what order.
+ * <p>
+ * This holds the same information as the path array used by TargetVisitChecker, but also keeps a bit
+ * per target and the position of the next free path slot. That makes checking whether a target has been
+ * visited, visiting a target, and getting the path length all constant-time operations instead of scans
+ * of the path array.
+ * <p>
+ * The path array itself is kept in the usual format (captured indexes in order, then -1 for unused slots)
+ * so that it can still be passed to methods that take a path array.
+ */
+public final class VisitedTargets {
+
+    /** Captured target indexes in capture order, -1 for unused slots. */
+    private final int[] path;
+
+    /** Which targets have been captured. */
+    private final BitSet visited;
+
+    /** How many targets have been captured (also the index of the next free path slot). */
+    private int length;
+
+    /**
+     * Creates an empty set of visited targets.
+     * @param targetCount the total number of targets
+     */
+    public VisitedTargets(final int targetCount) {
+        path = new int[targetCount];
+        Arrays.fill(path, -1);
+        visited = new BitSet(targetCount);
+    }
+
+    /**
+     * Creates a set of visited targets from an existing path array.
+     * <p>
+     * The array is copied, so later changes to it do not affect this object.
+     * @param existingPath indexes of targets visited so far (-1 for empty slots, all at the end)
+     */
+    public VisitedTargets(final int[] existingPath) {
+        this(existingPath.length);
+        for (int target : existingPath) {
+            if (target == -1) {
+                break;
+            }
+            visit(target);
+        }
+    }
+
+    /**
+     * Determines whether a target has been captured.
+     * @param targetIndex the target index
+     * @return whether the target is on the path
+     */
+    public boolean contains(final int targetIndex) {
+        return visited.get(targetIndex);
+    }
+
+    /**
+     * Marks a target captured by adding it to the end of the path.
+     * @param targetIndex the target being visited
+     * @return the index in the path array that was updated, or -1 if the path was full or the target
+     * was already visited
+     */
+    public int visit(final int targetIndex) {
+        if (length == path.length || visited.get(targetIndex)) {
+            return -1;
+        }
+        visited.set(targetIndex);
+        path[length] = targetIndex;
+        length++;
+        return length - 1;
+    }
+
+    /**
+     * Gets how many targets have been captured.
+     * @return the number of used path slots
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Gets the total number of targets (and path slots).
+     * @return the length of the path array
+     */
+    public int capacity() {
+        return path.length;
+    }
+
+    /**
+     * Gets the target captured at a given point in the path.
+     * @param order the position in the path (0 for the first capture)
+     * @return the index of the target captured at that position
+     */
+    public int get(final int order) {
+        if (order < 0 || order >= length) {
+            throw new IndexOutOfBoundsException("No capture at path position " + order);
+        }
+        return path[order];
+    }
+
+    /**
+     * Gets the most recently captured target.
+     * @return the index of the last target on the path, or -1 if nothing has been captured
+     */
+    public int last() {
+        if (length == 0) {
+            return -1;
+        }
+        return path[length - 1];
+    }
+
+    /**
+     * Gets the path in the array format used by TargetVisitChecker.
+     * <p>
+     * This is the backing array, not a copy, so it is always up to date. It must not be modified.
+     * @return captured target indexes in order, then -1 for unused slots
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.google.android.gms.maps.model;
+
+/**
+ * Compile-only stand-in for the Google Maps LatLng class.
+ * <p>
+ * LatLngUtils has overloads that take LatLngs. Nothing in the core module calls them, and the app supplies the
+ * real class, so this stand-in only needs to exist at compile time and is not part of the module's output.
+ */
+public final class LatLng {
+
+    /** The latitude. */
+    public final double latitude;
+
+    /** The longitude. */
+    public final double longitude;
+
+    /**
+     * Creates a LatLng.
+     * @param setLatitude the latitude
+     * @param setLongitude the longitude
+     */
+    public LatLng(final double setLatitude, final double setLongitude) {
+        latitude = setLatitude;
+        longitude = setLongitude;
+    }
+
+}
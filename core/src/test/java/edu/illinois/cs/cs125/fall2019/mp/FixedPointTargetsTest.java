@@ -0,0 +1,76 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FixedPointTargetsTest {
+
+    /* Half a fixed-point unit, the most rounding to fixed point can move a coordinate. */
+    private static final double HALF_UNIT = 0.5 / FixedPointTargets.UNITS_PER_DEGREE;
+
+    @Test
+    public void testPackRoundTrip() {
+        int[] values = {0, 1, -1, 401100000, -882270000, FixedPointTargets.toFixed(90), FixedPointTargets.toFixed(-90),
+            FixedPointTargets.toFixed(180), FixedPointTargets.toFixed(-180), Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int latitude : values) {
+            for (int longitude : values) {
+                long point = FixedPointTargets.pack(latitude, longitude);
+                Assert.assertEquals(latitude, FixedPointTargets.latitudeOf(point));
+                Assert.assertEquals("A negative longitude shouldn't change the latitude",
+                        longitude, FixedPointTargets.longitudeOf(point));
+            }
+        }
+        Assert.assertNotEquals(FixedPointTargets.pack(0, -1), FixedPointTargets.pack(-1, -1));
+    }
+
+    @Test
+    public void testConversion() {
+        Assert.assertEquals(401100000, FixedPointTargets.toFixed(40.11));
+        Assert.assertEquals(-882270000, FixedPointTargets.toFixed(-88.227));
+        Assert.assertEquals(1800000000, FixedPointTargets.toFixed(180));
+        Assert.assertEquals(-1800000000, FixedPointTargets.toFixed(-180));
+        Assert.assertEquals("Conversion should round to the nearest unit", 401100001,
+                FixedPointTargets.toFixed(40.11000006));
+        Assert.assertEquals(401100000, FixedPointTargets.toFixed(40.11000004));
+        Assert.assertEquals(-401100001, FixedPointTargets.toFixed(-40.11000006));
+
+        Random random = new Random(125);
+        for (int i = 0; i < 10000; i++) {
+            double degrees = (random.nextDouble() - 0.5) * 360;
+            int fixed = FixedPointTargets.toFixed(degrees);
+            Assert.assertEquals(degrees, FixedPointTargets.toDegrees(fixed), HALF_UNIT + 1e-12);
+            Assert.assertEquals("Converting back and forth should be stable",
+                    fixed, FixedPointTargets.toFixed(FixedPointTargets.toDegrees(fixed)));
+        }
+    }
+
+    @Test
+    public void testTargets() {
+        Random random = new Random(125);
+        double[] latitudes = new double[1000];
+        double[] longitudes = new double[latitudes.length];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = (random.nextDouble() - 0.5) * 180;
+            longitudes[i] = (random.nextDouble() - 0.5) * 360;
+        }
+        latitudes[0] = 90;
+        longitudes[0] = -180;
+        FixedPointTargets targets = new FixedPointTargets(latitudes, longitudes);
+        Assert.assertEquals(latitudes.length, targets.size());
+        for (int i = 0; i < latitudes.length; i++) {
+            Assert.assertEquals(latitudes[i], targets.getLatitude(i), HALF_UNIT + 1e-12);
+            Assert.assertEquals(longitudes[i], targets.getLongitude(i), HALF_UNIT + 1e-12);
+            Assert.assertEquals(FixedPointTargets.pack(latitudes[i], longitudes[i]), targets.getPoint(i));
+            Assert.assertTrue("A fixed-point target should be the same place as the original",
+                    LatLngUtils.same(latitudes[i], longitudes[i], targets.getLatitude(i), targets.getLongitude(i)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedArrays() {
+        new FixedPointTargets(new double[2], new double[3]);
+    }
+
+}
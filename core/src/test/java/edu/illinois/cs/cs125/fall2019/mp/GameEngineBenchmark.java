@@ -0,0 +1,96 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Random;
+
+/*
+ * Simulates complete games on the plain JVM to measure how many the GameEngine can run per second.
+ * Each game has a few players per team walking randomly around campus, sending a location update per
+ * step, until every objective is claimed or the step limit is reached. Not part of the graded test
+ * suites; run main from the IDE or with the core module's test classpath.
+ */
+final class GameEngineBenchmark {
+
+    private static final double NORTH = 40.116319;
+    private static final double EAST = -88.223576;
+    private static final double SOUTH = 40.112905;
+    private static final double WEST = -88.228933;
+
+    private static final int TARGETS = 40;
+    private static final int PROXIMITY_THRESHOLD = 20;
+    private static final int CELL_SIZE = 40;
+    private static final int PLAYERS_PER_TEAM = 2;
+    private static final int STEPS = 500;
+    private static final double STEP_DEGREES = 0.00008;
+
+    private GameEngineBenchmark() { }
+
+    private static GameEngine targetGame(Random random) {
+        String[] ids = new String[TARGETS];
+        double[] lats = new double[TARGETS];
+        double[] lngs = new double[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            ids[i] = "target" + i;
+            lats[i] = SOUTH + random.nextDouble() * (NORTH - SOUTH);
+            lngs[i] = WEST + random.nextDouble() * (EAST - WEST);
+        }
+        return new GameEngine(ids, lats, lngs, PROXIMITY_THRESHOLD);
+    }
+
+    private static long play(GameEngine engine, Random random) {
+        int players = TeamID.NUM_TEAMS * PLAYERS_PER_TEAM;
+        double[] lats = new double[players];
+        double[] lngs = new double[players];
+        for (int p = 0; p < players; p++) {
+            engine.addPlayer("player" + p + "@illinois.edu", TeamID.MIN_TEAM + p % TeamID.NUM_TEAMS,
+                    PlayerStateID.PLAYING);
+            lats[p] = SOUTH + random.nextDouble() * (NORTH - SOUTH);
+            lngs[p] = WEST + random.nextDouble() * (EAST - WEST);
+        }
+        int claimed = 0;
+        long updates = 0;
+        for (int step = 0; step < STEPS && claimed < engine.getObjectiveCount(); step++) {
+            for (int p = 0; p < players; p++) {
+                lats[p] = Math.max(SOUTH, Math.min(NORTH, lats[p] + (random.nextDouble() - 0.5) * STEP_DEGREES));
+                lngs[p] = Math.max(WEST, Math.min(EAST, lngs[p] + (random.nextDouble() - 0.5) * STEP_DEGREES));
+                if (engine.locationUpdated(p, lats[p], lngs[p]) != GameEngine.NONE) {
+                    claimed++;
+                }
+                updates++;
+            }
+        }
+        int total = 0;
+        for (int team = TeamID.MIN_TEAM; team <= TeamID.MAX_TEAM; team++) {
+            total += engine.getTeamScore(team);
+        }
+        if (total != claimed) {
+            throw new AssertionError("Scores add up to " + total + " but " + claimed + " objectives were claimed");
+        }
+        return updates;
+    }
+
+    private static void run(String mode, int games, Random random) {
+        long updates = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            GameEngine engine;
+            if (mode.equals(GameEngine.AREA_MODE)) {
+                engine = new GameEngine(NORTH, EAST, SOUTH, WEST, CELL_SIZE);
+            } else {
+                engine = targetGame(random);
+            }
+            updates += play(engine, random);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-6s %,7d games in %6.2f s: %,9.0f games/s, %,12.0f location updates/s%n",
+                mode, games, seconds, games / seconds, updates / seconds);
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(125);
+        for (int round = 0; round < 3; round++) {
+            run(GameEngine.TARGET_MODE, 2_000, random);
+            run(GameEngine.AREA_MODE, 2_000, random);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LatLngUtilsTest {
+
+    private static double[] randomCoordinates(Random random, int count, double center, double spread) {
+        double[] coordinates = new double[count];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = center + (random.nextDouble() - 0.5) * spread;
+        }
+        return coordinates;
+    }
+
+    @Test
+    public void testDistances() {
+        Random random = new Random(125);
+        for (double center : new double[] {40.108, 0, -45, 70}) {
+            double[] lats = randomCoordinates(random, 1000, center, 0.05);
+            double[] lngs = randomCoordinates(random, 1000, -88.227, 0.05);
+            double lat = center + (random.nextDouble() - 0.5) * 0.05;
+            double lng = -88.227 + (random.nextDouble() - 0.5) * 0.05;
+            double[] distances = new double[lats.length + 3];
+            double[] squared = new double[lats.length];
+            LatLngUtils.distances(lat, lng, lats, lngs, distances);
+            LatLngUtils.squaredDistances(lat, lng, lats, lngs, squared);
+            for (int i = 0; i < lats.length; i++) {
+                double expected = LatLngUtils.distance(lat, lng, lats[i], lngs[i]);
+                Assert.assertEquals(expected, distances[i], expected * 1e-12);
+                Assert.assertEquals(expected * expected, squared[i], expected * expected * 1e-12);
+            }
+            Assert.assertEquals("Extra slots should be left alone", 0, distances[lats.length], 0);
+        }
+
+        double[] none = new double[0];
+        LatLngUtils.distances(40.1, -88.2, none, none, none);
+        double[] same = {40.1};
+        double[] out = {-1};
+        LatLngUtils.distances(40.1, -88.2, same, new double[] {-88.2}, out);
+        Assert.assertEquals(0, out[0], 0);
+    }
+
+    @Test
+    public void testWithinRange() {
+        Random random = new Random(125);
+        double[] lats = randomCoordinates(random, 2000, 40.108, 0.01);
+        double[] lngs = randomCoordinates(random, 2000, -88.227, 0.01);
+        int[] out = new int[lats.length];
+        int checked = 0;
+        for (int query = 0; query < 200; query++) {
+            double lat = 40.108 + (random.nextDouble() - 0.5) * 0.012;
+            double lng = -88.227 + (random.nextDouble() - 0.5) * 0.012;
+            double range = random.nextDouble() * 300;
+            int count = LatLngUtils.withinRange(lat, lng, lats, lngs, range, out);
+            int found = 0;
+            for (int i = 0; i < lats.length; i++) {
+                double distance = LatLngUtils.distance(lat, lng, lats[i], lngs[i]);
+                boolean inRange = found < count && out[found] == i;
+                if (inRange) {
+                    found++;
+                }
+                if (Math.abs(distance - range) < 1e-9) {
+                    // Rounding could decide either way right at the edge
+                    continue;
+                }
+                Assert.assertEquals("Wrong answer for target " + i + " at " + distance + " m with range " + range,
+                        distance <= range, inRange);
+                checked++;
+            }
+            Assert.assertEquals("Indexes should be in increasing order, each once", count, found);
+        }
+        Assert.assertTrue(checked > lats.length * 100);
+
+        Assert.assertEquals(0, LatLngUtils.withinRange(40.1, -88.2, new double[0], new double[0], 10, new int[0]));
+        int[] exact = new int[2];
+        Assert.assertEquals("A point is within a zero range of itself",
+                1, LatLngUtils.withinRange(40.1, -88.2, new double[] {40.2, 40.1}, new double[] {-88.2, -88.2}, 0,
+                        exact));
+        Assert.assertEquals(1, exact[0]);
+    }
+
+}
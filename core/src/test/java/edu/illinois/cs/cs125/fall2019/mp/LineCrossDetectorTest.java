@@ -0,0 +1,239 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Pins down where the orientation-based linesCrossByOrientation differs from linesCross (the original
+ * slope/intercept rules, which the snake rule keeps using), plus the rules both share. The differing cases
+ * came from fuzzing random campus-scale segments: a few hundred in two million pairs disagree. In almost all of
+ * them linesCross reports a crossing between segments that don't touch; the rest are endpoints within the
+ * tolerance of the other line's middle that it misses. The fixed-point overload is checked against exact
+ * BigInteger arithmetic, including coordinates far enough apart to need its BigInteger fallback.
+ */
+public class LineCrossDetectorTest {
+
+    private static boolean cross(double... line) {
+        return LineCrossDetector.linesCross(line[0], line[1], line[2], line[3], line[4], line[5], line[6], line[7]);
+    }
+
+    private static boolean crossByOrientation(double... line) {
+        return LineCrossDetector.linesCrossByOrientation(
+                line[0], line[1], line[2], line[3], line[4], line[5], line[6], line[7]);
+    }
+
+    private static void assertOrientation(String message, boolean expected, double... line) {
+        Assert.assertEquals(message, expected, crossByOrientation(line));
+        Assert.assertEquals(message + " (with the lines swapped)", expected, crossByOrientation(
+                line[4], line[5], line[6], line[7], line[0], line[1], line[2], line[3]));
+        Assert.assertEquals(message + " (with the second line reversed)", expected, crossByOrientation(
+                line[0], line[1], line[2], line[3], line[6], line[7], line[4], line[5]));
+    }
+
+    private static void assertCross(String message, boolean expected, double... line) {
+        Assert.assertEquals(message, expected, cross(line));
+        Assert.assertEquals(message + " (with the lines swapped)", expected,
+                cross(line[4], line[5], line[6], line[7], line[0], line[1], line[2], line[3]));
+        Assert.assertEquals(message + " (with the second line reversed)", expected,
+                cross(line[0], line[1], line[2], line[3], line[6], line[7], line[4], line[5]));
+        assertOrientation(message + " (by orientation)", expected, line);
+    }
+
+    private static boolean crossFixed(int... points) {
+        return LineCrossDetector.linesCross(FixedPointTargets.pack(points[0], points[1]),
+                FixedPointTargets.pack(points[2], points[3]), FixedPointTargets.pack(points[4], points[5]),
+                FixedPointTargets.pack(points[6], points[7]));
+    }
+
+    private static void assertCrossFixed(String message, boolean expected, int... points) {
+        Assert.assertEquals(message, expected, crossFixed(points));
+        Assert.assertEquals(message + " (with the lines swapped)", expected, crossFixed(
+                points[4], points[5], points[6], points[7], points[0], points[1], points[2], points[3]));
+        Assert.assertEquals(message + " (with the second line reversed)", expected, crossFixed(
+                points[0], points[1], points[2], points[3], points[6], points[7], points[4], points[5]));
+    }
+
+    /* Sign of the cross product of (b - a) and (c - a), with longitude as X, computed with BigInteger. */
+    private static int exactOrientation(int aLat, int aLng, int bLat, int bLng, int cLat, int cLng) {
+        BigInteger abX = BigInteger.valueOf((long) bLng - aLng);
+        BigInteger abY = BigInteger.valueOf((long) bLat - aLat);
+        BigInteger acX = BigInteger.valueOf((long) cLng - aLng);
+        BigInteger acY = BigInteger.valueOf((long) cLat - aLat);
+        return abX.multiply(acY).subtract(abY.multiply(acX)).signum();
+    }
+
+    /* The fixed-point rules, written out with BigInteger for every product. */
+    private static boolean exactCross(int... p) {
+        for (int i = 0; i < 4; i += 2) {
+            for (int j = 4; j < 8; j += 2) {
+                if (p[i] == p[j] && p[i + 1] == p[j + 1]) {
+                    return false;
+                }
+            }
+        }
+        // Parallel if the second line's direction, moved to the first's start, is collinear with the first
+        if (exactOrientation(p[0], p[1], p[2], p[3], p[0] + (p[6] - p[4]), p[1] + (p[7] - p[5])) == 0) {
+            return false;
+        }
+        return exactOrientation(p[0], p[1], p[2], p[3], p[4], p[5])
+                * exactOrientation(p[0], p[1], p[2], p[3], p[6], p[7]) <= 0
+                && exactOrientation(p[4], p[5], p[6], p[7], p[0], p[1])
+                * exactOrientation(p[4], p[5], p[6], p[7], p[2], p[3]) <= 0;
+    }
+
+    @Test
+    public void testDisjointBoundingBoxes() {
+        // The extensions meet within 1e-7 degrees of longitude of an endpoint, far from the other segment
+        double[] apart = {40.1022188380504, -88.2274348154359, 40.104472160203315, -88.22763774628798,
+                40.10462249795918, -88.22712922674961, 40.10668238528518, -88.22013990971017};
+        Assert.assertTrue("linesCross reports this crossing", cross(apart));
+        assertOrientation("Segments with disjoint bounding boxes can't cross", false, apart);
+
+        double[] apartToo = {40.10828499899054, -88.22685914529072, 40.10206892218437, -88.2255740980462,
+                40.101422686461994, -88.22654883111605, 40.10011978716909, -88.22851508199332};
+        Assert.assertTrue("linesCross reports this crossing", cross(apartToo));
+        assertOrientation("Segments with disjoint bounding boxes can't cross", false, apartToo);
+    }
+
+    @Test
+    public void testNearlyVerticalLines() {
+        // The first line is 1e-5 degrees of longitude off vertical, so a 1e-7 longitude tolerance is
+        // several meters of latitude along it
+        double[] offTheEnd = {40.10267953505927, -88.22544124500291, 40.108448553390616, -88.22545368141321,
+                40.10889047639412, -88.22644394886966, 40.10796593723336, -88.22432340375};
+        Assert.assertTrue("linesCross reports this crossing", cross(offTheEnd));
+        assertOrientation("A nearly vertical line missed by 1e-5 degrees doesn't cross", false, offTheEnd);
+
+        double[] offTheSide = {40.10343131301021, -88.22538280002448, 40.10718919831981, -88.2253824155236,
+                40.10470256545481, -88.2217242687278, 40.10226906060049, -88.22589571476328};
+        Assert.assertTrue("linesCross reports this crossing", cross(offTheSide));
+        assertOrientation("A line passing beside a nearly vertical line doesn't cross it", false, offTheSide);
+
+        assertCross("A nearly vertical line crossing a horizontal one crosses", true,
+                40.100, -88.2250000, 40.110, -88.2250001, 40.105, -88.226, 40.105, -88.224);
+        assertCross("A vertical line crossing a diagonal one crosses", true,
+                40.100, -88.225, 40.110, -88.225, 40.101, -88.226, 40.109, -88.224);
+        assertCross("Parallel vertical lines don't cross", false,
+                40.100, -88.225, 40.110, -88.225, 40.100, -88.224, 40.110, -88.224);
+        assertCross("Collinear vertical lines don't cross", false,
+                40.100, -88.225, 40.106, -88.225, 40.104, -88.225, 40.110, -88.225);
+    }
+
+    @Test
+    public void testEndpointOnNearlyParallelLine() {
+        // The second line ends within 1e-7 degrees of the middle of the first, but at such a shallow angle that
+        // the extensions meet more than 1e-7 degrees of longitude from that endpoint
+        double[] grazing = {40.1049657775908, -88.2292664711224, 40.103563795502865, -88.22256925197568,
+                40.10546283405969, -88.22937325513428, 40.104067956917795, -88.22497719280906};
+        Assert.assertFalse("linesCross misses this endpoint", cross(grazing));
+        assertOrientation("An endpoint on the middle of a line within the tolerance crosses", true, grazing);
+    }
+
+    @Test
+    public void testSharedEndpoints() {
+        assertCross("Lines sharing a start don't cross", false,
+                40.100, -88.230, 40.110, -88.220, 40.100, -88.230, 40.110, -88.225);
+        assertCross("Lines meeting end to start don't cross", false,
+                40.100, -88.230, 40.105, -88.225, 40.105, -88.225, 40.100, -88.220);
+        assertCross("Lines meeting end to start at a right angle don't cross", false,
+                40.100, -88.225, 40.105, -88.225, 40.105, -88.225, 40.105, -88.220);
+        assertCross("Lines whose endpoints are within the tolerance are sharing them", false,
+                40.100, -88.230, 40.110, -88.220, 40.10000001, -88.23000001, 40.110, -88.225);
+    }
+
+    @Test
+    public void testEndpointOnMiddle() {
+        assertCross("A line ending on the middle of another crosses it", true,
+                40.100, -88.230, 40.110, -88.220, 40.105, -88.225, 40.100, -88.225);
+        assertCross("A line starting on the middle of a vertical line crosses it", true,
+                40.100, -88.225, 40.110, -88.225, 40.105, -88.225, 40.105, -88.220);
+        assertCross("A line ending just short of another doesn't cross it", false,
+                40.100, -88.230, 40.110, -88.220, 40.1049, -88.2249, 40.100, -88.225);
+        assertCross("Lines crossing in their middles cross", true,
+                40.100, -88.230, 40.110, -88.220, 40.110, -88.230, 40.100, -88.220);
+        assertCross("Overlapping collinear lines don't cross", false,
+                40.100, -88.230, 40.110, -88.220, 40.105, -88.225, 40.115, -88.215);
+    }
+
+    @Test
+    public void testFixedPointCollinearAndTouching() {
+        assertCrossFixed("Lines crossing in their middles cross", true,
+                0, 0, 10, 10, 10, 0, 0, 10);
+        assertCrossFixed("A line ending on the middle of another crosses it", true,
+                0, 0, 0, 10, 0, 5, 10, 5);
+        assertCrossFixed("A line ending on a diagonal line's middle crosses it", true,
+                0, 0, 10, 10, 5, 5, 0, 7);
+        assertCrossFixed("A line ending one unit short of another doesn't cross it", false,
+                0, 0, 0, 10, 1, 5, 10, 5);
+        assertCrossFixed("A line passing one unit past another's end doesn't cross it", false,
+                0, 0, 0, 10, -5, 11, 5, 11);
+        assertCrossFixed("A line ending on another's extension doesn't cross it", false,
+                0, 0, 0, 10, 0, 15, 10, 15);
+        assertCrossFixed("Lines sharing an endpoint don't cross", false,
+                0, 0, 0, 10, 0, 10, 10, 10);
+        assertCrossFixed("Lines sharing an endpoint and a direction don't cross", false,
+                0, 0, 0, 10, 0, 10, 0, 20);
+        assertCrossFixed("Overlapping collinear lines don't cross", false,
+                0, 0, 0, 10, 0, 5, 0, 15);
+        assertCrossFixed("A collinear line inside another doesn't cross it", false,
+                0, 0, 10, 10, 3, 3, 6, 6);
+        assertCrossFixed("Separate collinear lines don't cross", false,
+                0, 0, 10, 10, 20, 20, 30, 30);
+        assertCrossFixed("Parallel lines don't cross", false,
+                0, 0, 10, 10, 1, 0, 11, 10);
+    }
+
+    @Test
+    public void testFixedPointNearOverflow() {
+        int maxLat = FixedPointTargets.toFixed(90);
+        int maxLng = FixedPointTargets.toFixed(180);
+        // Longitude differences up to 3.6e9 units don't fit in an int, so these need the BigInteger fallback
+        assertCrossFixed("A line across every longitude crosses a short one near the end", true,
+                0, -maxLng, 0, maxLng, -1, maxLng - 1, 1, maxLng - 1);
+        assertCrossFixed("A line across every longitude misses a short one just above it", false,
+                0, -maxLng, 0, maxLng, 1, maxLng - 1, 2, maxLng - 1);
+        assertCrossFixed("Diagonals of the whole map cross", true,
+                -maxLat, -maxLng, maxLat, maxLng, maxLat, -maxLng, -maxLat, maxLng);
+        assertCrossFixed("A point on a diagonal of the whole map touches it", true,
+                -maxLat, -maxLng, maxLat, maxLng, 0, 0, maxLat, -maxLng);
+        assertCrossFixed("A point one unit off a diagonal of the whole map doesn't touch it", false,
+                -maxLat, -maxLng, maxLat, maxLng, 1, 0, maxLat, -maxLng);
+        assertCrossFixed("Parallel diagonals of the whole map don't cross", false,
+                -maxLat, -maxLng, maxLat - 1, maxLng, -maxLat + 1, -maxLng, maxLat, maxLng);
+        assertCrossFixed("Nearly parallel diagonals of the whole map cross", true,
+                -maxLat, -maxLng, maxLat, maxLng, -maxLat + 1, -maxLng, maxLat - 1, maxLng);
+
+        // Products of differences just under 2^31 stay on the long path and must not overflow
+        int big = Integer.MAX_VALUE / 2;
+        assertCrossFixed("Lines with the largest int differences cross", true,
+                -maxLat, -big, maxLat, big, maxLat, -big, -maxLat, big);
+        assertCrossFixed("A point one unit off a line with the largest int differences doesn't touch it", false,
+                -maxLat, -big, maxLat, big, 1, 0, maxLat, -big);
+
+        Random random = new Random(125);
+        int crossings = 0;
+        for (int i = 0; i < 100000; i++) {
+            int[] points = new int[8];
+            for (int j = 0; j < 8; j += 2) {
+                points[j] = random.nextInt(2 * maxLat + 1) - maxLat;
+                points[j + 1] = (int) (random.nextDouble() * 2 * maxLng) - maxLng;
+            }
+            if (i % 2 == 0) {
+                // Put the second line's start exactly on the first line
+                points[4] = (int) ((points[0] + (long) points[2]) / 2);
+                points[5] = (int) ((points[1] + (long) points[3]) / 2);
+            }
+            boolean expected = exactCross(points);
+            if (expected) {
+                crossings++;
+            }
+            Assert.assertEquals("Wrong answer for " + Arrays.toString(points), expected, crossFixed(points));
+        }
+        Assert.assertTrue(crossings > 10000);
+    }
+
+}
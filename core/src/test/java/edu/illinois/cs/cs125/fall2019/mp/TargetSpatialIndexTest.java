@@ -0,0 +1,159 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+public class TargetSpatialIndexTest {
+
+    private static boolean linearHasTarget(double[] lats, double[] lngs, IntPredicate visited,
+                                           double lat, double lng, int range) {
+        for (int i = 0; i < lats.length; i++) {
+            if (LatLngUtils.distance(lat, lng, lats[i], lngs[i]) <= range && !visited.test(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * The index may return any unvisited target in range, not necessarily the first like the linear scan,
+     * but it must find one exactly when the scan does.
+     */
+    private static void assertMatchesScan(TargetSpatialIndex index, IntPredicate visited, double lat, double lng,
+                                          int range) {
+        double[] lats = index.getLatitudes();
+        double[] lngs = index.getLongitudes();
+        int found = index.findWithinRange(visited, lat, lng, range);
+        boolean expected = linearHasTarget(lats, lngs, visited, lat, lng, range);
+        if (!expected) {
+            Assert.assertEquals("Found a target the scan didn't near " + lat + ", " + lng, -1, found);
+            return;
+        }
+        Assert.assertNotEquals("Missed a target in range of " + lat + ", " + lng, -1, found);
+        Assert.assertFalse(visited.test(found));
+        Assert.assertTrue(LatLngUtils.distance(lat, lng, lats[found], lngs[found]) <= range);
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(125);
+        double[] lats = new double[2000];
+        double[] lngs = new double[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = 40.108 + (random.nextDouble() - 0.5) * 0.02;
+            lngs[i] = -88.227 + (random.nextDouble() - 0.5) * 0.02;
+        }
+        for (double cellSize : new double[] {5, 20, 100, 5000}) {
+            TargetSpatialIndex index = new TargetSpatialIndex(lats, lngs, cellSize);
+            Assert.assertEquals(lats.length, index.size());
+            for (int query = 0; query < 2000; query++) {
+                // Some queries are outside the targets' area
+                double lat = 40.108 + (random.nextDouble() - 0.5) * 0.025;
+                double lng = -88.227 + (random.nextDouble() - 0.5) * 0.025;
+                int range = 1 + random.nextInt(60);
+                int modulus = 1 + random.nextInt(4);
+                assertMatchesScan(index, i -> false, lat, lng, range);
+                assertMatchesScan(index, i -> i % modulus != 0, lat, lng, range);
+            }
+        }
+    }
+
+    @Test
+    public void testTargetsOnCellEdges() {
+        // A lattice spaced exactly one cell apart puts targets on cell edges (up to rounding)
+        double cellSize = 20;
+        double latStep = cellSize / LatLngUtils.METERS_PER_LAT_DEGREE;
+        double lngStep = cellSize
+                / (LatLngUtils.METERS_PER_LNG_DEGREE * Math.cos(Math.toRadians(40.1 + latStep * 5)));
+        double[] lats = new double[121];
+        double[] lngs = new double[lats.length];
+        for (int row = 0; row < 11; row++) {
+            for (int column = 0; column < 11; column++) {
+                lats[row * 11 + column] = 40.1 + row * latStep;
+                lngs[row * 11 + column] = -88.23 + column * lngStep;
+            }
+        }
+        TargetSpatialIndex index = new TargetSpatialIndex(lats, lngs, cellSize);
+        Random random = new Random(125);
+        for (int target = 0; target < lats.length; target++) {
+            int i = target;
+            // Exactly on each target, halfway between targets, and with ranges reaching exactly to a neighbor
+            assertMatchesScan(index, t -> false, lats[i], lngs[i], 0);
+            assertMatchesScan(index, t -> false, lats[i] + latStep / 2, lngs[i] + lngStep / 2, 14);
+            assertMatchesScan(index, t -> t != i, lats[i], lngs[i] + lngStep, 20);
+            assertMatchesScan(index, t -> t != i, lats[i] + latStep, lngs[i], 20);
+            assertMatchesScan(index, t -> t != i, lats[i] + latStep, lngs[i] + lngStep, 28);
+            assertMatchesScan(index, t -> t != i, lats[i] + latStep, lngs[i] + lngStep, 29);
+            assertMatchesScan(index, t -> t == i, lats[i], lngs[i], random.nextInt(40));
+        }
+        Assert.assertEquals("A target exactly at the location is in a zero range",
+                60, index.findWithinRange(t -> false, lats[60], lngs[60], 0));
+    }
+
+    @Test
+    public void testSpreadOutTargets() {
+        // Targets all over the world with 1 m cells would need far more than MAX_CELLS cells
+        Random random = new Random(125);
+        double[] lats = new double[5000];
+        double[] lngs = new double[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = (random.nextDouble() - 0.5) * 140;
+            lngs[i] = (random.nextDouble() - 0.5) * 360;
+        }
+        // A cluster of close targets among them
+        for (int i = 0; i < 500; i++) {
+            lats[i] = 40.108 + (random.nextDouble() - 0.5) * 0.001;
+            lngs[i] = -88.227 + (random.nextDouble() - 0.5) * 0.001;
+        }
+        TargetSpatialIndex index = new TargetSpatialIndex(lats, lngs, 1);
+        for (int query = 0; query < 500; query++) {
+            int target = random.nextInt(lats.length);
+            double lat = lats[target] + (random.nextDouble() - 0.5) * 0.0002;
+            double lng = lngs[target] + (random.nextDouble() - 0.5) * 0.0002;
+            assertMatchesScan(index, i -> false, lat, lng, 1 + random.nextInt(30));
+            assertMatchesScan(index, i -> i % 2 == 0, lat, lng, 1 + random.nextInt(30));
+        }
+    }
+
+    @Test
+    public void testSmallSets() {
+        TargetSpatialIndex empty = new TargetSpatialIndex(new double[0], new double[0], 20);
+        Assert.assertEquals(0, empty.size());
+        Assert.assertEquals(-1, empty.findWithinRange(i -> false, 40.1, -88.2, 1000));
+
+        double[] lats = {40.1, 40.1, 40.1};
+        double[] lngs = {-88.2, -88.2, -88.2};
+        TargetSpatialIndex samePoint = new TargetSpatialIndex(lats, lngs, 20);
+        Assert.assertEquals(2, samePoint.findWithinRange(i -> i < 2, 40.1001, -88.2, 20));
+        Assert.assertEquals(-1, samePoint.findWithinRange(i -> true, 40.1, -88.2, 20));
+        Assert.assertEquals("A point far away should find nothing", -1,
+                samePoint.findWithinRange(i -> false, 41.1, -88.2, 20));
+    }
+
+    @Test
+    public void testPathOverloads() {
+        double[] lats = {40.1000, 40.1001, 40.1100};
+        double[] lngs = {-88.2000, -88.2000, -88.2100};
+        TargetSpatialIndex index = new TargetSpatialIndex(lats, lngs, 20);
+        int[] path = {0, -1, -1};
+        Assert.assertEquals(1, TargetVisitChecker.getTargetWithinRange(index, path, 40.1, -88.2, 20));
+        Assert.assertEquals(1, TargetVisitChecker.getTargetWithinRange(index, new VisitedTargets(path),
+                40.1, -88.2, 20));
+        path[1] = 1;
+        Assert.assertEquals(-1, TargetVisitChecker.getTargetWithinRange(index, path, 40.1, -88.2, 20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedArrays() {
+        new TargetSpatialIndex(new double[2], new double[3], 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCellSize() {
+        new TargetSpatialIndex(new double[2], new double[2], 0);
+    }
+
+}
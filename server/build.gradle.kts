@@ -0,0 +1,21 @@
+plugins {
+    `java-library`
+    checkstyle
+}
+
+/*
+ * An in-process websocket game server for tests and benchmarks. It implements the server side of the
+ * protocol from the JSON alone and doesn't depend on the app or core, so the app's test classpath gets no
+ * second copy of any class.
+ */
+dependencies {
+    implementation("com.google.code.gson:gson:2.8.5")
+}
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+checkstyle {
+    configFile = rootProject.file("config/checkstyle.xml")
+    sourceSets = listOf(project.sourceSets["main"])
+}
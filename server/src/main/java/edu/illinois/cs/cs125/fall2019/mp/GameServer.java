@@ -0,0 +1,406 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.URLDecoder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-process game server for tests and benchmarks that speaks the same websocket protocol as the
+ * course server: a full update on connect, then playerLocation, playerExit, playerTargetVisit and
+ * playerCellCapture updates, plus the resume/diff exchange.
+ * <p>
+ * It listens on localhost only and runs every connection of every game on one selector thread, so hundreds
+ * of clients cost a socket each rather than a thread each. Games are reached at /games/{id}/play (see
+ * getUrl). Instead of a Firebase ID token, the Firebase-Token header (or an email query parameter, for
+ * clients that can't set headers) holds the player's email. A reconnecting client can pass the version it
+ * has in a since query parameter to get a diff instead of a full update. Games can be set up with createGame
+ * before clients connect; connecting to any other ID creates an empty running target mode game.
+ */
+public final class GameServer implements Closeable {
+
+    /** Port main listens on if none is given. */
+    private static final int DEFAULT_PORT = 8125;
+
+    /** How long close waits for the selector thread to finish. */
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+
+    /** The path prefix of game websockets. */
+    private static final String GAMES_PATH = "/games/";
+
+    /** The path suffix of game websockets. */
+    private static final String PLAY_PATH = "/play";
+
+    /** The listening socket. */
+    private final ServerSocketChannel serverChannel;
+
+    /** Selector watching the listening socket and every connection. */
+    private final Selector selector;
+
+    /** Thread running the selector loop. */
+    private final Thread thread;
+
+    /** The hosted games by ID. */
+    private final Map<String, HostedGame> games = new ConcurrentHashMap<>();
+
+    /** Connections that fell too far behind and need to be dropped (used only on the selector thread). */
+    private final ArrayDeque<WebSocketConnection> overflowed = new ArrayDeque<>();
+
+    /** Parses client messages. */
+    private final JsonParser parser = new JsonParser();
+
+    /** Number of open game connections. */
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /** Number of messages received from clients. */
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    /** Number of messages sent to clients. */
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    /** Number of malformed messages, protocol violations and dropped slow clients. */
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /** Whether the server should keep running. */
+    private volatile boolean running;
+
+    /**
+     * Creates a server listening on a localhost port. Call start to begin accepting connections.
+     * @param port the port, or 0 to pick a free one
+     * @throws IOException if the port couldn't be bound
+     */
+    public GameServer(final int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "GameServer-" + getPort());
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     * @return this server, for chaining
+     */
+    public GameServer start() {
+        running = true;
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Sets up a game that clients can then join.
+     * @param gameId the game ID
+     * @param fullUpdate the game in the form of a full update
+     */
+    public void createGame(final String gameId, final JsonObject fullUpdate) {
+        if (games.putIfAbsent(gameId, new HostedGame(fullUpdate)) != null) {
+            throw new IllegalArgumentException("Game " + gameId + " already exists");
+        }
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * @return the port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the websocket URL of a game.
+     * @param gameId the game ID
+     * @return the URL to connect to
+     */
+    public String getUrl(final String gameId) {
+        return "ws://127.0.0.1:" + getPort() + GAMES_PATH + gameId + PLAY_PATH;
+    }
+
+    /**
+     * Gets the number of open game connections.
+     * @return how many clients are connected to games
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Gets the number of messages received.
+     * @return how many websocket text messages clients have sent
+     */
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    /**
+     * Gets the number of messages sent.
+     * @return how many websocket text messages have been sent to clients
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Gets the number of errors.
+     * @return how many malformed messages, protocol violations and dropped slow clients there have been
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Stops the server, closing every connection.
+     * @throws IOException if the listening socket couldn't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread.isAlive()) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() != null) {
+                ((WebSocketConnection) key.attachment()).close();
+            }
+        }
+        connectionCount.set(0);
+        serverChannel.close();
+        selector.close();
+    }
+
+    /**
+     * Runs the selector loop until the server is closed.
+     */
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                errorCount.incrementAndGet();
+                return;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    acceptAll();
+                } else {
+                    service((WebSocketConnection) key.attachment(), key);
+                }
+            }
+            while (!overflowed.isEmpty()) {
+                errorCount.incrementAndGet();
+                disconnect(overflowed.poll());
+            }
+        }
+    }
+
+    /**
+     * Accepts every pending connection.
+     */
+    private void acceptAll() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new WebSocketConnection(channel, key, messagesSent, overflowed::add));
+            }
+        } catch (IOException e) {
+            errorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Handles a connection the selector reported as ready.
+     * @param connection the connection
+     * @param key its selection key
+     */
+    private void service(final WebSocketConnection connection, final SelectionKey key) {
+        try {
+            if (key.isWritable() && connection.flush()) {
+                disconnect(connection);
+                return;
+            }
+            if (key.isReadable()) {
+                if (!connection.read()) {
+                    disconnect(connection);
+                    return;
+                }
+                receive(connection);
+            }
+            if (connection.isClosing() && connection.flush()) {
+                disconnect(connection);
+            }
+        } catch (ProtocolException e) {
+            errorCount.incrementAndGet();
+            disconnect(connection);
+        } catch (IOException e) {
+            // The client went away, usually while closing
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Processes the handshake or messages a connection has sent.
+     * @param connection the connection that just read
+     * @throws IOException if the client broke the protocol or a send failed
+     */
+    private void receive(final WebSocketConnection connection) throws IOException {
+        if (!connection.isOpen()) {
+            Map<String, String> request = connection.readHandshake();
+            if (request == null) {
+                return;
+            }
+            handshake(connection, request);
+            if (!connection.isOpen()) {
+                return;
+            }
+        }
+        String text;
+        while ((text = connection.nextMessage()) != null) {
+            messagesReceived.incrementAndGet();
+            try {
+                if (!connection.getGame().handle(connection, parser.parse(text).getAsJsonObject())) {
+                    errorCount.incrementAndGet();
+                }
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException
+                    | ClassCastException | NullPointerException | NumberFormatException e) {
+                // Not JSON, not an object, or missing or mistyped fields
+                errorCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Checks an upgrade request and either joins the client to its game or rejects it.
+     * @param connection the connection
+     * @param request the request target and headers from readHandshake
+     * @throws IOException if sending the full update failed
+     */
+    private void handshake(final WebSocketConnection connection, final Map<String, String> request)
+            throws IOException {
+        String target = request.get("");
+        String query = "";
+        int questionMark = target.indexOf('?');
+        if (questionMark >= 0) {
+            query = target.substring(questionMark + 1);
+            target = target.substring(0, questionMark);
+        }
+        if (!target.startsWith(GAMES_PATH) || !target.endsWith(PLAY_PATH)
+                || target.length() <= GAMES_PATH.length() + PLAY_PATH.length()) {
+            connection.reject("404 Not Found");
+            return;
+        }
+        String gameId = target.substring(GAMES_PATH.length(), target.length() - PLAY_PATH.length());
+        String clientKey = request.get("sec-websocket-key");
+        if (clientKey == null || !"websocket".equalsIgnoreCase(request.get("upgrade"))) {
+            connection.reject("400 Bad Request");
+            return;
+        }
+        String email = request.get("firebase-token");
+        if (email == null) {
+            email = queryParameter(query, "email");
+        }
+        if (email == null || email.isEmpty()) {
+            connection.reject("401 Unauthorized");
+            return;
+        }
+        long since = HostedGame.NOT_RESUMING;
+        String sinceParameter = queryParameter(query, "since");
+        if (sinceParameter != null) {
+            try {
+                since = Long.parseLong(sinceParameter);
+            } catch (NumberFormatException e) {
+                connection.reject("400 Bad Request");
+                return;
+            }
+        }
+        final String owner = email;
+        HostedGame game = games.computeIfAbsent(gameId, unused -> new HostedGame(HostedGame.emptyGame(owner)));
+        connection.accept(clientKey, game, email);
+        connectionCount.incrementAndGet();
+        game.join(connection, since);
+    }
+
+    /**
+     * Finds a parameter in a URL query string.
+     * @param query the query string (without the question mark)
+     * @param name the parameter name
+     * @return the decoded value, or null if the parameter isn't present
+     */
+    private static String queryParameter(final String query, final String name) {
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                try {
+                    return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException("UTF-8 is required to be available", e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes a connection, telling the rest of its game if the player left.
+     * @param connection the connection
+     */
+    private void disconnect(final WebSocketConnection connection) {
+        if (!connection.close() || !connection.isOpen()) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        try {
+            connection.getGame().leave(connection);
+        } catch (IOException e) {
+            errorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     * @param args the port to listen on (optional)
+     * @throws IOException if the port couldn't be bound
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        GameServer server = new GameServer(port).start();
+        System.out.println("Serving games at " + server.getUrl("{id}"));
+        server.thread.join();
+    }
+
+}
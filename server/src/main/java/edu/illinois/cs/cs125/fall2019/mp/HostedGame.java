@@ -0,0 +1,397 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game hosted by the GameServer: its state, its numbered update log, and the connections playing it.
+ * <p>
+ * The game is stored as the JSON the server sends in full updates, and every change is applied to it
+ * directly. Each broadcast update gets the next sequence number, and the most recent updates are kept so
+ * that a reconnecting client's resume request can be answered with a compact diff (see GameStateSync).
+ * Captures are recorded if the objective is unclaimed; the rest of the rules are left to the clients.
+ * <p>
+ * The state changes (movePlayer, exitPlayer, claimTarget, claimCell) can also be made directly, without a
+ * connection, which is how tests drive a game and check clients against it. All methods must be called on
+ * the server's selector thread.
+ */
+final class HostedGame {
+
+    /** Number of updates kept for answering resume requests. */
+    static final int RETAINED_UPDATES = 1000;
+
+    /** Version passed to join by a client that isn't resuming, which always gets a full update. */
+    static final long NOT_RESUMING = -1;
+
+    /** Team ID of the first team, assigned to new players in turn. */
+    private static final int FIRST_TEAM = 1;
+
+    /** Number of teams new players are spread across. */
+    private static final int TEAM_COUNT = 4;
+
+    /** Player state of a player who has joined but isn't connected. */
+    private static final int STATE_ACCEPTED = 2;
+
+    /** Player state of a connected player. */
+    private static final int STATE_PLAYING = 3;
+
+    /** The game state sent in full updates. */
+    private final JsonObject game;
+
+    /** The players in the game by email (the objects in game's players array). */
+    private final Map<String, JsonObject> players = new LinkedHashMap<>();
+
+    /** The targets by ID (the objects in game's targets array). */
+    private final Map<String, JsonObject> targets = new HashMap<>();
+
+    /** The claimed cells by "x,y" (the objects in game's cells array). */
+    private final Map<String, JsonObject> cells = new HashMap<>();
+
+    /** The connections playing the game. */
+    private final List<WebSocketConnection> connections = new ArrayList<>();
+
+    /** How many connections each player has open. */
+    private final Map<String, Integer> connectionCounts = new HashMap<>();
+
+    /** The most recent updates, oldest first. */
+    private final ArrayDeque<JsonObject> log = new ArrayDeque<>();
+
+    /** The sequence number of the latest update. */
+    private long version;
+
+    /** How many players have been added, used to assign teams. */
+    private int added;
+
+    /**
+     * Hosts a game.
+     * @param initialState the game in the form of a full update (targets or area, players, etc.)
+     */
+    HostedGame(final JsonObject initialState) {
+        game = initialState.deepCopy();
+        game.remove("type");
+        game.remove("seq");
+        for (String array : new String[] {"players", "targets", "cells"}) {
+            if (!game.has(array)) {
+                game.add(array, new JsonArray());
+            }
+        }
+        for (JsonElement p : game.getAsJsonArray("players")) {
+            players.put(p.getAsJsonObject().get("email").getAsString(), p.getAsJsonObject());
+        }
+        for (JsonElement t : game.getAsJsonArray("targets")) {
+            targets.put(t.getAsJsonObject().get("id").getAsString(), t.getAsJsonObject());
+        }
+        for (JsonElement c : game.getAsJsonArray("cells")) {
+            JsonObject cell = c.getAsJsonObject();
+            cells.put(cell.get("x").getAsInt() + "," + cell.get("y").getAsInt(), cell);
+        }
+        added = players.size();
+    }
+
+    /**
+     * Creates the state of a game for a game ID nobody set up: a running target mode game with no targets.
+     * @param owner the email of the player who connected first
+     * @return the game in the form of a full update
+     */
+    static JsonObject emptyGame(final String owner) {
+        JsonObject empty = new JsonObject();
+        empty.addProperty("owner", owner);
+        empty.addProperty("state", 1);
+        empty.addProperty("mode", "target");
+        empty.addProperty("proximityThreshold", 20);
+        return empty;
+    }
+
+    /**
+     * Creates a full update of the current state.
+     * @return the game with its type and current sequence number
+     */
+    JsonObject full() {
+        JsonObject full = game.deepCopy();
+        full.addProperty("type", "full");
+        full.addProperty("seq", version);
+        return full;
+    }
+
+    /**
+     * Adds a connection to the game, adding its player if they're new, and brings it up to date.
+     * <p>
+     * A reconnecting client that passed the version it has gets the same answer as a resume request (see
+     * resume); any other client gets a full update.
+     * @param connection the connection whose handshake just completed
+     * @param since the version the client has, or NOT_RESUMING
+     * @throws IOException if sending failed
+     */
+    void join(final WebSocketConnection connection, final long since) throws IOException {
+        String email = connection.getEmail();
+        JsonObject player = players.get(email);
+        if (player == null) {
+            player = new JsonObject();
+            player.addProperty("email", email);
+            player.addProperty("team", FIRST_TEAM + added % TEAM_COUNT);
+            player.add("path", new JsonArray());
+            game.getAsJsonArray("players").add(player);
+            players.put(email, player);
+            added++;
+        }
+        player.addProperty("state", STATE_PLAYING);
+        connections.add(connection);
+        connectionCounts.merge(email, 1, Integer::sum);
+        connection.send(WebSocketConnection.textFrame(resume(since).toString()));
+    }
+
+    /**
+     * Removes a connection from the game. If it was the player's last connection, the others are told they left.
+     * @param connection the closed connection
+     * @throws IOException if broadcasting failed
+     */
+    void leave(final WebSocketConnection connection) throws IOException {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        String email = connection.getEmail();
+        if (connectionCounts.merge(email, -1, Integer::sum) > 0) {
+            return;
+        }
+        connectionCounts.remove(email);
+        broadcast(exitPlayer(email), null);
+    }
+
+    /**
+     * Handles a message from a client.
+     * @param connection the connection the message came from
+     * @param message the message
+     * @return whether the message was understood
+     * @throws IOException if sending the response or broadcast failed
+     */
+    boolean handle(final WebSocketConnection connection, final JsonObject message) throws IOException {
+        String email = connection.getEmail();
+        JsonElement type = message.get("type");
+        if (type == null) {
+            return false;
+        }
+        switch (type.getAsString()) {
+            case "locationUpdate":
+                broadcast(movePlayer(email, message.get("latitude").getAsDouble(),
+                        message.get("longitude").getAsDouble()), connection);
+                return true;
+            case "targetVisit":
+                String targetId = message.get("targetId").getAsString();
+                if (!targets.containsKey(targetId)) {
+                    return false;
+                }
+                broadcast(claimTarget(email, targetId), null);
+                return true;
+            case "cellCapture":
+                broadcast(claimCell(email, message.get("x").getAsInt(), message.get("y").getAsInt()), null);
+                return true;
+            case "resume":
+                connection.send(WebSocketConnection.textFrame(resume(message.get("since").getAsLong()).toString()));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records a player's new location.
+     * @param email the player's email
+     * @param latitude the player's latitude
+     * @param longitude the player's longitude
+     * @return the playerLocation update to send to the other players
+     */
+    JsonObject movePlayer(final String email, final double latitude, final double longitude) {
+        JsonObject player = players.get(email);
+        player.addProperty("state", STATE_PLAYING);
+        player.addProperty("lastLatitude", latitude);
+        player.addProperty("lastLongitude", longitude);
+        JsonObject update = new JsonObject();
+        update.addProperty("type", "playerLocation");
+        update.addProperty("email", email);
+        update.add("team", player.get("team"));
+        update.addProperty("lastLatitude", latitude);
+        update.addProperty("lastLongitude", longitude);
+        return record(update);
+    }
+
+    /**
+     * Records that a player left the game.
+     * @param email the player's email
+     * @return the playerExit update to send to the other players
+     */
+    JsonObject exitPlayer(final String email) {
+        players.get(email).addProperty("state", STATE_ACCEPTED);
+        JsonObject exit = new JsonObject();
+        exit.addProperty("type", "playerExit");
+        exit.addProperty("email", email);
+        return record(exit);
+    }
+
+    /**
+     * Records a target capture, if the target is unclaimed.
+     * @param email the capturing player's email
+     * @param targetId the target's ID, which must exist
+     * @return the playerTargetVisit update to send to every player, or null if the target was already claimed
+     */
+    JsonObject claimTarget(final String email, final String targetId) {
+        JsonObject player = players.get(email);
+        JsonObject target = targets.get(targetId);
+        if (target.get("team").getAsInt() != 0) {
+            return null;
+        }
+        target.add("team", player.get("team"));
+        JsonObject step = new JsonObject();
+        step.addProperty("id", targetId);
+        step.add("latitude", target.get("latitude"));
+        step.add("longitude", target.get("longitude"));
+        player.getAsJsonArray("path").add(step);
+        JsonObject update = new JsonObject();
+        update.addProperty("type", "playerTargetVisit");
+        update.addProperty("email", email);
+        update.add("team", player.get("team"));
+        update.addProperty("targetId", targetId);
+        return record(update);
+    }
+
+    /**
+     * Records a cell capture, if the cell is unclaimed.
+     * @param email the capturing player's email
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @return the playerCellCapture update to send to every player, or null if the cell was already claimed
+     */
+    JsonObject claimCell(final String email, final int x, final int y) {
+        String key = x + "," + y;
+        if (cells.containsKey(key)) {
+            return null;
+        }
+        JsonObject player = players.get(email);
+        JsonObject cell = new JsonObject();
+        cell.addProperty("x", x);
+        cell.addProperty("y", y);
+        cell.addProperty("email", email);
+        cell.add("team", player.get("team"));
+        cells.put(key, cell);
+        game.getAsJsonArray("cells").add(cell);
+        JsonObject step = new JsonObject();
+        step.addProperty("x", x);
+        step.addProperty("y", y);
+        player.getAsJsonArray("path").add(step);
+        JsonObject update = cell.deepCopy();
+        update.addProperty("type", "playerCellCapture");
+        return record(update);
+    }
+
+    /**
+     * Numbers an update and adds it to the log.
+     * @param update the update
+     * @return the same update
+     */
+    private JsonObject record(final JsonObject update) {
+        update.addProperty("seq", ++version);
+        log.addLast(update);
+        while (log.size() > RETAINED_UPDATES) {
+            log.removeFirst();
+        }
+        return update;
+    }
+
+    /**
+     * Sends an update to the game's connections.
+     * @param update the update, or null if there's nothing to send
+     * @param except a connection not to send it to, or null to send it to all
+     * @throws IOException if a send failed
+     */
+    private void broadcast(final JsonObject update, final WebSocketConnection except) throws IOException {
+        if (update == null) {
+            return;
+        }
+        ByteBuffer frame = WebSocketConnection.textFrame(update.toString());
+        for (WebSocketConnection connection : connections) {
+            if (connection != except) {
+                connection.send(frame.duplicate());
+            }
+        }
+    }
+
+    /**
+     * Answers a resume request.
+     * <p>
+     * The answer is a diff holding each changed target claim and each changed player's last position or
+     * exit, or a full update if the log no longer covers the requested version or cells were captured.
+     * @param since the version the client has
+     * @return a diff or full update
+     */
+    JsonObject resume(final long since) {
+        long oldestAvailable = version - log.size();
+        if (since < oldestAvailable || since > version) {
+            return full();
+        }
+        Map<String, JsonObject> claims = new LinkedHashMap<>();
+        Map<String, JsonObject> lastPlayerChange = new LinkedHashMap<>();
+        for (JsonObject update : log) {
+            if (update.get("seq").getAsLong() <= since) {
+                continue;
+            }
+            String type = update.get("type").getAsString();
+            if (type.equals("playerCellCapture")) {
+                return full();
+            } else if (type.equals("playerTargetVisit")) {
+                claims.put(update.get("targetId").getAsString(), update);
+            } else {
+                String email = update.get("email").getAsString();
+                lastPlayerChange.remove(email);
+                lastPlayerChange.put(email, update);
+            }
+        }
+        JsonArray claimArray = new JsonArray();
+        for (JsonObject claim : claims.values()) {
+            JsonObject compact = new JsonObject();
+            compact.add("targetId", claim.get("targetId"));
+            compact.add("email", claim.get("email"));
+            compact.add("team", claim.get("team"));
+            claimArray.add(compact);
+        }
+        JsonArray moves = new JsonArray();
+        JsonArray exits = new JsonArray();
+        for (JsonObject change : lastPlayerChange.values()) {
+            if (change.get("type").getAsString().equals("playerExit")) {
+                exits.add(change.get("email"));
+            } else {
+                JsonObject move = new JsonObject();
+                move.add("email", change.get("email"));
+                move.add("team", change.get("team"));
+                move.add("lastLatitude", change.get("lastLatitude"));
+                move.add("lastLongitude", change.get("lastLongitude"));
+                moves.add(move);
+            }
+        }
+        JsonObject diff = new JsonObject();
+        diff.addProperty("type", "diff");
+        diff.addProperty("from", since);
+        diff.addProperty("seq", version);
+        diff.add("claims", claimArray);
+        diff.add("moves", moves);
+        diff.add("exits", exits);
+        return diff;
+    }
+
+    /**
+     * Gets the number of connections playing the game.
+     * @return how many connections have joined and not yet left
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+}
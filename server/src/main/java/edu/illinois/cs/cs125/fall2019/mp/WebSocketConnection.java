@@ -0,0 +1,508 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One client's connection to the GameServer, handling the websocket handshake and framing (RFC 6455).
+ * <p>
+ * Only what the game protocol needs is supported: text messages (possibly fragmented), ping, pong and
+ * close. Binary messages are read and ignored, and extensions such as compression are never negotiated.
+ * Protocol violations are reported with ProtocolException, other IOExceptions mean the socket failed.
+ * All methods must be called on the server's selector thread.
+ */
+final class WebSocketConnection {
+
+    /** Largest message (after reassembling fragments) a client may send. */
+    static final int MAX_MESSAGE_SIZE = 1 << 20;
+
+    /** Most bytes that may be waiting to be written before the client is considered too slow and dropped. */
+    static final int MAX_QUEUED_BYTES = 4 << 20;
+
+    /** Largest HTTP upgrade request accepted. */
+    private static final int MAX_HANDSHAKE_SIZE = 8192;
+
+    /** The blank line that ends an HTTP request's headers. */
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+
+    /** Initial size of the input buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /** Largest frame header: 2 bytes, an 8-byte extended length and a 4-byte mask. */
+    private static final int MAX_HEADER_SIZE = 14;
+
+    /** The GUID appended to the client's key to compute the handshake response (RFC 6455 section 1.3). */
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /** Opcode of continuation frames. */
+    private static final int OPCODE_CONTINUATION = 0x0;
+
+    /** Opcode of text frames. */
+    private static final int OPCODE_TEXT = 0x1;
+
+    /** Opcode of binary frames. */
+    private static final int OPCODE_BINARY = 0x2;
+
+    /** Opcode of close frames. */
+    private static final int OPCODE_CLOSE = 0x8;
+
+    /** Opcode of ping frames. */
+    private static final int OPCODE_PING = 0x9;
+
+    /** Opcode of pong frames. */
+    private static final int OPCODE_PONG = 0xA;
+
+    /** The FIN bit of a frame's first byte. */
+    private static final int FIN = 0x80;
+
+    /** The MASK bit of a frame's second byte. */
+    private static final int MASK = 0x80;
+
+    /** Mask for the opcode or the 7-bit length. */
+    private static final int LOW_BITS = 0x7F;
+
+    /** Mask for the opcode. */
+    private static final int OPCODE_BITS = 0x0F;
+
+    /** 7-bit length value meaning a 16-bit length follows. */
+    private static final int LENGTH_16 = 126;
+
+    /** 7-bit length value meaning a 64-bit length follows. */
+    private static final int LENGTH_64 = 127;
+
+    /** Mask for converting a byte or short to an unsigned int. */
+    private static final int UNSIGNED_SHORT = 0xFFFF;
+
+    /** Mask for converting a byte to an unsigned int. */
+    private static final int UNSIGNED_BYTE = 0xFF;
+
+    /** Size of a mask key. */
+    private static final int MASK_SIZE = 4;
+
+    /** The client's socket. */
+    private final SocketChannel channel;
+
+    /** The socket's registration with the selector. */
+    private final SelectionKey key;
+
+    /** Counts every message sent to any client. */
+    private final AtomicLong sentCounter;
+
+    /** Called (once) if the client can't keep up and must be disconnected. */
+    private final Consumer<WebSocketConnection> onOverflow;
+
+    /** Bytes read from the client but not yet processed (kept in write mode between calls). */
+    private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /** Frames waiting to be written. */
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+    /** Total bytes waiting in output. */
+    private int queuedBytes;
+
+    /** Whether the handshake has completed. */
+    private boolean open;
+
+    /** Whether the connection should be closed once the output has been written. */
+    private boolean closing;
+
+    /** Whether the client was dropped for not reading fast enough. */
+    private boolean overflowed;
+
+    /** Opcode of the message whose fragments are being collected. */
+    private int fragmentOpcode;
+
+    /** Fragments of an unfinished message, or null if there isn't one. */
+    private ByteArrayOutputStream fragments;
+
+    /** The game this connection is playing in, once joined. */
+    private HostedGame game;
+
+    /** The email of the player on this connection, once joined. */
+    private String email;
+
+    /**
+     * Creates a connection for a newly accepted socket.
+     * @param setChannel the client's socket (non-blocking)
+     * @param setKey the socket's registration with the selector
+     * @param setSentCounter counter to increment for every message sent
+     * @param setOnOverflow called if the client stops reading and too much output builds up
+     */
+    WebSocketConnection(final SocketChannel setChannel, final SelectionKey setKey, final AtomicLong setSentCounter,
+                        final Consumer<WebSocketConnection> setOnOverflow) {
+        channel = setChannel;
+        key = setKey;
+        sentCounter = setSentCounter;
+        onOverflow = setOnOverflow;
+    }
+
+    /**
+     * Reads whatever the client has sent.
+     * @return false if the client closed the connection
+     * @throws IOException if the socket failed (or a ProtocolException if a frame is too large to buffer)
+     */
+    boolean read() throws IOException {
+        if (!input.hasRemaining()) {
+            int limit = MAX_MESSAGE_SIZE + MAX_HEADER_SIZE;
+            if (input.capacity() >= limit) {
+                throw new ProtocolException("Frame too large");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(limit, input.capacity() * 2));
+            input.flip();
+            larger.put(input);
+            input = larger;
+        }
+        return channel.read(input) >= 0;
+    }
+
+    /**
+     * Parses the HTTP upgrade request, if all of it has arrived.
+     * @return the request line's target (path and query) and the headers (with lower case names under the
+     * key of the same name, and the target under ""), or null if the request is incomplete
+     * @throws ProtocolException if the request is too large
+     */
+    Map<String, String> readHandshake() throws ProtocolException {
+        input.flip();
+        int end = -1;
+        for (int i = input.position(); end == -1 && i + HEADERS_END.length <= input.limit(); i++) {
+            end = i;
+            for (int j = 0; j < HEADERS_END.length; j++) {
+                if (input.get(i + j) != HEADERS_END[j]) {
+                    end = -1;
+                    break;
+                }
+            }
+        }
+        if (end == -1) {
+            boolean tooLarge = input.remaining() >= MAX_HANDSHAKE_SIZE;
+            input.compact();
+            if (tooLarge) {
+                throw new ProtocolException("Handshake too large");
+            }
+            return null;
+        }
+        byte[] bytes = new byte[end - input.position()];
+        input.get(bytes);
+        input.position(end + HEADERS_END.length);
+        input.compact();
+
+        String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+        Map<String, String> request = new HashMap<>();
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length < 2 || !requestLine[0].equals("GET")) {
+            request.put("", "");
+            return request;
+        }
+        request.put("", requestLine[1]);
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                request.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return request;
+    }
+
+    /**
+     * Completes the handshake.
+     * @param clientKey the client's Sec-WebSocket-Key header
+     * @param setGame the game the client is joining
+     * @param setEmail the player's email
+     */
+    void accept(final String clientKey, final HostedGame setGame, final String setEmail) {
+        String acceptKey;
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            acceptKey = Base64.getEncoder().encodeToString(
+                    sha1.digest((clientKey + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is required to be available", e);
+        }
+        enqueue(ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+        open = true;
+        game = setGame;
+        email = setEmail;
+    }
+
+    /**
+     * Refuses the handshake with an HTTP error and closes the connection once the response is written.
+     * @param status the HTTP status line, e.g. "404 Not Found"
+     */
+    void reject(final String status) {
+        enqueue(ByteBuffer.wrap(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1)));
+        closing = true;
+    }
+
+    /**
+     * Gets the next complete text message, answering any pings and close frames along the way.
+     * @return the message, or null if no complete message has arrived
+     * @throws ProtocolException if the client broke the protocol
+     */
+    String nextMessage() throws ProtocolException {
+        input.flip();
+        try {
+            while (!closing && input.remaining() >= 2) {
+                int start = input.position();
+                int first = input.get(start) & UNSIGNED_BYTE;
+                int second = input.get(start + 1) & UNSIGNED_BYTE;
+                long length = second & LOW_BITS;
+                int header = 2;
+                if (length == LENGTH_16) {
+                    if (input.remaining() < header + 2) {
+                        return null;
+                    }
+                    length = input.getShort(start + header) & UNSIGNED_SHORT;
+                    header += 2;
+                } else if (length == LENGTH_64) {
+                    if (input.remaining() < header + Long.BYTES) {
+                        return null;
+                    }
+                    length = input.getLong(start + header);
+                    header += Long.BYTES;
+                }
+                if ((second & MASK) == 0) {
+                    throw new ProtocolException("Client frames must be masked");
+                }
+                if (length < 0 || length > MAX_MESSAGE_SIZE) {
+                    throw new ProtocolException("Message too large");
+                }
+                if (input.remaining() < header + MASK_SIZE + length) {
+                    return null;
+                }
+                byte[] payload = new byte[(int) length];
+                int maskStart = start + header;
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] = (byte) (input.get(maskStart + MASK_SIZE + i) ^ input.get(maskStart + (i % MASK_SIZE)));
+                }
+                input.position(maskStart + MASK_SIZE + payload.length);
+                String message = handleFrame((first & FIN) != 0, first & OPCODE_BITS, payload);
+                if (message != null) {
+                    return message;
+                }
+            }
+            return null;
+        } finally {
+            input.compact();
+        }
+    }
+
+    /**
+     * Processes one frame.
+     * @param fin whether this is the last frame of its message
+     * @param opcode the frame's opcode
+     * @param payload the unmasked payload
+     * @return the text message the frame completes, or null if it didn't complete one
+     * @throws ProtocolException if the frame breaks the protocol
+     */
+    private String handleFrame(final boolean fin, final int opcode, final byte[] payload)
+            throws ProtocolException {
+        switch (opcode) {
+            case OPCODE_CLOSE:
+                // Echo the status code (if any) back and close once it's written
+                enqueue(frame(OPCODE_CLOSE, payload, Math.min(payload.length, 2)));
+                closing = true;
+                return null;
+            case OPCODE_PING:
+                enqueue(frame(OPCODE_PONG, payload, payload.length));
+                return null;
+            case OPCODE_PONG:
+                return null;
+            case OPCODE_TEXT:
+            case OPCODE_BINARY:
+                if (fragments != null) {
+                    throw new ProtocolException("New message before the last one finished");
+                }
+                if (fin) {
+                    if (opcode == OPCODE_TEXT) {
+                        return new String(payload, StandardCharsets.UTF_8);
+                    }
+                    return null;
+                }
+                fragmentOpcode = opcode;
+                fragments = new ByteArrayOutputStream();
+                fragments.write(payload, 0, payload.length);
+                return null;
+            case OPCODE_CONTINUATION:
+                if (fragments == null) {
+                    throw new ProtocolException("Continuation without a message");
+                }
+                fragments.write(payload, 0, payload.length);
+                if (fragments.size() > MAX_MESSAGE_SIZE) {
+                    throw new ProtocolException("Message too large");
+                }
+                if (!fin) {
+                    return null;
+                }
+                byte[] whole = fragments.toByteArray();
+                fragments = null;
+                if (fragmentOpcode == OPCODE_TEXT) {
+                    return new String(whole, StandardCharsets.UTF_8);
+                }
+                return null;
+            default:
+                throw new ProtocolException("Unknown opcode " + opcode);
+        }
+    }
+
+    /**
+     * Encodes a text message as a server frame.
+     * <p>
+     * The result can be sent to many connections by passing each a duplicate.
+     * @param text the message
+     * @return the frame, ready to be written
+     */
+    static ByteBuffer textFrame(final String text) {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        return frame(OPCODE_TEXT, payload, payload.length);
+    }
+
+    /**
+     * Encodes an unmasked, unfragmented frame.
+     * @param opcode the opcode
+     * @param payload the payload
+     * @param length how many bytes of the payload to include
+     * @return the frame, ready to be written
+     */
+    private static ByteBuffer frame(final int opcode, final byte[] payload, final int length) {
+        ByteBuffer frame = ByteBuffer.allocate(MAX_HEADER_SIZE + length);
+        frame.put((byte) (FIN | opcode));
+        if (length < LENGTH_16) {
+            frame.put((byte) length);
+        } else if (length <= UNSIGNED_SHORT) {
+            frame.put((byte) LENGTH_16);
+            frame.putShort((short) length);
+        } else {
+            frame.put((byte) LENGTH_64);
+            frame.putLong(length);
+        }
+        frame.put(payload, 0, length);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Sends a message frame.
+     * <p>
+     * If too much output is already waiting, the frame is dropped and the connection is reported as overflowed.
+     * @param frame a frame from textFrame (a duplicate, if it is shared with other connections)
+     * @throws IOException if the socket failed
+     */
+    void send(final ByteBuffer frame) throws IOException {
+        if (overflowed || closing) {
+            return;
+        }
+        if (queuedBytes + frame.remaining() > MAX_QUEUED_BYTES) {
+            overflowed = true;
+            onOverflow.accept(this);
+            return;
+        }
+        sentCounter.incrementAndGet();
+        enqueue(frame);
+    }
+
+    /**
+     * Queues bytes to write and tries to write them right away.
+     * @param bytes the bytes to write
+     */
+    private void enqueue(final ByteBuffer bytes) {
+        output.add(bytes);
+        queuedBytes += bytes.remaining();
+        if (output.size() == 1) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // Let the next select report the socket's failure
+                if (key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes as much queued output as the socket will take.
+     * @return whether the connection should now be closed (it was closing and everything has been written)
+     * @throws IOException if the socket failed
+     */
+    boolean flush() throws IOException {
+        while (!output.isEmpty()) {
+            ByteBuffer next = output.peek();
+            int written = channel.write(next);
+            queuedBytes -= written;
+            if (next.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return false;
+            }
+            output.poll();
+        }
+        if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+        return closing;
+    }
+
+    /**
+     * Determines whether the handshake has completed.
+     * @return whether the connection is a websocket
+     */
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Determines whether the connection is waiting to be closed.
+     * @return whether a close frame or HTTP error has been queued
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * Gets the game this connection joined.
+     * @return the game, or null if the handshake hasn't completed
+     */
+    HostedGame getGame() {
+        return game;
+    }
+
+    /**
+     * Gets the email of the player on this connection.
+     * @return the email, or null if the handshake hasn't completed
+     */
+    String getEmail() {
+        return email;
+    }
+
+    /**
+     * Closes the socket.
+     * @return false if it was already closed
+     */
+    boolean close() {
+        if (!channel.isOpen()) {
+            return false;
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can be done with it
+        }
+        return true;
+    }
+
+}
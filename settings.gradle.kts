@@ -1,4 +1,6 @@
 include(":app")
+include(":core")
+include(":server")
 
 pluginManagement {
     repositories {